@@ -0,0 +1,266 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.sensorsdata.analytics.android.sdk.network.FlushRetryPolicy;
+import com.sensorsdata.analytics.android.sdk.util.Base64Coder;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 使用本地的数据接收端校验表单格式和 gzip 二进制请求体两种上报格式
+ */
+@RunWith(AndroidJUnit4.class)
+public class AnalyticsMessagesTest {
+    private static final String TAG = "AnalyticsMessagesTest";
+    private LocalReceiver mReceiver;
+
+    @Before
+    public void setUp() throws IOException {
+        mReceiver = new LocalReceiver();
+        mReceiver.start();
+        Context context = ApplicationProvider.getApplicationContext();
+        SensorsDataAPI.startWithConfigOptions(context, new SAConfigOptions(mReceiver.getUrl()));
+        SensorsDataAPI.sharedInstance().setServerUrl(mReceiver.getUrl());
+    }
+
+    @After
+    public void tearDown() {
+        SensorsDataAPI.getConfigOptions().enableRawGzipUpload(false);
+        mReceiver.stop();
+    }
+
+    @Test
+    public void formAndRawGzipUpload() throws Exception {
+        SensorsDataAPI.sharedInstance().deleteAll();
+        Thread.sleep(1000);
+        SensorsDataAPI.getConfigOptions().enableRawGzipUpload(false);
+        trackAndFlush("FormUpload");
+        Request formRequest = mReceiver.take();
+        assertNotNull(formRequest);
+        JSONArray formEvents = formRequest.decodeEvents();
+        assertEquals("FormUpload", formEvents.getJSONObject(formEvents.length() - 1).getString("event"));
+
+        SensorsDataAPI.getConfigOptions().enableRawGzipUpload(true);
+        trackAndFlush("RawGzipUpload");
+        Request rawRequest = mReceiver.take();
+        assertNotNull(rawRequest);
+        assertEquals("gzip", rawRequest.headers.get("content-encoding"));
+        JSONArray rawEvents = rawRequest.decodeEvents();
+        assertEquals("RawGzipUpload", rawEvents.getJSONObject(rawEvents.length() - 1).getString("event"));
+
+        Log.i(TAG, String.format(Locale.US, "bytes on the wire: form = %d, raw gzip = %d",
+                formRequest.wireBytes, rawRequest.wireBytes));
+        if (formEvents.length() == rawEvents.length()) {
+            assertTrue(rawRequest.body.length < formRequest.body.length);
+        }
+    }
+
+    @Test
+    public void flushSyncReportsResult() throws Exception {
+        FlushRetryPolicy.getInstance().reset();
+        JSONObject properties = new JSONObject();
+        properties.put("content", "flushSync");
+        for (int i = 0; i < 3; i++) {
+            SensorsDataAPI.sharedInstance().track("FlushSync", properties);
+        }
+        long start = System.nanoTime();
+        SAFlushResult result = SensorsDataAPI.sharedInstance().flushSync(10000);
+        Log.i(TAG, String.format(Locale.US, "flushSync: %s in %dms", result, (System.nanoTime() - start) / 1000000));
+        assertFalse(result.isTimeout());
+        assertTrue(result.getUploadedCount() >= 3);
+        assertEquals(0, result.getRemainingCount());
+        assertTrue(result.isSuccess());
+        assertNotNull(mReceiver.take());
+    }
+
+    private void trackAndFlush(String eventName) throws Exception {
+        JSONObject properties = new JSONObject();
+        properties.put("content", "The quick brown fox jumps over the lazy dog");
+        SensorsDataAPI.sharedInstance().track(eventName, properties);
+        Thread.sleep(500);
+        SensorsDataAPI.sharedInstance().flush();
+    }
+
+    private static class Request {
+        final Map<String, String> headers = new HashMap<>();
+        byte[] body;
+        int wireBytes;
+
+        /**
+         * 按照请求格式解析并校验数据
+         */
+        JSONArray decodeEvents() throws Exception {
+            byte[] compressed;
+            if ("gzip".equals(headers.get("content-encoding"))) {
+                CRC32 crc32 = new CRC32();
+                crc32.update(body, 0, body.length);
+                assertEquals(String.valueOf(crc32.getValue()), headers.get("crc"));
+                assertEquals("1", headers.get("gzip"));
+                compressed = body;
+            } else {
+                Uri uri = Uri.parse("http://localhost/?" + new String(body, "UTF-8"));
+                String dataList = uri.getQueryParameter("data_list");
+                assertNotNull(dataList);
+                assertEquals(String.valueOf(dataList.hashCode()), uri.getQueryParameter("crc"));
+                assertEquals("1", uri.getQueryParameter("gzip"));
+                compressed = Base64Coder.decode(dataList);
+            }
+            return new JSONArray(new String(readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))), "UTF-8"));
+        }
+    }
+
+    /**
+     * 只处理单个 POST 请求的 HTTP 接收端，每个连接返回 200 后关闭
+     */
+    private static class LocalReceiver implements Runnable {
+        private final LinkedBlockingQueue<Request> mRequests = new LinkedBlockingQueue<>();
+        private ServerSocket mServerSocket;
+        private volatile boolean mIsRunning;
+
+        void start() throws IOException {
+            mServerSocket = new ServerSocket(0);
+            mIsRunning = true;
+            new Thread(this, "LocalReceiver").start();
+        }
+
+        String getUrl() {
+            return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/sa";
+        }
+
+        Request take() throws InterruptedException {
+            return mRequests.poll(10, TimeUnit.SECONDS);
+        }
+
+        void stop() {
+            mIsRunning = false;
+            try {
+                mServerSocket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+
+        @Override
+        public void run() {
+            while (mIsRunning) {
+                Socket socket = null;
+                try {
+                    socket = mServerSocket.accept();
+                    Request request = readRequest(socket.getInputStream());
+                    OutputStream outputStream = socket.getOutputStream();
+                    outputStream.write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes("UTF-8"));
+                    outputStream.flush();
+                    mRequests.offer(request);
+                } catch (IOException e) {
+                    // 接收端已关闭
+                } finally {
+                    if (socket != null) {
+                        try {
+                            socket.close();
+                        } catch (IOException e) {
+                            // ignore
+                        }
+                    }
+                }
+            }
+        }
+
+        private Request readRequest(InputStream inputStream) throws IOException {
+            Request request = new Request();
+            int headerBytes = 0;
+            String line;
+            while ((line = readLine(inputStream)) != null && !line.isEmpty()) {
+                headerBytes += line.length() + 2;
+                int index = line.indexOf(':');
+                if (index > 0) {
+                    request.headers.put(line.substring(0, index).trim().toLowerCase(Locale.US), line.substring(index + 1).trim());
+                }
+            }
+            String contentLength = request.headers.get("content-length");
+            request.body = new byte[contentLength == null ? 0 : Integer.parseInt(contentLength)];
+            int read = 0;
+            while (read < request.body.length) {
+                int count = inputStream.read(request.body, read, request.body.length - read);
+                if (count < 0) {
+                    throw new IOException("Unexpected end of the request body");
+                }
+                read += count;
+            }
+            request.wireBytes = headerBytes + 2 + request.body.length;
+            return request;
+        }
+
+        private String readLine(InputStream inputStream) throws IOException {
+            StringBuilder builder = new StringBuilder();
+            int c;
+            while ((c = inputStream.read()) != -1) {
+                if (c == '\n') {
+                    break;
+                }
+                if (c != '\r') {
+                    builder.append((char) c);
+                }
+            }
+            return c == -1 && builder.length() == 0 ? null : builder.toString();
+        }
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+        inputStream.close();
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FlushBatchControllerTest {
+    private static final int TARGET_PAYLOAD_SIZE = 64 * 1024;
+    private static final long LATENCY_BUDGET = 3000;
+
+    /**
+     * 批次已满且请求较快时逐步增加条数，直到目标请求体大小对应的条数
+     */
+    @Test
+    public void growWithinPayloadTarget() {
+        FlushBatchController controller = new FlushBatchController();
+        int batchSize = controller.getBatchSize();
+        // 每条 200 字节，64KB 对应 327 条
+        for (int i = 0; i < 100; i++) {
+            batchSize = controller.onBatchUploaded(batchSize, batchSize * 200, 100, false, TARGET_PAYLOAD_SIZE, LATENCY_BUDGET);
+        }
+        assertEquals(TARGET_PAYLOAD_SIZE / 200, batchSize);
+    }
+
+    /**
+     * 大数据量的事件按目标请求体大小缩小批次
+     */
+    @Test
+    public void shrinkForLargeEvents() {
+        FlushBatchController controller = new FlushBatchController();
+        int batchSize = controller.onBatchUploaded(50, 50 * 4096, 100, false, TARGET_PAYLOAD_SIZE, LATENCY_BUDGET);
+        assertEquals(Math.max(FlushBatchController.MIN_BATCH_SIZE, TARGET_PAYLOAD_SIZE / 4096), batchSize);
+    }
+
+    /**
+     * 超时或超出耗时预算时条数减半，不低于最小条数
+     */
+    @Test
+    public void halveOnCongestion() {
+        FlushBatchController controller = new FlushBatchController();
+        assertEquals(FlushBatchController.INITIAL_BATCH_SIZE / 2,
+                controller.onBatchUploaded(50, 5000, 100, true, TARGET_PAYLOAD_SIZE, LATENCY_BUDGET));
+        assertEquals(FlushBatchController.INITIAL_BATCH_SIZE / 4,
+                controller.onBatchUploaded(25, 2500, LATENCY_BUDGET + 1, false, TARGET_PAYLOAD_SIZE, LATENCY_BUDGET));
+        for (int i = 0; i < 10; i++) {
+            controller.onBatchUploaded(0, 0, 0, true, TARGET_PAYLOAD_SIZE, LATENCY_BUDGET);
+        }
+        assertEquals(FlushBatchController.MIN_BATCH_SIZE, controller.getBatchSize());
+    }
+}
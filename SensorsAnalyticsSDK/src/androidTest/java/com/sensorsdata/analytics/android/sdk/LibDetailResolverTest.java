@@ -0,0 +1,84 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk;
+
+import android.util.Log;
+
+import com.sensorsdata.analytics.android.sdk.internal.beans.EventType;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LibDetailResolverTest {
+    private static final String TAG = "LibDetailResolverTest";
+
+    @Test
+    public void resolveCallerOnce() {
+        String libDetail = LibDetailResolver.resolve(LibDetailResolver.CALL_SITE_TRACK_EVENT, EventType.TRACK, null);
+        // 缓存中可能已经是 SDK 内部调用点的位置，这里只校验格式
+        assertEquals(libDetail, 4, libDetail.split("##", -1).length);
+        // 同一调用点直接使用缓存
+        assertEquals(libDetail, LibDetailResolver.resolve(LibDetailResolver.CALL_SITE_TRACK_EVENT, EventType.TRACK, null));
+    }
+
+    @Test
+    public void disableAndSample() {
+        SAConfigOptions configOptions = new SAConfigOptions("");
+        configOptions.disableLibDetail(EventType.PROFILE_SET);
+        assertNull(LibDetailResolver.resolve(LibDetailResolver.CALL_SITE_TRACK_EVENT, EventType.PROFILE_SET, configOptions));
+        configOptions.setLibDetailSampleRate(0);
+        assertNull(LibDetailResolver.resolve(LibDetailResolver.CALL_SITE_TRACK_EVENT, EventType.TRACK, configOptions));
+        configOptions.setLibDetailSampleRate(1);
+        configOptions.disableLibDetail(EventType.ALL);
+        assertNull(LibDetailResolver.resolve(LibDetailResolver.CALL_SITE_TRACK_EVENT, EventType.TRACK, configOptions));
+    }
+
+    /**
+     * 对比每个事件获取完整调用栈和使用 LibDetailResolver 的耗时，结果输出到 logcat，需要手动运行
+     */
+    @Test
+    @Ignore("Benchmark, run manually")
+    public void benchmark() {
+        final int count = 20000;
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            StackTraceElement[] trace = (new Exception()).getStackTrace();
+            StackTraceElement traceElement = trace[0];
+            sink += String.format("%s##%s##%s##%s", traceElement.getClassName(), traceElement.getMethodName(),
+                    traceElement.getFileName(), traceElement.getLineNumber()).length();
+        }
+        long stackTraceNanos = System.nanoTime() - start;
+
+        String libDetail = null;
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            libDetail = LibDetailResolver.resolve(LibDetailResolver.CALL_SITE_TRACK_ITEM, EventType.TRACK, null);
+            sink += libDetail.length();
+        }
+        long resolverNanos = System.nanoTime() - start;
+        Log.i(TAG, String.format(Locale.US, "$lib_detail per event: stack trace = %dns, resolver = %dns (%d)",
+                stackTraceNanos / count, resolverNanos / count, sink));
+        assertEquals(libDetail, 4, libDetail.split("##", -1).length);
+    }
+}
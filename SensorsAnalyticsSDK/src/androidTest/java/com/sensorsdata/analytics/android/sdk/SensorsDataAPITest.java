@@ -324,7 +324,7 @@ public class SensorsDataAPITest {
             assertNotNull(cursor);
             int dataIndex = cursor.getColumnIndex("data");
             cursor.moveToNext();
-            JSONObject jsonObjectData = new JSONObject(cursor.getString(dataIndex));
+            JSONObject jsonObjectData = new JSONObject(new String(cursor.getBlob(dataIndex), "UTF-8"));
             Date dateReal = new Date(jsonObjectData.optLong("time"));
             Date dateCurr = new Date(System.currentTimeMillis());
             assertEquals(dateCurr.getYear(), dateReal.getYear());
@@ -344,7 +344,7 @@ public class SensorsDataAPITest {
             assertNotNull(cursor);
             dataIndex = cursor.getColumnIndex("data");
             cursor.moveToNext();
-            jsonObjectData = new JSONObject(cursor.getString(dataIndex));
+            jsonObjectData = new JSONObject(new String(cursor.getBlob(dataIndex), "UTF-8"));
             dateReal = new Date(jsonObjectData.optLong("time"));
             dateCurr = new Date(System.currentTimeMillis());
             assertNotEquals(dateCurr.getYear(), dateReal.getYear());
@@ -0,0 +1,107 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk;
+
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * session 数据只在 session 切换、定时、退到后台时写入存储，进程被杀后重新读取的数据仍能延续 session
+ */
+@RunWith(AndroidJUnit4.class)
+public class SessionRelatedManagerTest {
+    private static final String TAG = "SessionRelatedManagerTest";
+    private static final long MINUTE = 60 * 1000;
+
+    @Before
+    public void setUp() {
+        SensorsDataAPI.startWithConfigOptions(ApplicationProvider.getApplicationContext(),
+                new SAConfigOptions(""));
+        SensorsDataAPI.getConfigOptions().enableSession(true);
+    }
+
+    @Test
+    public void writesPerThousandEvents() throws Exception {
+        SessionRelatedManager manager = new SessionRelatedManager();
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            manager.handleEventOfSession("Test", new JSONObject(), time + i * 10);
+        }
+        int writes = manager.getPersistCount();
+        Log.i(TAG, String.format(Locale.US, "session writes per 1000 events: %d (one write per event before)", writes));
+        assertTrue(writes < 10);
+    }
+
+    @Test
+    public void restartWithinSessionInterval() throws Exception {
+        long time = System.currentTimeMillis();
+        // 在不同的位置模拟进程被杀，不调用 persistSessionData
+        for (int killAt : new int[]{1, 2, 17, 300}) {
+            SessionRelatedManager manager = new SessionRelatedManager();
+            String sessionId = null;
+            for (int i = 0; i < killAt; i++) {
+                time += 1000;
+                JSONObject property = new JSONObject();
+                manager.handleEventOfSession("Test", property, time);
+                sessionId = property.getString(manager.EVENT_SESSION_ID);
+            }
+            assertNotNull(sessionId);
+            SessionRelatedManager restarted = new SessionRelatedManager();
+            time += MINUTE;
+            JSONObject property = new JSONObject();
+            restarted.handleEventOfSession("Test", property, time);
+            assertEquals("kill after " + killAt + " events", sessionId, property.getString(restarted.EVENT_SESSION_ID));
+        }
+    }
+
+    @Test
+    public void persistBeforeKill() throws Exception {
+        SessionRelatedManager manager = new SessionRelatedManager();
+        long time = System.currentTimeMillis() + 60 * MINUTE;
+        JSONObject property = new JSONObject();
+        manager.handleEventOfSession("Test", property, time);
+        String sessionId = property.getString(manager.EVENT_SESSION_ID);
+        // 只在内存中更新的 lastEventTime，退到后台时写入存储
+        time += 20 * MINUTE;
+        manager.handleEventOfSession("Test", new JSONObject(), time);
+        manager.persistSessionData();
+
+        SessionRelatedManager restarted = new SessionRelatedManager();
+        property = new JSONObject();
+        restarted.handleEventOfSession("Test", property, time + 29 * MINUTE);
+        assertEquals(sessionId, property.getString(restarted.EVENT_SESSION_ID));
+
+        property = new JSONObject();
+        restarted.handleEventOfSession("Test", property, time + 29 * MINUTE + 31 * MINUTE);
+        assertNotEquals(sessionId, property.getString(restarted.EVENT_SESSION_ID));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk;
+
+import android.os.Debug;
+import android.util.Log;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class TrackIdGeneratorTest {
+    private static final String TAG = "TrackIdGeneratorTest";
+
+    @Test
+    public void uniqueWithinProcess() {
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < 200000; i++) {
+            ids.add(TrackIdGenerator.nextId());
+        }
+        assertEquals(200000, ids.size());
+    }
+
+    /**
+     * 对比每次创建 SecureRandom 和 TrackIdGenerator 的生成速度与内存分配，结果输出到 logcat，需要手动运行
+     */
+    @Test
+    @Ignore("Benchmark, run manually")
+    @SuppressWarnings("deprecation")
+    public void benchmark() {
+        final int count = 20000;
+        int sink = 0;
+        int[] ids = new int[count];
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocSize();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            sink += new SecureRandom().nextInt();
+        }
+        long secureRandomNanos = System.nanoTime() - start;
+        long secureRandomBytes = Debug.getThreadAllocSize();
+
+        Debug.resetThreadAllocSize();
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            ids[i] = TrackIdGenerator.nextId();
+        }
+        long generatorNanos = System.nanoTime() - start;
+        long generatorBytes = Debug.getThreadAllocSize();
+        Debug.stopAllocCounting();
+
+        Log.i(TAG, String.format(Locale.US, "new SecureRandom(): %d ids/s, %d bytes/id; TrackIdGenerator: %d ids/s, %d bytes/id (%d)",
+                count * 1000000000L / Math.max(1, secureRandomNanos), secureRandomBytes / count,
+                count * 1000000000L / Math.max(1, generatorNanos), generatorBytes / count, sink));
+        Arrays.sort(ids);
+        for (int i = 1; i < count; i++) {
+            assertNotEquals(ids[i - 1], ids[i]);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk;
+
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrackTaskQueueTest {
+    private static final String TAG = "TrackTaskQueueTest";
+
+    private static class IndexTask implements Runnable {
+        final int index;
+
+        IndexTask(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    private static int[] drainIndexes(TrackTaskQueue queue) throws InterruptedException {
+        Runnable[] tasks = new Runnable[64];
+        int count = queue.drainTo(tasks, false);
+        int[] indexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = ((IndexTask) tasks[i]).index;
+        }
+        return indexes;
+    }
+
+    @Test
+    public void dropOldest() throws InterruptedException {
+        TrackTaskQueue queue = new TrackTaskQueue(3, TrackQueueOverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(queue.offer(new IndexTask(i)));
+        }
+        assertEquals(2, queue.getDroppedCount());
+        assertTrue(Arrays.equals(new int[]{2, 3, 4}, drainIndexes(queue)));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void dropNewest() throws InterruptedException {
+        TrackTaskQueue queue = new TrackTaskQueue(3, TrackQueueOverflowPolicy.DROP_NEWEST);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i < 3, queue.offer(new IndexTask(i)));
+        }
+        assertEquals(2, queue.getDroppedCount());
+        assertTrue(Arrays.equals(new int[]{0, 1, 2}, drainIndexes(queue)));
+    }
+
+    @Test
+    public void sample() throws InterruptedException {
+        TrackTaskQueue queue = new TrackTaskQueue(3, TrackQueueOverflowPolicy.SAMPLE);
+        for (int i = 0; i < 23; i++) {
+            queue.offer(new IndexTask(i));
+        }
+        // 溢出的 20 个任务中保留了第 10 个和第 20 个
+        assertEquals(20, queue.getDroppedCount());
+        assertTrue(Arrays.equals(new int[]{2, 12, 22}, drainIndexes(queue)));
+    }
+
+    @Test
+    public void blockThenDrop() {
+        TrackTaskQueue queue = new TrackTaskQueue(1, TrackQueueOverflowPolicy.BLOCK);
+        assertTrue(queue.offer(new IndexTask(0)));
+        long start = System.nanoTime();
+        assertFalse(queue.offer(new IndexTask(1)));
+        assertTrue(System.nanoTime() - start >= 10 * 1000 * 1000);
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    public void controlTasksNeverDropped() throws InterruptedException {
+        TrackTaskQueue queue = new TrackTaskQueue(2, TrackQueueOverflowPolicy.DROP_OLDEST);
+        queue.put(new IndexTask(0));
+        assertTrue(queue.offer(new IndexTask(1)));
+        queue.put(new IndexTask(2));
+        assertTrue(queue.offer(new IndexTask(3)));
+        // 超出容量时丢弃最早的事件任务 1，控制任务保持原有顺序
+        assertTrue(queue.offer(new IndexTask(4)));
+        queue.put(new IndexTask(5));
+        queue.put(new IndexTask(6));
+        assertEquals(1, queue.getDroppedCount());
+        assertTrue(Arrays.equals(new int[]{0, 2, 3, 4, 5, 6}, drainIndexes(queue)));
+    }
+
+    @Test
+    public void blockNotOnMainThread() {
+        final TrackTaskQueue queue = new TrackTaskQueue(1, TrackQueueOverflowPolicy.BLOCK);
+        assertTrue(queue.offer(new IndexTask(0)));
+        final long[] cost = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                assertFalse(queue.offer(new IndexTask(1)));
+                cost[0] = System.nanoTime() - start;
+            }
+        });
+        assertTrue(cost[0] < 10 * 1000 * 1000);
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    /**
+     * 主线程中 BLOCK 不等待，与 DROP_NEWEST 的结果相同
+     */
+    @Test
+    public void blockOnMainThreadDropsNewest() throws InterruptedException {
+        final TrackTaskQueue blockQueue = new TrackTaskQueue(2, TrackQueueOverflowPolicy.BLOCK);
+        final TrackTaskQueue dropNewestQueue = new TrackTaskQueue(2, TrackQueueOverflowPolicy.DROP_NEWEST);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 4; i++) {
+                    blockQueue.offer(new IndexTask(i));
+                    dropNewestQueue.offer(new IndexTask(i));
+                }
+            }
+        });
+        assertEquals(2, blockQueue.getDroppedCount());
+        assertEquals(dropNewestQueue.getDroppedCount(), blockQueue.getDroppedCount());
+        assertTrue(Arrays.equals(new int[]{0, 1}, drainIndexes(blockQueue)));
+        assertTrue(Arrays.equals(new int[]{0, 1}, drainIndexes(dropNewestQueue)));
+    }
+
+    /**
+     * 8 个线程同时写入时 offer 的耗时，结果输出到 logcat，需要手动运行
+     */
+    @Test
+    @Ignore("Benchmark, run manually")
+    public void producerLatency() throws Exception {
+        final int producers = 8;
+        final int tasksPerProducer = 20000;
+        final TrackTaskQueue queue = new TrackTaskQueue(TrackTaskManager.DEFAULT_CAPACITY, TrackQueueOverflowPolicy.BLOCK);
+        final AtomicInteger consumed = new AtomicInteger();
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                consumed.incrementAndGet();
+            }
+        };
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Runnable[] tasks = new Runnable[64];
+                try {
+                    while (consumed.get() + queue.getDroppedCount() < producers * tasksPerProducer) {
+                        int count = queue.drainTo(tasks, true);
+                        for (int i = 0; i < count; i++) {
+                            tasks[i].run();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        });
+        consumer.start();
+        final long[][] latencies = new long[producers][tasksPerProducer];
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch doneLatch = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            final long[] producerLatencies = latencies[p];
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int i = 0; i < tasksPerProducer; i++) {
+                            long start = System.nanoTime();
+                            queue.offer(task);
+                            producerLatencies[i] = System.nanoTime() - start;
+                        }
+                    } catch (InterruptedException e) {
+                        // ignore
+                    } finally {
+                        doneLatch.countDown();
+                    }
+                }
+            }).start();
+        }
+        startLatch.countDown();
+        doneLatch.await();
+        consumer.join(10 * 1000);
+        assertEquals(producers * tasksPerProducer, consumed.get() + queue.getDroppedCount());
+
+        long[] all = new long[producers * tasksPerProducer];
+        for (int p = 0; p < producers; p++) {
+            System.arraycopy(latencies[p], 0, all, p * tasksPerProducer, tasksPerProducer);
+        }
+        Arrays.sort(all);
+        Log.i(TAG, String.format(Locale.US, "offer latency with %d producers: p50 = %dns, p99 = %dns, max = %dns, dropped = %d",
+                producers, all[all.length / 2], all[all.length * 99 / 100], all[all.length - 1], queue.getDroppedCount()));
+    }
+}
@@ -11,16 +11,19 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.sensorsdata.analytics.android.sdk.data.adapter.DbAdapter;
 import com.sensorsdata.analytics.android.sdk.data.adapter.DbParams;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(AndroidJUnit4.class)
 public class DbAdapterTest {
@@ -98,4 +101,55 @@ public class DbAdapterTest {
             ex.printStackTrace();
         }
     }
+
+    @Test
+    public void cleanupEvents() {
+        try {
+            DbAdapter.getInstance().deleteAllEvents();
+            Thread.sleep(1000);
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put("test", "test");
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i + 1, DbAdapter.getInstance().addJSON(jsonObject));
+            }
+            String[] eventsData = DbAdapter.getInstance().generateDataString(DbParams.TABLE_EVENTS, 4);
+            assertNotNull(eventsData);
+            // 删除后内存中的计数需要与数据库保持一致
+            int count = DbAdapter.getInstance().cleanupEvents(eventsData[0]);
+            assertEquals(6, count);
+            ContentResolver resolver = context.getContentResolver();
+            Cursor cursor = resolver.query(mUri, null, null, null, null);
+            assertNotNull(cursor);
+            assertEquals(count, cursor.getCount());
+            cursor.close();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    @Test
+    public void writeData() {
+        try {
+            DbAdapter.getInstance().deleteAllEvents();
+            Thread.sleep(1000);
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put("test", "test");
+            for (int i = 0; i < 3; i++) {
+                DbAdapter.getInstance().addJSON(jsonObject);
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            String[] eventsData = DbAdapter.getInstance().writeData(DbParams.TABLE_EVENTS, null, 50, outputStream);
+            assertNotNull(eventsData);
+            assertEquals("3", eventsData[3]);
+            String lastId = eventsData[0];
+            // 写入的数据与 generateDataString 的格式一致
+            JSONArray jsonArray = new JSONArray(outputStream.toString("UTF-8"));
+            assertEquals(3, jsonArray.length());
+            assertEquals("test", jsonArray.getJSONObject(0).getString("test"));
+            assertTrue(jsonArray.getJSONObject(2).has("_flush_time"));
+            assertEquals(lastId, DbAdapter.getInstance().generateDataString(DbParams.TABLE_EVENTS, 50)[0]);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
 }
@@ -0,0 +1,253 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.data.adapter;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ContentProvider、直接访问数据库和分段日志文件需要满足相同的读写约定
+ */
+@RunWith(AndroidJUnit4.class)
+public class DataAccessorTest {
+    private static Context context;
+    private static Uri mUri;
+
+    @BeforeClass
+    public static void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        mUri = Uri.parse("content://" + context.getPackageName() + ".SensorsDataContentProvider/" + DbParams.TABLE_EVENTS);
+    }
+
+    private static IDataAccessor[] accessors() {
+        return new IDataAccessor[]{
+                new ProviderDataAccessor(context),
+                new SQLiteDataAccessor(context),
+                new SegmentLogDataAccessor(context, new SQLiteDataAccessor(context))
+        };
+    }
+
+    private static ContentValues event(String data) {
+        byte[] bytes = data.getBytes(DataOperation.CHARSET_UTF8);
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 0, bytes.length);
+        ContentValues values = new ContentValues();
+        values.put(DbParams.KEY_DATA, bytes);
+        values.put(DbParams.KEY_CRC, crc32.getValue());
+        values.put(DbParams.KEY_CREATED_AT, System.currentTimeMillis());
+        return values;
+    }
+
+    private static String readData(Cursor cursor) {
+        byte[] data = DataOperation.readData(cursor, cursor.getColumnIndex(DbParams.KEY_DATA),
+                cursor.getColumnIndex(DbParams.KEY_CRC), new CRC32());
+        return data == null ? null : new String(data, DataOperation.CHARSET_UTF8);
+    }
+
+    @Test
+    public void insertAndCount() {
+        for (IDataAccessor accessor : accessors()) {
+            accessor.delete(mUri, null, null);
+            assertEquals(0, accessor.queryCount(mUri));
+            accessor.insert(mUri, event("{\"index\":1}"));
+            assertEquals(accessor.getClass().getSimpleName(), 1, accessor.queryCount(mUri));
+        }
+    }
+
+    @Test
+    public void bulkInsertAndQuery() {
+        for (IDataAccessor accessor : accessors()) {
+            accessor.delete(mUri, null, null);
+            ContentValues[] values = new ContentValues[10];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = event("{\"index\":" + i + "}");
+            }
+            accessor.bulkInsert(mUri, values);
+            assertEquals(accessor.getClass().getSimpleName(), 10, accessor.queryCount(mUri));
+            Cursor cursor = accessor.queryEvents(mUri, null, 5);
+            assertNotNull(cursor);
+            assertEquals(5, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals("{\"index\":0}", readData(cursor));
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void deleteByLastId() {
+        for (IDataAccessor accessor : accessors()) {
+            accessor.delete(mUri, null, null);
+            for (int i = 0; i < 6; i++) {
+                accessor.insert(mUri, event("{\"index\":" + i + "}"));
+            }
+            Cursor cursor = accessor.queryEvents(mUri, null, 4);
+            assertNotNull(cursor);
+            assertTrue(cursor.moveToLast());
+            String lastId = cursor.getString(cursor.getColumnIndex("_id"));
+            cursor.close();
+            assertEquals(accessor.getClass().getSimpleName(), 4, accessor.delete(mUri, "_id <= ?", new String[]{lastId}));
+            assertEquals(2, accessor.queryCount(mUri));
+        }
+    }
+
+    @Test
+    public void deleteRangeOutOfOrder() {
+        for (IDataAccessor accessor : accessors()) {
+            String name = accessor.getClass().getSimpleName();
+            accessor.delete(mUri, null, null);
+            for (int i = 0; i < 6; i++) {
+                accessor.insert(mUri, event("{\"index\":" + i + "}"));
+            }
+            String firstLastId = lastId(accessor.queryEvents(mUri, null, 2));
+            String secondLastId = lastId(accessor.queryEvents(mUri, firstLastId, 2));
+            // 第二批先确认
+            assertEquals(name, 2, accessor.delete(mUri, "_id > ? AND _id <= ?", new String[]{firstLastId, secondLastId}));
+            assertEquals(name, 4, accessor.queryCount(mUri));
+            Cursor cursor = accessor.queryEvents(mUri, null, 10);
+            assertNotNull(cursor);
+            assertEquals(name, 4, cursor.getCount());
+            assertTrue(cursor.moveToPosition(2));
+            assertEquals("{\"index\":4}", readData(cursor));
+            cursor.close();
+            assertEquals(name, 2, accessor.delete(mUri, "_id <= ?", new String[]{firstLastId}));
+            assertEquals(name, 2, accessor.queryCount(mUri));
+        }
+    }
+
+    private static String lastId(Cursor cursor) {
+        assertNotNull(cursor);
+        assertTrue(cursor.moveToLast());
+        String lastId = cursor.getString(cursor.getColumnIndex("_id"));
+        cursor.close();
+        return lastId;
+    }
+
+    @Test
+    public void truncateIncompleteRecord() throws Exception {
+        IDataAccessor accessor = new SegmentLogDataAccessor(context, new SQLiteDataAccessor(context));
+        accessor.delete(mUri, null, null);
+        for (int i = 0; i < 3; i++) {
+            accessor.insert(mUri, event("{\"index\":" + i + "}"));
+        }
+        // 模拟写入过程中进程被杀，日志末尾只有半条记录
+        File[] segments = new File(context.getFilesDir(), "sensorsdata_event_log").listFiles();
+        assertNotNull(segments);
+        File lastSegment = null;
+        for (File segment : segments) {
+            if (segment.getName().endsWith(".log") && (lastSegment == null || segment.getName().compareTo(lastSegment.getName()) > 0)) {
+                lastSegment = segment;
+            }
+        }
+        assertNotNull(lastSegment);
+        long length = lastSegment.length();
+        FileOutputStream outputStream = new FileOutputStream(lastSegment, true);
+        outputStream.write(new byte[]{0, 0, 0, 100, 1, 2});
+        outputStream.close();
+
+        IDataAccessor reopened = new SegmentLogDataAccessor(context, new SQLiteDataAccessor(context));
+        assertEquals(3, reopened.queryCount(mUri));
+        assertEquals(length, lastSegment.length());
+        reopened.insert(mUri, event("{\"index\":3}"));
+        Cursor cursor = reopened.queryEvents(mUri, null, 10);
+        assertNotNull(cursor);
+        assertEquals(4, cursor.getCount());
+        assertTrue(cursor.moveToLast());
+        assertEquals("{\"index\":3}", readData(cursor));
+        cursor.close();
+    }
+
+    @Test
+    public void readLegacyTextData() {
+        IDataAccessor accessor = new SQLiteDataAccessor(context);
+        accessor.delete(mUri, null, null);
+        String json = "{\"index\":0}";
+        ContentValues values = new ContentValues();
+        values.put(DbParams.KEY_DATA, json + "\t" + json.hashCode());
+        values.put(DbParams.KEY_CREATED_AT, System.currentTimeMillis());
+        // 旧版本写入的数据没有 crc 字段
+        new ProviderDataAccessor(context).insert(mUri, values);
+        values.put(DbParams.KEY_DATA, json + "\t" + (json.hashCode() + 1));
+        new ProviderDataAccessor(context).insert(mUri, values);
+        Cursor cursor = accessor.queryEvents(mUri, null, 10);
+        assertNotNull(cursor);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(json, readData(cursor));
+        assertTrue(cursor.moveToNext());
+        assertNull(readData(cursor));
+        cursor.close();
+    }
+
+    /**
+     * 子进程通过 ContentProvider 写入的数据不经过主进程的计数，写入后需要重新统计
+     */
+    @Test
+    public void countAfterProviderInsert() throws Exception {
+        IDataAccessor accessor = new SQLiteDataAccessor(context);
+        accessor.delete(mUri, null, null);
+        EventDataOperation operation = new EventDataOperation(context, accessor);
+        operation.insertData(mUri, new JSONObject("{\"index\":0}"), true, 0);
+        assertEquals(1, operation.queryDataCount(mUri));
+        new ProviderDataAccessor(context).insert(mUri, event("{\"index\":1}"));
+        assertEquals(2, operation.queryDataCount(mUri));
+    }
+
+    @Test
+    public void flushHighPriorityFirst() throws Exception {
+        IDataAccessor[] accessors = {new ProviderDataAccessor(context), new SQLiteDataAccessor(context)};
+        for (IDataAccessor accessor : accessors) {
+            String name = accessor.getClass().getSimpleName();
+            accessor.delete(mUri, null, null);
+            EventDataOperation operation = new EventDataOperation(context, accessor);
+            operation.insertData(mUri, new JSONObject("{\"index\":0}"), true, -1);
+            operation.insertData(mUri, new JSONObject("{\"index\":1}"), true, 0);
+            operation.insertData(mUri, new JSONObject("{\"index\":2}"), true, 1);
+            operation.insertData(mUri, new JSONObject("{\"index\":3}"), true, 0);
+            String[] eventsData = operation.queryData(mUri, null, 10, true);
+            assertNotNull(name, eventsData);
+            assertEquals(name, "1", eventsData[3]);
+            assertTrue(name, eventsData[1].contains("\"index\":2"));
+            operation.deleteHighPriorityData(mUri, eventsData[0]);
+            assertEquals(name, 3, accessor.queryCount(mUri));
+            assertNull(name, operation.queryData(mUri, null, 10, true));
+            // 其余数据仍按写入顺序上报
+            eventsData = operation.queryData(mUri, null, 10);
+            assertNotNull(name, eventsData);
+            assertEquals(name, "3", eventsData[3]);
+            assertTrue(name, eventsData[1].indexOf("\"index\":0") < eventsData[1].indexOf("\"index\":3"));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.data.adapter;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.sensorsdata.analytics.android.sdk.encrypt.EventStoreCipher;
+import com.sensorsdata.analytics.android.sdk.encrypt.IPersistentSecretKey;
+import com.sensorsdata.analytics.android.sdk.encrypt.SAEncryptListener;
+import com.sensorsdata.analytics.android.sdk.encrypt.SecreteKey;
+import com.sensorsdata.analytics.android.sdk.encrypt.SensorsDataEncrypt;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(AndroidJUnit4.class)
+public class EncryptDataOperationTest {
+    private static final Uri EVENT_URI = Uri.parse("content://com.sensorsdata.analytics.android.sdk.test/" + DbParams.TABLE_EVENTS);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * 还没有公钥时整批加密的数据按明文上报，不能和旧的密文数据放在同一批中，也不能被一起删除
+     */
+    @Test
+    public void mixedRowsWithoutPublicKey() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        EventStoreCipher cipher = EventStoreCipher.create(context, true);
+        assertNotNull(cipher);
+        byte[] legacyRow = new JSONObject().put("ekey", "ekey_value").put("pkv", 1).put("payloads", "payload")
+                .toString().getBytes(UTF8);
+        MemoryDataAccessor accessor = new MemoryDataAccessor();
+        accessor.add(legacyRow);
+        accessor.add(cipher.seal(new JSONObject().put("event", "Sealed").toString().getBytes(UTF8)));
+        accessor.add(new JSONObject().put("event", "Plain").toString().getBytes(UTF8));
+        accessor.add(legacyRow);
+        SensorsDataEncrypt sensorsDataEncrypt = new SensorsDataEncrypt(context, new IPersistentSecretKey() {
+            @Override
+            public void saveSecretKey(SecreteKey secreteKey) {
+            }
+
+            @Override
+            public SecreteKey loadSecretKey() {
+                return null;
+            }
+        }, new ArrayList<SAEncryptListener>());
+        EncryptDataOperation operation = new EncryptDataOperation(context, accessor, sensorsDataEncrypt, true);
+
+        // 第一批只包含旧的密文数据
+        String[] result = operation.queryData(EVENT_URI, 10);
+        assertNotNull(result);
+        assertEquals("1", result[0]);
+        assertEquals(DbParams.GZIP_DATA_ENCRYPT, result[2]);
+        assertEquals("1", result[3]);
+        JSONArray data = new JSONArray(result[1]);
+        assertEquals(1, data.length());
+        assertEquals("payload", data.getJSONObject(0).getJSONArray("payloads").getString(0));
+
+        // 第二批是整批加密失败后按明文上报的数据
+        result = operation.queryData(EVENT_URI, result[0], 10, false);
+        assertNotNull(result);
+        assertEquals("3", result[0]);
+        assertEquals(DbParams.GZIP_DATA_EVENT, result[2]);
+        assertEquals("2", result[3]);
+        data = new JSONArray(result[1]);
+        assertEquals(2, data.length());
+        assertEquals("Sealed", data.getJSONObject(0).getString("event"));
+        assertEquals("Plain", data.getJSONObject(1).getString("event"));
+
+        result = operation.queryData(EVENT_URI, result[0], 10, false);
+        assertNotNull(result);
+        assertEquals("4", result[0]);
+        assertEquals(DbParams.GZIP_DATA_ENCRYPT, result[2]);
+        assertNull(operation.queryData(EVENT_URI, result[0], 10, false));
+    }
+
+    private static class MemoryDataAccessor implements IDataAccessor {
+        private final List<byte[]> mRows = new ArrayList<>();
+
+        void add(byte[] data) {
+            mRows.add(data);
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            return null;
+        }
+
+        @Override
+        public int bulkInsert(Uri uri, ContentValues[] values) {
+            return 0;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+            return null;
+        }
+
+        @Override
+        public Cursor queryEvents(Uri uri, String afterId, int limit) {
+            MatrixCursor cursor = new MatrixCursor(new String[]{"_id", DbParams.KEY_DATA});
+            int start = afterId == null ? 0 : Integer.parseInt(afterId);
+            for (int i = start; i < mRows.size() && cursor.getCount() < limit; i++) {
+                cursor.addRow(new Object[]{i + 1, mRows.get(i)});
+            }
+            return cursor;
+        }
+
+        @Override
+        public boolean isPrioritySupported() {
+            return false;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public int queryCount(Uri uri) {
+            return mRows.size();
+        }
+
+        @Override
+        public long getStorageSize() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sensorsdata.analytics.android.sdk.data.adapter;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class EventGroupCommitterTest {
+    private static final Uri EVENT_URI = Uri.parse("content://com.sensorsdata.analytics.android.sdk.test/" + DbParams.TABLE_EVENTS);
+
+    @Test
+    public void immediateCommit() {
+        MemoryDataAccessor accessor = new MemoryDataAccessor();
+        EventGroupCommitter committer = new EventGroupCommitter(accessor);
+        assertTrue(committer.add(EVENT_URI, new ContentValues(), true));
+        assertEquals(1, accessor.mRows.get());
+        assertEquals(0, committer.size());
+    }
+
+    @Test
+    public void groupCommit() throws InterruptedException {
+        MemoryDataAccessor accessor = new MemoryDataAccessor();
+        EventGroupCommitter committer = new EventGroupCommitter(accessor);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(committer.add(EVENT_URI, new ContentValues(), false));
+        }
+        // 未到合并提交时间，数据仍在内存中
+        assertEquals(0, accessor.mRows.get());
+        assertEquals(3, committer.size());
+        // 立即写入的数据连同之前缓存的数据一起提交
+        assertTrue(committer.add(EVENT_URI, new ContentValues(), true));
+        assertEquals(4, accessor.mRows.get());
+        assertEquals(1, accessor.mBulkInserts.get());
+
+        assertTrue(committer.add(EVENT_URI, new ContentValues(), false));
+        for (int i = 0; i < 50 && committer.size() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(5, accessor.mRows.get());
+    }
+
+    @Test
+    public void commitFailed() {
+        MemoryDataAccessor accessor = new MemoryDataAccessor();
+        accessor.mIsFailed = true;
+        final AtomicInteger failedCount = new AtomicInteger();
+        EventGroupCommitter committer = new EventGroupCommitter(accessor) {
+            @Override
+            void onCommitFailed(int count) {
+                failedCount.addAndGet(count);
+            }
+        };
+        assertTrue(committer.add(EVENT_URI, new ContentValues(), false));
+        assertFalse(committer.add(EVENT_URI, new ContentValues(), true));
+        assertEquals(2, failedCount.get());
+        assertEquals(0, committer.size());
+        assertEquals(0, committer.commit());
+    }
+
+    private static class MemoryDataAccessor implements IDataAccessor {
+        private final AtomicInteger mRows = new AtomicInteger();
+        private final AtomicInteger mBulkInserts = new AtomicInteger();
+        private volatile boolean mIsFailed;
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            if (mIsFailed) {
+                return uri;
+            }
+            return ContentUris.withAppendedId(uri, mRows.incrementAndGet());
+        }
+
+        @Override
+        public int bulkInsert(Uri uri, ContentValues[] values) {
+            mBulkInserts.incrementAndGet();
+            if (mIsFailed) {
+                return 0;
+            }
+            mRows.addAndGet(values.length);
+            return values.length;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+            return null;
+        }
+
+        @Override
+        public Cursor queryEvents(Uri uri, String afterId, int limit) {
+            return null;
+        }
+
+        @Override
+        public boolean isPrioritySupported() {
+            return false;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public int queryCount(Uri uri) {
+            return mRows.get();
+        }
+
+        @Override
+        public long getStorageSize() {
+            return 0;
+        }
+    }
+}
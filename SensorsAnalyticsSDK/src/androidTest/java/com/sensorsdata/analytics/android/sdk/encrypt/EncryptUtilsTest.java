@@ -0,0 +1,148 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.encrypt;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.sensorsdata.analytics.android.sdk.util.Base64Coder;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.Charset;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(AndroidJUnit4.class)
+public class EncryptUtilsTest {
+    private static final String TAG = "SA.EncryptUtilsTest";
+    private static final int ITERATIONS = 1000;
+
+    @Test
+    public void symmetricEncrypt() throws Exception {
+        byte[] key = EncryptUtils.generateSymmetricKey(SymmetricEncryptMode.AES);
+        byte[] content = "{\"event\":\"$AppClick\"}".getBytes(Charset.forName("UTF-8"));
+        for (int i = 0; i < 2; i++) {
+            byte[] encrypted = Base64Coder.decode(EncryptUtils.symmetricEncrypt(key, content, SymmetricEncryptMode.AES));
+            Cipher cipher = Cipher.getInstance(SymmetricEncryptMode.AES.transformation);
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(encrypted, 0, 16));
+            assertArrayEquals(content, cipher.doFinal(encrypted, 16, encrypted.length - 16));
+        }
+    }
+
+    @Test
+    public void publicKeyEncrypt() throws Exception {
+        KeyPair keyPair = generateRSAKeyPair();
+        String publicKey = new String(Base64Coder.encode(keyPair.getPublic().getEncoded()));
+        byte[] aesKey = EncryptUtils.generateSymmetricKey(SymmetricEncryptMode.AES);
+        PublicKey parsedKey = EncryptUtils.getPublicKey(publicKey, "RSA");
+        assertSame(parsedKey, EncryptUtils.getPublicKey(publicKey, "RSA"));
+        for (int i = 0; i < 2; i++) {
+            String encrypted = EncryptUtils.encryptAESKey(publicKey, aesKey, "RSA");
+            assertNotNull(encrypted);
+            Cipher cipher = Cipher.getInstance("RSA/None/PKCS1Padding");
+            cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+            assertArrayEquals(aesKey, cipher.doFinal(Base64Coder.decode(encrypted)));
+        }
+        // 公钥更新后重新解析
+        String newPublicKey = new String(Base64Coder.encode(generateRSAKeyPair().getPublic().getEncoded()));
+        PublicKey newParsedKey = EncryptUtils.getPublicKey(newPublicKey, "RSA");
+        assertArrayEquals(Base64Coder.decode(newPublicKey), newParsedKey.getEncoded());
+    }
+
+    /**
+     * 对比每次创建 Cipher、KeyFactory 和缓存后的 AES、RSA 加密耗时，结果输出到 logcat，需要手动运行
+     */
+    @Test
+    @Ignore("Benchmark, run manually")
+    public void benchmark() throws Exception {
+        byte[] aesKey = EncryptUtils.generateSymmetricKey(SymmetricEncryptMode.AES);
+        byte[] content = new byte[600];
+        Arrays.fill(content, (byte) 'a');
+        KeyPair keyPair = generateRSAKeyPair();
+        String publicKey = new String(Base64Coder.encode(keyPair.getPublic().getEncoded()));
+        String aesEncrypted = null;
+        String rsaEncrypted = null;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            byte[] ivBytes = new byte[16];
+            new SecureRandom().nextBytes(ivBytes);
+            Cipher cipher = Cipher.getInstance(SymmetricEncryptMode.AES.transformation);
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(aesKey, "AES"), new IvParameterSpec(ivBytes));
+            cipher.doFinal(content);
+        }
+        long aesUncachedNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            aesEncrypted = EncryptUtils.symmetricEncrypt(aesKey, content, SymmetricEncryptMode.AES);
+        }
+        long aesCachedNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+            PublicKey rsaPublicKey = keyFactory.generatePublic(new X509EncodedKeySpec(Base64Coder.decode(publicKey)));
+            Cipher cipher = Cipher.getInstance("RSA/None/PKCS1Padding");
+            cipher.init(Cipher.ENCRYPT_MODE, rsaPublicKey);
+            cipher.doFinal(aesKey);
+        }
+        long rsaUncachedNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            rsaEncrypted = EncryptUtils.encryptAESKey(publicKey, aesKey, "RSA");
+        }
+        long rsaCachedNanos = System.nanoTime() - start;
+
+        Log.i(TAG, String.format(Locale.US, "AES: uncached = %dns, cached = %dns per call",
+                aesUncachedNanos / ITERATIONS, aesCachedNanos / ITERATIONS));
+        Log.i(TAG, String.format(Locale.US, "RSA: uncached = %dns, cached = %dns per call",
+                rsaUncachedNanos / ITERATIONS, rsaCachedNanos / ITERATIONS));
+
+        byte[] encrypted = Base64Coder.decode(aesEncrypted);
+        Cipher cipher = Cipher.getInstance(SymmetricEncryptMode.AES.transformation);
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(aesKey, "AES"), new IvParameterSpec(encrypted, 0, 16));
+        assertArrayEquals(content, cipher.doFinal(encrypted, 16, encrypted.length - 16));
+        cipher = Cipher.getInstance("RSA/None/PKCS1Padding");
+        cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+        assertArrayEquals(aesKey, cipher.doFinal(Base64Coder.decode(rsaEncrypted)));
+    }
+
+    private static KeyPair generateRSAKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.encrypt;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.sensorsdata.analytics.android.sdk.util.Base64Coder;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.Charset;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class EventStoreCipherTest {
+    private static final String TAG = "SA.EventStoreCipherTest";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int EVENT_COUNT = 1000;
+    private static final int BATCH_SIZE = 50;
+    private static final String SP_FILE = "com.sensorsdata.analytics.android.sdk.event_store";
+
+    @Test
+    public void sealAndOpen() {
+        Context context = ApplicationProvider.getApplicationContext();
+        EventStoreCipher cipher = EventStoreCipher.create(context, true);
+        assertNotNull(cipher);
+        byte[] data = "{\"event\":\"$AppClick\"}".getBytes(UTF8);
+        byte[] sealed = cipher.seal(data);
+        assertTrue(EventStoreCipher.isSealed(sealed));
+        assertFalse(EventStoreCipher.isSealed(data));
+        // 每条数据的初始化向量不同
+        assertFalse(Arrays.equals(sealed, cipher.seal(data)));
+        assertArrayEquals(data, cipher.open(sealed));
+        // 重新加载后使用同一个密钥
+        assertArrayEquals(data, EventStoreCipher.create(context, false).open(sealed));
+        // 轮换后旧密钥的数据无法解密
+        assertNull(EventStoreCipher.create(context, true).open(sealed));
+    }
+
+    /**
+     * 会话密钥加密后保存，旧版本明文保存的密钥在加载时重新加密
+     */
+    @Test
+    public void sessionKeyNotStoredInPlain() {
+        Context context = ApplicationProvider.getApplicationContext();
+        SharedPreferences sp = context.getSharedPreferences(SP_FILE, Context.MODE_PRIVATE);
+        assertNotNull(EventStoreCipher.create(context, true));
+        assertTrue(isWrapped(sp.getString("session_key", "")));
+
+        byte[] key = new byte[16];
+        new SecureRandom().nextBytes(key);
+        sp.edit().putString("session_key", new String(Base64Coder.encode(key))).putInt("session_key_id", 1).commit();
+        EventStoreCipher cipher = EventStoreCipher.create(context, false);
+        assertNotNull(cipher);
+        assertTrue(isWrapped(sp.getString("session_key", "")));
+        byte[] data = "{\"event\":\"$AppClick\"}".getBytes(UTF8);
+        assertArrayEquals(data, EventStoreCipher.create(context, false).open(cipher.seal(data)));
+    }
+
+    /**
+     * 连续加密的两条数据，密钥流不能重叠
+     */
+    @Test
+    public void keystreamNotReused() throws Exception {
+        EventStoreCipher cipher = EventStoreCipher.create(ApplicationProvider.<Context>getApplicationContext(), true);
+        assertNotNull(cipher);
+        byte[] first = createEvent(1).toString().getBytes(UTF8);
+        byte[] second = createEvent(2).toString().getBytes(UTF8);
+        byte[] firstKeystream = keystream(cipher.seal(first), first);
+        byte[] secondKeystream = keystream(cipher.seal(second), second);
+        int length = Math.min(firstKeystream.length - 16, secondKeystream.length);
+        assertTrue(length > 16);
+        assertFalse(Arrays.equals(Arrays.copyOfRange(firstKeystream, 16, 16 + length),
+                Arrays.copyOf(secondKeystream, length)));
+    }
+
+    /**
+     * 对比按条加密和整批加密：1000 条数据存储和上报的 CPU 耗时以及存储占用的字节数，需要手动运行
+     */
+    @Test
+    @Ignore("Benchmark, run manually")
+    public void benchmark() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        SensorsDataEncrypt sensorsDataEncrypt = createEncrypt(context);
+        EventStoreCipher cipher = EventStoreCipher.create(context, true);
+        assertNotNull(cipher);
+        JSONObject[] events = new JSONObject[EVENT_COUNT];
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            events[i] = createEvent(i);
+        }
+
+        // 按条压缩加密后存储，上报时按 ekey 分组
+        long start = Debug.threadCpuTimeNanos();
+        byte[][] rows = new byte[EVENT_COUNT][];
+        long perEventBytes = 0;
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            rows[i] = sensorsDataEncrypt.encryptTrackData(events[i]).toString().getBytes(UTF8);
+            perEventBytes += rows[i].length;
+        }
+        long perEventInsertNanos = Debug.threadCpuTimeNanos() - start;
+        start = Debug.threadCpuTimeNanos();
+        for (int i = 0; i < EVENT_COUNT; i += BATCH_SIZE) {
+            JSONArray payloads = new JSONArray();
+            JSONObject dataJson = null;
+            for (int j = i; j < i + BATCH_SIZE; j++) {
+                dataJson = new JSONObject(new String(rows[j], UTF8));
+                payloads.put(dataJson.getString("payloads"));
+            }
+            assertNotNull(dataJson);
+            dataJson.put("payloads", payloads);
+            assertNotNull(new JSONArray().put(dataJson).toString());
+        }
+        long perEventFlushNanos = Debug.threadCpuTimeNanos() - start;
+
+        // 会话密钥加密后存储，上报时整批压缩加密
+        start = Debug.threadCpuTimeNanos();
+        long batchBytes = 0;
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            rows[i] = cipher.seal(events[i].toString().getBytes(UTF8));
+            batchBytes += rows[i].length;
+        }
+        long batchInsertNanos = Debug.threadCpuTimeNanos() - start;
+        start = Debug.threadCpuTimeNanos();
+        for (int i = 0; i < EVENT_COUNT; i += BATCH_SIZE) {
+            JSONArray batch = new JSONArray();
+            for (int j = i; j < i + BATCH_SIZE; j++) {
+                batch.put(new JSONObject(new String(cipher.open(rows[j]), UTF8)));
+            }
+            JSONObject dataJson = sensorsDataEncrypt.encryptBatchData(batch);
+            assertNotNull(dataJson);
+            assertEquals(1, dataJson.getJSONArray("payloads").length());
+            assertNotNull(new JSONArray().put(dataJson).toString());
+        }
+        long batchFlushNanos = Debug.threadCpuTimeNanos() - start;
+
+        Log.i(TAG, String.format(Locale.US, "per-event: insert = %dus, flush = %dus, disk = %d bytes",
+                perEventInsertNanos / 1000, perEventFlushNanos / 1000, perEventBytes));
+        Log.i(TAG, String.format(Locale.US, "batch: insert = %dus, flush = %dus, disk = %d bytes",
+                batchInsertNanos / 1000, batchFlushNanos / 1000, batchBytes));
+        assertTrue(batchBytes < perEventBytes);
+        assertEquals(events[EVENT_COUNT - 1].toString(), new String(cipher.open(rows[EVENT_COUNT - 1]), UTF8));
+    }
+
+    private static boolean isWrapped(String key) {
+        return key.startsWith("ks:") || key.startsWith("aes:");
+    }
+
+    private static byte[] keystream(byte[] sealed, byte[] data) {
+        byte[] keystream = new byte[data.length];
+        int offset = sealed.length - data.length;
+        for (int i = 0; i < data.length; i++) {
+            keystream[i] = (byte) (sealed[offset + i] ^ data[i]);
+        }
+        return keystream;
+    }
+
+    private static SensorsDataEncrypt createEncrypt(Context context) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        final String publicKey = new String(Base64Coder.encode(generator.generateKeyPair().getPublic().getEncoded()));
+        return new SensorsDataEncrypt(context, new IPersistentSecretKey() {
+            @Override
+            public void saveSecretKey(SecreteKey secreteKey) {
+            }
+
+            @Override
+            public SecreteKey loadSecretKey() {
+                return new SecreteKey(publicKey, 1, "AES", "RSA");
+            }
+        }, new ArrayList<SAEncryptListener>());
+    }
+
+    /**
+     * 构造一条约 600 字节的事件
+     */
+    private static JSONObject createEvent(int index) throws Exception {
+        JSONObject properties = new JSONObject();
+        properties.put("$element_content", "button " + index);
+        properties.put("$element_type", "android.widget.Button");
+        properties.put("$element_id", "btn_" + index);
+        properties.put("$screen_name", "com.example.MainActivity");
+        properties.put("$title", "Home");
+        properties.put("$lib", "Android");
+        properties.put("$lib_version", "6.3.0");
+        properties.put("$manufacturer", "Google");
+        properties.put("$model", "Pixel 6");
+        properties.put("$os", "Android");
+        properties.put("$os_version", "12");
+        properties.put("$screen_height", 2400);
+        properties.put("$screen_width", 1080);
+        properties.put("$wifi", true);
+        properties.put("$network_type", "WIFI");
+        properties.put("$is_first_day", false);
+        properties.put("$device_id", "a1b2c3d4e5f60718");
+        JSONObject event = new JSONObject();
+        event.put("_track_id", 1000000 + index);
+        event.put("time", 1648600000000L + index);
+        event.put("type", "track");
+        event.put("event", "$AppClick");
+        event.put("distinct_id", "a1b2c3d4e5f60718");
+        event.put("anonymous_id", "a1b2c3d4e5f60718");
+        event.put("properties", properties);
+        return event;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.encrypt;
+
+import android.content.Context;
+import android.os.Build;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.sensorsdata.analytics.android.sdk.util.Base64Coder;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class SAAESGCMEncryptTest {
+    private SensorsDataEncrypt mSensorsDataEncrypt;
+    private Receiver mReceiver;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        final String publicKey = new String(Base64Coder.encode(keyPair.getPublic().getEncoded()));
+        mSensorsDataEncrypt = new SensorsDataEncrypt(context, new IPersistentSecretKey() {
+            @Override
+            public void saveSecretKey(SecreteKey secreteKey) {
+            }
+
+            @Override
+            public SecreteKey loadSecretKey() {
+                return new SecreteKey(publicKey, 2, SAAESGCMEncrypt.SYMMETRIC_ENCRYPT_TYPE, "RSA");
+            }
+        }, new ArrayList<SAEncryptListener>());
+        mReceiver = new Receiver(keyPair.getPrivate());
+    }
+
+    @Test
+    public void encryptTrackData() throws Exception {
+        JSONObject event = new JSONObject().put("event", "$SignUp").put("distinct_id", "user_1");
+        JSONObject dataJson = mSensorsDataEncrypt.encryptTrackData(event);
+        assertTrue(dataJson.has("ekey"));
+        assertEquals(2, dataJson.getInt("pkv"));
+        dataJson.put("payloads", new JSONArray().put(dataJson.getString("payloads")));
+        List<JSONObject> events = mReceiver.receive(new JSONArray().put(dataJson).toString());
+        assertEquals(1, events.size());
+        assertEquals("$SignUp", events.get(0).getString("event"));
+    }
+
+    @Test
+    public void encryptBatchDataStreaming() throws Exception {
+        JSONArray batch = new JSONArray();
+        for (int i = 0; i < 50; i++) {
+            batch.put(new JSONObject().put("event", "$AppClick").put("index", i));
+        }
+        JSONObject dataJson = mSensorsDataEncrypt.encryptBatchData(batch);
+        assertNotNull(dataJson);
+        List<JSONObject> events = mReceiver.receive(new JSONArray().put(dataJson).toString());
+        assertEquals(50, events.size());
+        assertEquals(49, events.get(49).getInt("index"));
+    }
+
+    @Test
+    public void rejectTamperedPayload() throws Exception {
+        JSONObject dataJson = mSensorsDataEncrypt.encryptBatchData(new JSONArray().put(new JSONObject().put("event", "$AppStart")));
+        assertNotNull(dataJson);
+        byte[] payload = Base64Coder.decode(dataJson.getJSONArray("payloads").getString(0));
+        payload[payload.length - 20] ^= 1;
+        dataJson.put("payloads", new JSONArray().put(new String(Base64Coder.encode(payload))));
+        try {
+            mReceiver.receive(new JSONArray().put(dataJson).toString());
+            fail("The tampered payload should be rejected");
+        } catch (Exception e) {
+            // 认证标签校验失败
+        }
+    }
+
+    /**
+     * 模拟服务端：使用私钥解密 ekey，再用 AES/GCM 解密、解压每个 payload
+     */
+    private static class Receiver {
+        private final PrivateKey mPrivateKey;
+
+        Receiver(PrivateKey privateKey) {
+            this.mPrivateKey = privateKey;
+        }
+
+        List<JSONObject> receive(String body) throws Exception {
+            List<JSONObject> events = new ArrayList<>();
+            JSONArray dataArray = new JSONArray(body);
+            for (int i = 0; i < dataArray.length(); i++) {
+                JSONObject dataJson = dataArray.getJSONObject(i);
+                Cipher rsaCipher = Cipher.getInstance("RSA/None/PKCS1Padding");
+                rsaCipher.init(Cipher.DECRYPT_MODE, mPrivateKey);
+                byte[] aesKey = rsaCipher.doFinal(Base64Coder.decode(dataJson.getString("ekey")));
+                JSONArray payloads = dataJson.getJSONArray("payloads");
+                for (int j = 0; j < payloads.length(); j++) {
+                    byte[] payload = Base64Coder.decode(payloads.getString(j));
+                    Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                    cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(aesKey, "AES"),
+                            Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT ? new GCMParameterSpec(128, payload, 0, 12)
+                                    : new IvParameterSpec(payload, 0, 12));
+                    String json = gunzip(cipher.doFinal(payload, 12, payload.length - 12));
+                    if (json.startsWith("[")) {
+                        JSONArray batch = new JSONArray(json);
+                        for (int k = 0; k < batch.length(); k++) {
+                            events.add(batch.getJSONObject(k));
+                        }
+                    } else {
+                        events.add(new JSONObject(json));
+                    }
+                }
+            }
+            return events;
+        }
+
+        private static String gunzip(byte[] data) throws Exception {
+            InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(data));
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, count);
+            }
+            inputStream.close();
+            return outputStream.toString("UTF-8");
+        }
+    }
+}
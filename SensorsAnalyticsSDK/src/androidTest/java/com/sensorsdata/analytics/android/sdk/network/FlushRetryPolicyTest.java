@@ -0,0 +1,200 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sensorsdata.analytics.android.sdk.network;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.sensorsdata.analytics.android.sdk.plugin.encrypt.AbstractStoreManager;
+import com.sensorsdata.analytics.android.sdk.plugin.encrypt.StorePlugin;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class FlushRetryPolicyTest {
+    private static final long NOW = 1648600000000L;
+    private TestStoreManager mStoreManager;
+    private FixedRandom mRandom;
+    private TestClock mClock;
+
+    @Before
+    public void setUp() {
+        mStoreManager = new TestStoreManager();
+        mRandom = new FixedRandom();
+        mClock = new TestClock();
+    }
+
+    @Test
+    public void backoffBounds() {
+        FlushRetryPolicy policy = newPolicy();
+        mRandom.mValue = 0;
+        assertEquals(0, policy.onFailure());
+        policy.reset();
+        mRandom.mValue = 0.999999;
+        for (int i = 1; i < FlushRetryPolicy.CIRCUIT_BREAKER_THRESHOLD; i++) {
+            long backoff = Math.min(FlushRetryPolicy.MAX_DELAY, FlushRetryPolicy.BASE_DELAY << (i - 1));
+            long delay = policy.onFailure();
+            assertTrue(delay >= 0 && delay < backoff);
+            assertTrue(delay > backoff * 99 / 100);
+            assertEquals(delay, policy.getRetryDelay());
+        }
+    }
+
+    @Test
+    public void circuitBreaker() {
+        FlushRetryPolicy policy = newPolicy();
+        for (int i = 1; i < FlushRetryPolicy.CIRCUIT_BREAKER_THRESHOLD; i++) {
+            assertTrue(policy.onFailure() < FlushRetryPolicy.MAX_DELAY);
+        }
+        // 第 6 次失败后熔断，在 [CIRCUIT_OPEN_DELAY / 2, CIRCUIT_OPEN_DELAY] 之间重试
+        mRandom.mValue = 0;
+        assertEquals(FlushRetryPolicy.CIRCUIT_OPEN_DELAY / 2, policy.onFailure());
+        mRandom.mValue = 0.999999;
+        long delay = policy.onFailure();
+        assertTrue(delay > FlushRetryPolicy.CIRCUIT_OPEN_DELAY * 99 / 100 && delay <= FlushRetryPolicy.CIRCUIT_OPEN_DELAY);
+        policy.onSuccess();
+        assertEquals(0, policy.getRetryDelay());
+        mRandom.mValue = 0.5;
+        assertEquals(FlushRetryPolicy.BASE_DELAY / 2, policy.onFailure());
+    }
+
+    @Test
+    public void restoreAfterRestart() {
+        mRandom.mValue = 0.5;
+        FlushRetryPolicy policy = newPolicy();
+        policy.onFailure();
+        long delay = policy.onFailure();
+        mClock.mTime += 1000;
+        // 进程重启后从本地恢复失败次数和重试时间
+        FlushRetryPolicy restartedPolicy = newPolicy();
+        assertEquals(delay - 1000, restartedPolicy.getRetryDelay());
+        assertEquals(FlushRetryPolicy.BASE_DELAY * 2, restartedPolicy.onFailure());
+        // 系统时间被调回时，等待时间不超过熔断间隔
+        mClock.mTime -= 24 * 60 * 60 * 1000L;
+        assertEquals(FlushRetryPolicy.CIRCUIT_OPEN_DELAY, newPolicy().getRetryDelay());
+    }
+
+    private FlushRetryPolicy newPolicy() {
+        return new FlushRetryPolicy(mStoreManager, mRandom, mClock);
+    }
+
+    private static class FixedRandom extends Random {
+        private double mValue = 0.5;
+
+        @Override
+        public double nextDouble() {
+            return mValue;
+        }
+    }
+
+    private static class TestClock implements FlushRetryPolicy.Clock {
+        private long mTime = NOW;
+
+        @Override
+        public long currentTimeMillis() {
+            return mTime;
+        }
+    }
+
+    private static class TestStoreManager extends AbstractStoreManager {
+        TestStoreManager() {
+            mDefaultState = false;
+            registerPlugin(new MemoryStorePlugin());
+        }
+    }
+
+    private static class MemoryStorePlugin implements StorePlugin {
+        private final Map<String, Object> mValues = new HashMap<>();
+
+        @Override
+        public void upgrade(StorePlugin oldPlugin) {
+        }
+
+        @Override
+        public void setString(String key, String value) {
+            mValues.put(key, value);
+        }
+
+        @Override
+        public void setBool(String key, boolean value) {
+            mValues.put(key, value);
+        }
+
+        @Override
+        public void setInteger(String key, int value) {
+            mValues.put(key, value);
+        }
+
+        @Override
+        public void setFloat(String key, float value) {
+            mValues.put(key, value);
+        }
+
+        @Override
+        public void setLong(String key, long value) {
+            mValues.put(key, value);
+        }
+
+        @Override
+        public String getString(String key) {
+            return (String) mValues.get(key);
+        }
+
+        @Override
+        public Boolean getBool(String key) {
+            return (Boolean) mValues.get(key);
+        }
+
+        @Override
+        public Integer getInteger(String key) {
+            return (Integer) mValues.get(key);
+        }
+
+        @Override
+        public Float getFloat(String key) {
+            return (Float) mValues.get(key);
+        }
+
+        @Override
+        public Long getLong(String key) {
+            return (Long) mValues.get(key);
+        }
+
+        @Override
+        public void remove(String key) {
+            mValues.remove(key);
+        }
+
+        @Override
+        public boolean isExists(String key) {
+            return mValues.containsKey(key);
+        }
+
+        @Override
+        public String type() {
+            return "retry_";
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sensorsdata.analytics.android.sdk.plugin.encrypt;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.sensorsdata.analytics.android.sdk.encrypt.AESSecretManager;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class SAEncryptStorePluginTest {
+    private static final String TAG = "SA.SAEncryptStorePluginTest";
+    private static final String FILE_NAME = "com.sensorsdata.analytics.android.sdk.test_encrypt_store";
+    private static final int ITERATIONS = 2000;
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        AESSecretManager.getInstance().initSecretKey(mContext);
+        mContext.getSharedPreferences(FILE_NAME, Context.MODE_PRIVATE).edit().clear().commit();
+    }
+
+    @Test
+    public void setValuesAndPreload() {
+        SAEncryptStorePlugin plugin = new SAEncryptStorePlugin(mContext, FILE_NAME);
+        Map<String, Object> values = new HashMap<>();
+        values.put("sensorsdata.loginid", "login_id");
+        values.put("first_day", true);
+        values.put("app_end_time", 100L);
+        plugin.setValues(values);
+        assertEquals("login_id", plugin.getString("sensorsdata.loginid"));
+        assertTrue(plugin.getBool("first_day"));
+        assertEquals(Long.valueOf(100L), plugin.getLong("app_end_time"));
+
+        // 新实例从文件中预加载
+        SAEncryptStorePlugin preloadPlugin = new SAEncryptStorePlugin(mContext, FILE_NAME);
+        preloadPlugin.preload();
+        assertEquals("login_id", preloadPlugin.getString("sensorsdata.loginid"));
+        preloadPlugin.remove("sensorsdata.loginid");
+        assertNull(preloadPlugin.getString("sensorsdata.loginid"));
+        assertFalse(preloadPlugin.isExists("sensorsdata.loginid"));
+        assertNull(new SAEncryptStorePlugin(mContext, FILE_NAME).getString("sensorsdata.loginid"));
+    }
+
+    @Test
+    public void storeManagerPreloadAndBatchWrite() {
+        StoreManager storeManager = new StoreManager();
+        storeManager.registerPlugin(new SAEncryptStorePlugin(mContext, FILE_NAME));
+        storeManager.beginBatchWrite();
+        try {
+            storeManager.setString("login_id", "login_id");
+            storeManager.setBool("first_day", true);
+            storeManager.setLong("app_end_time", 100L);
+            // 批量写入结束前先写入缓存，文件中还没有
+            assertEquals("login_id", storeManager.getString("login_id", null));
+            assertTrue(mContext.getSharedPreferences(FILE_NAME, Context.MODE_PRIVATE).getAll().isEmpty());
+        } finally {
+            storeManager.endBatchWrite();
+        }
+        assertEquals(3, mContext.getSharedPreferences(FILE_NAME, Context.MODE_PRIVATE).getAll().size());
+
+        // 新实例预加载后按读取的类型转换
+        StoreManager preloadManager = new StoreManager();
+        SAEncryptStorePlugin plugin = new SAEncryptStorePlugin(mContext, FILE_NAME);
+        preloadManager.registerPlugin(plugin);
+        preloadManager.preload();
+        mContext.getSharedPreferences(FILE_NAME, Context.MODE_PRIVATE).edit().clear().commit();
+        assertEquals("login_id", preloadManager.getString("login_id", null));
+        assertTrue(preloadManager.getBool("first_day", false));
+        assertEquals(Long.valueOf(100L), preloadManager.getLong("app_end_time", 0));
+    }
+
+    /**
+     * 对比每次加解密和使用缓存的 key 名称时 getString 的吞吐量，结果输出到 logcat，需要手动运行
+     */
+    @Test
+    @Ignore("Benchmark, run manually")
+    public void getStringBenchmark() {
+        SAEncryptStorePlugin plugin = new SAEncryptStorePlugin(mContext, FILE_NAME);
+        plugin.setString("sensorsdata.loginid", "login_id");
+        SharedPreferences sp = mContext.getSharedPreferences(FILE_NAME, Context.MODE_PRIVATE);
+        AESSecretManager secretManager = AESSecretManager.getInstance();
+        // 优化前：每次读取都加密 key 名称并解密数据
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertEquals("login_id", secretManager.decryptAES(
+                    sp.getString(secretManager.encryptAES("sensorsdata.loginid"), null)));
+        }
+        long before = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertEquals("login_id", plugin.getString("sensorsdata.loginid"));
+        }
+        long after = System.nanoTime() - start;
+        Log.i(TAG, String.format(Locale.US, "getString: before %.1f ops/ms, after %.1f ops/ms",
+                ITERATIONS * 1000000.0 / before, ITERATIONS * 1000000.0 / after));
+    }
+
+    private static class StoreManager extends AbstractStoreManager {
+        StoreManager() {
+            mDefaultState = false;
+        }
+    }
+}
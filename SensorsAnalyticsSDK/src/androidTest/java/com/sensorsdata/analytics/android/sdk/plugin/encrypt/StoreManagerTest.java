@@ -0,0 +1,241 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sensorsdata.analytics.android.sdk.plugin.encrypt;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.sensorsdata.analytics.android.sdk.util.ThreadUtils;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class StoreManagerTest {
+    private static final String TAG = "SA.StoreManagerTest";
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 20000;
+    private static final int KEYS = 64;
+
+    @Test
+    public void migrateOnce() throws Exception {
+        MemoryStorePlugin oldPlugin = new MemoryStorePlugin("old_");
+        MemoryStorePlugin newPlugin = new MemoryStorePlugin("new_");
+        oldPlugin.setString("old_distinct_id", "abc");
+        TestStoreManager storeManager = new TestStoreManager();
+        storeManager.registerPlugin(oldPlugin);
+        storeManager.registerPlugin(newPlugin);
+        assertEquals("abc", storeManager.getString("distinct_id", null));
+        assertEquals("abc", storeManager.getString("distinct_id", null));
+        waitMigration(oldPlugin, "old_distinct_id");
+        assertEquals("abc", newPlugin.getString("new_distinct_id"));
+        assertEquals(1, newPlugin.mWriteCount.get());
+
+        storeManager.remove("distinct_id");
+        assertNull(storeManager.getString("distinct_id", null));
+        assertFalse(storeManager.isExists("distinct_id"));
+    }
+
+    @Test
+    public void migrateAfterCacheCleared() throws Exception {
+        MemoryStorePlugin oldPlugin = new MemoryStorePlugin("old_");
+        MemoryStorePlugin newPlugin = new MemoryStorePlugin("new_");
+        oldPlugin.setString("old_distinct_id", "abc");
+        TestStoreManager storeManager = new TestStoreManager();
+        storeManager.registerPlugin(oldPlugin);
+        storeManager.registerPlugin(newPlugin);
+        // 暂停后台线程，在迁移执行前注册新插件并清空缓存
+        final CountDownLatch latch = new CountDownLatch(1);
+        ThreadUtils.getSinglePool().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        });
+        assertEquals("abc", storeManager.getString("distinct_id", null));
+        MemoryStorePlugin latestPlugin = new MemoryStorePlugin("latest_");
+        storeManager.registerPlugin(latestPlugin);
+        latch.countDown();
+        waitMigration(oldPlugin, "old_distinct_id");
+        assertEquals("abc", latestPlugin.getString("latest_distinct_id"));
+        assertEquals("abc", storeManager.getString("distinct_id", null));
+    }
+
+    /**
+     * 多线程 9:1 读写的吞吐量，结果输出到 logcat，需要手动运行
+     */
+    @Test
+    @Ignore("Benchmark, run manually")
+    public void mixedReadWriteBenchmark() throws Exception {
+        final TestStoreManager storeManager = new TestStoreManager();
+        storeManager.registerPlugin(new MemoryStorePlugin("bench_"));
+        for (int i = 0; i < KEYS; i++) {
+            storeManager.setLong("key_" + i, i);
+        }
+        final CountDownLatch latch = new CountDownLatch(THREADS);
+        final AtomicLong failures = new AtomicLong();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            final int seed = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < OPERATIONS; i++) {
+                            String key = "key_" + ((i + seed) % KEYS);
+                            // 读写比例 9:1
+                            if (i % 10 == 0) {
+                                storeManager.setLong(key, i);
+                            } else if (storeManager.getLong(key, -1) < 0) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+        assertTrue(latch.await(60, TimeUnit.SECONDS));
+        long cost = System.nanoTime() - start;
+        assertEquals(0, failures.get());
+        Log.i(TAG, String.format(Locale.US, "%d threads, %d ops: %.1f ops/ms",
+                THREADS, THREADS * OPERATIONS, THREADS * OPERATIONS * 1000000.0 / cost));
+    }
+
+    private static void waitMigration(StorePlugin plugin, String key) throws InterruptedException {
+        for (int i = 0; i < 100 && plugin.isExists(key); i++) {
+            Thread.sleep(20);
+        }
+        assertFalse(plugin.isExists(key));
+    }
+
+    private static class TestStoreManager extends AbstractStoreManager {
+        TestStoreManager() {
+            mDefaultState = false;
+        }
+    }
+
+    /**
+     * 内存中的插件，用于排除 SharedPreferences 的耗时
+     */
+    private static class MemoryStorePlugin implements StorePlugin {
+        private final Map<String, Object> mValues = new ConcurrentHashMap<>();
+        private final AtomicLong mWriteCount = new AtomicLong();
+        private final String mType;
+
+        MemoryStorePlugin(String type) {
+            mType = type;
+        }
+
+        @Override
+        public void upgrade(StorePlugin oldPlugin) {
+        }
+
+        @Override
+        public void setString(String key, String value) {
+            put(key, value);
+        }
+
+        @Override
+        public void setBool(String key, boolean value) {
+            put(key, value);
+        }
+
+        @Override
+        public void setInteger(String key, int value) {
+            put(key, value);
+        }
+
+        @Override
+        public void setFloat(String key, float value) {
+            put(key, value);
+        }
+
+        @Override
+        public void setLong(String key, long value) {
+            put(key, value);
+        }
+
+        @Override
+        public String getString(String key) {
+            return (String) mValues.get(key);
+        }
+
+        @Override
+        public Boolean getBool(String key) {
+            return (Boolean) mValues.get(key);
+        }
+
+        @Override
+        public Integer getInteger(String key) {
+            return (Integer) mValues.get(key);
+        }
+
+        @Override
+        public Float getFloat(String key) {
+            return (Float) mValues.get(key);
+        }
+
+        @Override
+        public Long getLong(String key) {
+            return (Long) mValues.get(key);
+        }
+
+        @Override
+        public void remove(String key) {
+            mValues.remove(key);
+        }
+
+        @Override
+        public boolean isExists(String key) {
+            return mValues.containsKey(key);
+        }
+
+        @Override
+        public String type() {
+            return mType;
+        }
+
+        private void put(String key, Object value) {
+            if (value == null) {
+                mValues.remove(key);
+            } else {
+                mWriteCount.incrementAndGet();
+                mValues.put(key, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import android.Manifest;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.rule.GrantPermissionRule;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 采集事件时读取设备上下文快照，不访问系统服务
+ */
+@RunWith(AndroidJUnit4.class)
+public class DeviceContextSnapshotTest {
+    private static final String TAG = "DeviceContextSnapshotTest";
+    @Rule
+    public GrantPermissionRule grantPermissionRule = GrantPermissionRule.grant(Manifest.permission.READ_PHONE_STATE);
+
+    @Test
+    public void systemServiceCallsPerThousandEvents() {
+        CountingContext context = new CountingContext(ApplicationProvider.getApplicationContext());
+        int events = 1000;
+        for (int i = 0; i < events; i++) {
+            SensorsDataUtils.getCarrier(context);
+            NetworkUtils.networkType(context);
+        }
+        int legacyCalls = context.count.getAndSet(0);
+
+        DeviceContextSnapshot.refresh(context, true);
+        context.count.set(0);
+        for (int i = 0; i < events; i++) {
+            DeviceContextSnapshot snapshot = DeviceContextSnapshot.get(context, true);
+            snapshot.getCarrier();
+            snapshot.getNetworkType();
+        }
+        Log.i(TAG, String.format(Locale.US, "system service calls per %d events: direct = %d, snapshot = %d",
+                events, legacyCalls, context.count.get()));
+        assertEquals(0, context.count.get());
+    }
+
+    @Test
+    public void screenOrientation() {
+        Context context = ApplicationProvider.getApplicationContext();
+        DeviceContextSnapshot.refresh(context, false);
+        DeviceContextSnapshot.updateScreenOrientation("landscape");
+        assertEquals("landscape", DeviceContextSnapshot.get(context, false).getScreenOrientation());
+        // 刷新网络类型后保留屏幕方向
+        DeviceContextSnapshot.refresh(context, false);
+        assertEquals("landscape", DeviceContextSnapshot.get(context, false).getScreenOrientation());
+        DeviceContextSnapshot.updateScreenOrientation(null);
+        assertNull(DeviceContextSnapshot.get(context, false).getScreenOrientation());
+    }
+
+    /**
+     * 统计 TelephonyManager、ConnectivityManager 的获取次数，这两个服务的方法都是 binder 调用
+     */
+    private static class CountingContext extends ContextWrapper {
+        final AtomicInteger count = new AtomicInteger();
+
+        CountingContext(Context base) {
+            super(base);
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+
+        @Override
+        public Object getSystemService(String name) {
+            if (Context.TELEPHONY_SERVICE.equals(name) || Context.CONNECTIVITY_SERVICE.equals(name)) {
+                count.incrementAndGet();
+            }
+            return super.getSystemService(name);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.util;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.json.JSONObject;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 逐字符校验需要与原来的正则表达式结果一致
+ */
+@RunWith(AndroidJUnit4.class)
+public class PropertyKeyCheckerTest {
+    private static final String TAG = "PropertyKeyCheckerTest";
+    private static final Pattern KEY_PATTERN = Pattern.compile(
+            "^((?!^distinct_id$|^original_id$|^time$|^properties$|^id$|^first_id$|^second_id$|^users$|^events$|^event$|^user_id$|^date$|^datetime$|^user_tag.*|^user_group.*)[a-zA-Z_$][a-zA-Z\\d_$]*)$",
+            Pattern.CASE_INSENSITIVE);
+
+    @Test
+    public void sameAsPattern() {
+        String[] keys = {"$app_version", "name", "_a1", "$", "1abc", "a-b", "a b", "\u4E2D\u6587", "Time", "EVENT", "events_1",
+                "user_tag", "User_Tag_city", "user_groupA", "user_gro", "date_time", "DateTime", "id", "ids", "a\u0660"};
+        for (String key : keys) {
+            boolean expected = KEY_PATTERN.matcher(key).matches();
+            assertEquals(key, expected, (PropertyKeyChecker.scan(key) & PropertyKeyChecker.RESULT_INVALID) == 0);
+            assertEquals(key, expected, SADataHelper.assertPropertyKey(key));
+            // 第二次校验命中缓存
+            assertEquals(key, expected, SADataHelper.assertPropertyKey(key));
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 101; i++) {
+            builder.append('a');
+        }
+        assertEquals(PropertyKeyChecker.RESULT_TOO_LONG, PropertyKeyChecker.check(builder.toString()));
+    }
+
+    /**
+     * 对比正则表达式和缓存后的属性校验耗时，结果输出到 logcat，需要手动运行
+     */
+    @Test
+    @Ignore("Benchmark, run manually")
+    public void validateBenchmark() throws Exception {
+        benchmark(20);
+        benchmark(100);
+    }
+
+    private void benchmark(int propertyCount) throws Exception {
+        JSONObject properties = new JSONObject();
+        for (int i = 0; i < propertyCount; i++) {
+            properties.put("property_name_" + i, "value");
+        }
+        int rounds = 2000;
+        int matches = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            for (Iterator<String> iterator = properties.keys(); iterator.hasNext(); ) {
+                if (KEY_PATTERN.matcher(iterator.next()).matches()) {
+                    matches++;
+                }
+            }
+        }
+        long patternNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            SADataHelper.assertPropertyTypes(properties);
+        }
+        long cachedNanos = System.nanoTime() - start;
+        assertEquals(propertyCount * rounds, matches);
+        assertEquals(propertyCount, properties.length());
+        Log.i(TAG, String.format(Locale.US, "%d properties: regex keys only = %dns, assertPropertyTypes = %dns per event",
+                propertyCount, patternNanos / rounds, cachedNanos / rounds));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.util;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.json.JSONObject;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Iterator;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 大小写无关的属性合并需要与逐个 equalsIgnoreCase 比较的结果一致
+ */
+@RunWith(AndroidJUnit4.class)
+public class PropertyKeyIndexTest {
+    private static final String TAG = "PropertyKeyIndexTest";
+
+    @Test
+    public void foldCase() {
+        String key = "$app_version";
+        assertSame(key, PropertyKeyIndex.foldCase(key));
+        assertEquals("$app_version", PropertyKeyIndex.foldCase("$App_Version"));
+        assertEquals(PropertyKeyIndex.foldCase("\u01C5"), PropertyKeyIndex.foldCase("\u01C6"));
+        assertTrue("\u01C5".equalsIgnoreCase("\u01C6"));
+    }
+
+    @Test
+    public void mergeCollision() throws Exception {
+        JSONObject source = new JSONObject();
+        source.put("Name", "source");
+        source.put("", "empty");
+        JSONObject dest = new JSONObject();
+        dest.put("name", "dest");
+        dest.put("NAME", "dest");
+        dest.put("", "dest empty");
+        dest.put("age", 1);
+
+        JSONObject merged = SensorsDataUtils.mergeSuperJSONObject(source, dest);
+        assertFalse(merged.has("name"));
+        assertFalse(merged.has("NAME"));
+        assertEquals("source", merged.getString("Name"));
+        assertEquals("empty", merged.getString(""));
+        assertEquals(1, merged.getInt("age"));
+    }
+
+    @Test
+    public void mergeSuperProperties() throws Exception {
+        JSONObject superProperties = new JSONObject();
+        superProperties.put("Channel", "super");
+        superProperties.put("age", 1);
+        JSONObject dynamicProperties = new JSONObject();
+        dynamicProperties.put("channel", "dynamic");
+
+        JSONObject dest = new JSONObject();
+        SensorsDataUtils.mergeSuperProperties(superProperties, PropertyKeyIndex.create(superProperties), dynamicProperties, dest);
+        JSONObject expected = SensorsDataUtils.mergeSuperJSONObject(dynamicProperties, new JSONObject(superProperties.toString()));
+        assertEquals(expected.toString(), dest.toString());
+        // 公共属性本身不会被修改
+        assertEquals("super", superProperties.getString("Channel"));
+    }
+
+    /**
+     * 对比逐个 equalsIgnoreCase 比较和使用 PropertyKeyIndex 合并属性的耗时，结果输出到 logcat，需要手动运行
+     */
+    @Test
+    @Ignore("Benchmark, run manually")
+    public void mergeBenchmark() throws Exception {
+        JSONObject superProperties = new JSONObject();
+        for (int i = 0; i < 40; i++) {
+            superProperties.put("Super_Property_" + i, "value" + i);
+        }
+        JSONObject eventProperties = new JSONObject();
+        for (int i = 0; i < 30; i++) {
+            eventProperties.put(i % 10 == 0 ? "super_property_" + i : "event_property_" + i, i);
+        }
+        PropertyKeyIndex superIndex = PropertyKeyIndex.create(superProperties);
+        int rounds = 2000;
+        JSONObject legacy = null;
+        JSONObject indexed = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            legacy = new JSONObject(superProperties.toString());
+            legacyMerge(eventProperties, legacy);
+        }
+        long legacyNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            indexed = new JSONObject();
+            SensorsDataUtils.mergeSuperProperties(superProperties, superIndex, eventProperties, indexed);
+        }
+        long indexedNanos = System.nanoTime() - start;
+        Log.i(TAG, String.format(Locale.US, "merge 40 super + 30 event properties: legacy = %dus, indexed = %dus per event",
+                legacyNanos / rounds / 1000, indexedNanos / rounds / 1000));
+        assertEquals(legacy.length(), indexed.length());
+        for (Iterator<String> iterator = legacy.keys(); iterator.hasNext(); ) {
+            String key = iterator.next();
+            assertEquals(key, legacy.get(key), indexed.opt(key));
+        }
+    }
+
+    private static void legacyMerge(JSONObject source, JSONObject dest) throws Exception {
+        Iterator<String> sourceIterator = source.keys();
+        while (sourceIterator.hasNext()) {
+            String key = sourceIterator.next();
+            Iterator<String> destIterator = dest.keys();
+            while (destIterator.hasNext()) {
+                if (key.equalsIgnoreCase(destIterator.next())) {
+                    destIterator.remove();
+                }
+            }
+        }
+        SensorsDataUtils.mergeJSONObject(source, dest);
+    }
+}
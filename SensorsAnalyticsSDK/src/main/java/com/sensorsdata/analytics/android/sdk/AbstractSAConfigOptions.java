@@ -20,9 +20,14 @@ package com.sensorsdata.analytics.android.sdk;
 import com.sensorsdata.analytics.android.sdk.plugin.encrypt.StorePlugin;
 import com.sensorsdata.analytics.android.sdk.encrypt.IPersistentSecretKey;
 import com.sensorsdata.analytics.android.sdk.encrypt.SAEncryptListener;
+import com.sensorsdata.analytics.android.sdk.internal.beans.EventType;
+import com.sensorsdata.analytics.android.sdk.listener.SAFlushMetricsListener;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.net.ssl.SSLSocketFactory;
 
@@ -155,6 +160,11 @@ abstract class AbstractSAConfigOptions {
      */
     boolean mEnableEncrypt = false;
 
+    /**
+     * 开启加密时，是否在存储时使用会话密钥加密、上报时整批压缩加密
+     */
+    boolean mEnableBatchEncrypt = false;
+
     /**
      * 密钥存储相关接口
      */
@@ -175,6 +185,61 @@ abstract class AbstractSAConfigOptions {
      */
     boolean mEnableSession = false;
 
+    /**
+     * 是否使用分段日志文件存储 Event 数据，默认使用数据库存储
+     */
+    boolean mEnableEventLogStorage = false;
+
+    /**
+     * 是否以 gzip 压缩后的二进制数据作为请求体上报，默认使用表单格式
+     */
+    boolean mEnableRawGzipUpload = false;
+
+    /**
+     * 同时上报的最大请求数，默认 1 逐批串行上报，Debug 模式下始终为 1
+     */
+    int mMaxConcurrentFlushRequests = 1;
+
+    /**
+     * 每批上报数据的目标请求体大小（压缩后），单位字节，默认 64KB
+     */
+    int mFlushTargetPayloadSize = 64 * 1024;
+
+    /**
+     * 单个上报请求的耗时预算，超出时减小每批条数，单位毫秒，默认 3 秒
+     */
+    long mFlushLatencyBudget = 3 * 1000;
+
+    /**
+     * 上报请求的统计回调
+     */
+    SAFlushMetricsListener mFlushMetricsListener;
+
+    /**
+     * 埋点任务队列的容量
+     */
+    int mTrackQueueCapacity = TrackTaskManager.DEFAULT_CAPACITY;
+
+    /**
+     * 埋点任务队列已满时的处理策略
+     */
+    TrackQueueOverflowPolicy mTrackQueueOverflowPolicy = TrackQueueOverflowPolicy.BLOCK;
+
+    /**
+     * 不采集 $lib_detail 的事件类型
+     */
+    Set<EventType> mLibDetailDisabledEventTypes = Collections.emptySet();
+
+    /**
+     * $lib_detail 的采样率
+     */
+    float mLibDetailSampleRate = 1;
+
+    /**
+     * 按事件名配置的优先级，未配置的事件使用默认优先级
+     */
+    Map<String, EventPriority> mEventPriorities = Collections.emptyMap();
+
     /**
      * 自定义加密实现接口
      */
@@ -258,6 +323,111 @@ abstract class AbstractSAConfigOptions {
         return this.mEnableSession;
     }
 
+    /**
+     * 是否使用分段日志文件存储 Event 数据
+     *
+     * @return true 使用分段日志文件，false 使用数据库
+     */
+    public boolean isEnableEventLogStorage() {
+        return this.mEnableEventLogStorage;
+    }
+
+    /**
+     * 是否以 gzip 压缩后的二进制数据作为请求体上报
+     *
+     * @return true 二进制请求体，false 表单格式
+     */
+    public boolean isEnableRawGzipUpload() {
+        return this.mEnableRawGzipUpload;
+    }
+
+    /**
+     * 是否整批加密上报
+     *
+     * @return true 开启加密且整批加密上报
+     */
+    public boolean isEnableBatchEncrypt() {
+        return this.mEnableEncrypt && this.mEnableBatchEncrypt;
+    }
+
+    /**
+     * 同时上报的最大请求数
+     *
+     * @return 最大请求数
+     */
+    public int getMaxConcurrentFlushRequests() {
+        return this.mMaxConcurrentFlushRequests;
+    }
+
+    /**
+     * 每批上报数据的目标请求体大小
+     *
+     * @return 目标大小，单位字节
+     */
+    public int getFlushTargetPayloadSize() {
+        return this.mFlushTargetPayloadSize;
+    }
+
+    /**
+     * 单个上报请求的耗时预算
+     *
+     * @return 耗时预算，单位毫秒
+     */
+    public long getFlushLatencyBudget() {
+        return this.mFlushLatencyBudget;
+    }
+
+    /**
+     * 事件是否采集 $lib_detail
+     *
+     * @param eventType 事件类型
+     * @return true 采集
+     */
+    boolean isLibDetailEnabled(EventType eventType) {
+        return !mLibDetailDisabledEventTypes.contains(EventType.ALL) && !mLibDetailDisabledEventTypes.contains(eventType);
+    }
+
+    /**
+     * $lib_detail 的采样率
+     *
+     * @return 采样率
+     */
+    public float getLibDetailSampleRate() {
+        return this.mLibDetailSampleRate;
+    }
+
+    /**
+     * 获取事件的优先级，优先使用按事件名配置的优先级
+     *
+     * @param type 数据类型，例如 track、track_signup、profile_set
+     * @param eventName 事件名，profile 类数据为 null
+     * @return 优先级
+     */
+    EventPriority getEventPriority(String type, String eventName) {
+        if (eventName != null) {
+            EventPriority priority = mEventPriorities.get(eventName);
+            if (priority != null) {
+                return priority;
+            }
+        }
+        return getDefaultEventPriority(type, eventName);
+    }
+
+    /**
+     * 事件的默认优先级：track_signup、$AppCrashed 和 profile 类数据为高优先级，其他事件为默认优先级
+     *
+     * @param type 数据类型
+     * @param eventName 事件名，profile 类数据为 null
+     * @return 优先级
+     */
+    static EventPriority getDefaultEventPriority(String type, String eventName) {
+        if ("track_signup".equals(type) || "$AppCrashed".equals(eventName)
+                || (type != null && type.startsWith("profile_"))) {
+            return EventPriority.HIGH;
+        }
+        return EventPriority.NORMAL;
+    }
+
     /**
      * 是否开启推送
      *
@@ -64,11 +64,13 @@ import com.sensorsdata.analytics.android.sdk.plugin.property.SensorsDataProperty
 import com.sensorsdata.analytics.android.sdk.remote.BaseSensorsDataSDKRemoteManager;
 import com.sensorsdata.analytics.android.sdk.remote.SensorsDataRemoteManager;
 import com.sensorsdata.analytics.android.sdk.util.AppInfoUtils;
+import com.sensorsdata.analytics.android.sdk.util.DeviceContextSnapshot;
 import com.sensorsdata.analytics.android.sdk.util.JSONUtils;
 import com.sensorsdata.analytics.android.sdk.util.NetworkUtils;
 import com.sensorsdata.analytics.android.sdk.util.SAContextManager;
 import com.sensorsdata.analytics.android.sdk.util.SADataHelper;
 import com.sensorsdata.analytics.android.sdk.util.SensorsDataUtils;
+import com.sensorsdata.analytics.android.sdk.util.ThreadUtils;
 import com.sensorsdata.analytics.android.sdk.util.TimeUtils;
 import com.sensorsdata.analytics.android.sdk.util.ToastUtil;
 import com.sensorsdata.analytics.android.sdk.visual.model.ViewNode;
@@ -79,7 +81,6 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.lang.ref.WeakReference;
-import java.security.SecureRandom;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -181,9 +182,17 @@ abstract class AbstractSensorsDataAPI implements ISensorsDataAPI {
             mStoreManager = SAStoreManager.getInstance();
             mStoreManager.registerPlugins(mSAConfigOptions.getStorePlugins(), mContext);
             mStoreManager.upgrade();
-            mTrackTaskManager = TrackTaskManager.getInstance();
+            // 加密存储时在后台一次性解密所有数据，避免首次读取时逐个解密
+            ThreadUtils.getSinglePool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    mStoreManager.preload();
+                }
+            });
+            mTrackTaskManager = TrackTaskManager.getInstance(mSAConfigOptions.mTrackQueueCapacity, mSAConfigOptions.mTrackQueueOverflowPolicy);
             mTrackTaskManagerThread = new TrackTaskManagerThread();
-            new Thread(mTrackTaskManagerThread, ThreadNameConstants.THREAD_TASK_QUEUE).start();
+            // 任务在读取线程中直接执行，使用执行线程的名称
+            new Thread(mTrackTaskManagerThread, ThreadNameConstants.THREAD_TASK_EXECUTE).start();
             SensorsDataExceptionHandler.init();
             initSAConfig(mSAConfigOptions.mServerUrl, packageName);
             mSAContextManager = new SAContextManager(mContext);
@@ -441,7 +450,7 @@ abstract class AbstractSensorsDataAPI implements ISensorsDataAPI {
      * @param viewNode ViewTree 中的 View 节点
      */
     public void trackInternal(final String eventName, final JSONObject properties, final ViewNode viewNode) {
-        mTrackTaskManager.addTrackEventTask(new Runnable() {
+        mTrackTaskManager.offerTrackEventTask(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -676,15 +685,10 @@ abstract class AbstractSensorsDataAPI implements ISensorsDataAPI {
                 }
             }
 
-            StackTraceElement[] trace = (new Exception()).getStackTrace();
-            if (trace.length > 1) {
-                StackTraceElement traceElement = trace[0];
-                String libDetail = String.format("%s##%s##%s##%s", traceElement
-                                .getClassName(), traceElement.getMethodName(), traceElement.getFileName(),
-                        traceElement.getLineNumber());
-                if (!TextUtils.isEmpty(libDetail)) {
-                    libProperties.put("$lib_detail", libDetail);
-                }
+            String libDetail = LibDetailResolver.resolve(LibDetailResolver.CALL_SITE_TRACK_ITEM,
+                    "item_delete".equals(eventType) ? EventType.ITEM_DELETE : EventType.ITEM_SET, mSAConfigOptions);
+            if (!TextUtils.isEmpty(libDetail)) {
+                libProperties.put("$lib_detail", libDetail);
             }
 
             JSONObject eventProperties = new JSONObject();
@@ -738,9 +742,11 @@ abstract class AbstractSensorsDataAPI implements ISensorsDataAPI {
 
             try {
                 JSONObject sendProperties = new JSONObject();
+                DeviceContextSnapshot deviceContext = null;
                 if (eventType.isTrack()) {
+                    deviceContext = DeviceContextSnapshot.get(mContext, mSAConfigOptions.isDataCollectEnable);
                     //之前可能会因为没有权限无法获取运营商信息，检测再次获取
-                    getCarrier(sendProperties);
+                    getCarrier(sendProperties, deviceContext);
                     if (!"$AppEnd".equals(eventName) && !"$AppDeeplinkLaunch".equals(eventName)) {
                         //合并 $latest_utm 属性
                         SensorsDataUtils.mergeJSONObject(ChannelUtils.getLatestUtmProperties(), sendProperties);
@@ -760,9 +766,8 @@ abstract class AbstractSensorsDataAPI implements ISensorsDataAPI {
                     }
 
                     // 当前网络状况
-                    String networkType = NetworkUtils.networkType(mContext);
-                    sendProperties.put("$wifi", "WIFI".equals(networkType));
-                    sendProperties.put("$network_type", networkType);
+                    sendProperties.put("$wifi", deviceContext.isWifi());
+                    sendProperties.put("$network_type", deviceContext.getNetworkType());
 
                     // GPS
                     try {
@@ -775,7 +780,7 @@ abstract class AbstractSensorsDataAPI implements ISensorsDataAPI {
 
                     // 屏幕方向
                     try {
-                        String screenOrientation = getScreenOrientation();
+                        String screenOrientation = deviceContext.getScreenOrientation();
                         if (!TextUtils.isEmpty(screenOrientation)) {
                             sendProperties.put("$screen_orientation", screenOrientation);
                         }
@@ -847,8 +852,7 @@ abstract class AbstractSensorsDataAPI implements ISensorsDataAPI {
             eventObject.put("time", eventTime);
 
             try {
-                SecureRandom secureRandom = new SecureRandom();
-                eventObject.put("_track_id", secureRandom.nextInt());
+                eventObject.put("_track_id", TrackIdGenerator.nextId());
             } catch (Exception e) {
                 //ignore
             }
@@ -887,12 +891,12 @@ abstract class AbstractSensorsDataAPI implements ISensorsDataAPI {
                 }
             }
             if (eventType.isTrack()) {
+                DeviceContextSnapshot deviceContext = DeviceContextSnapshot.get(mContext, mSAConfigOptions.isDataCollectEnable);
                 //之前可能会因为没有权限无法获取运营商信息，检测再次获取
-                getCarrier(propertiesObject);
+                getCarrier(propertiesObject, deviceContext);
                 // 当前网络状况
-                String networkType = NetworkUtils.networkType(mContext);
-                propertiesObject.put("$wifi", "WIFI".equals(networkType));
-                propertiesObject.put("$network_type", networkType);
+                propertiesObject.put("$wifi", deviceContext.isWifi());
+                propertiesObject.put("$network_type", deviceContext.getNetworkType());
 
                 // SuperProperties
                 mergerDynamicAndSuperProperties(propertiesObject, getDynamicProperty());
@@ -1168,12 +1172,13 @@ abstract class AbstractSensorsDataAPI implements ISensorsDataAPI {
      * @param dynamicProperty 动态公共属性
      */
     private void mergerDynamicAndSuperProperties(JSONObject eventProperty, JSONObject dynamicProperty) {
-        JSONObject superProperties = getSuperProperties();
         if (dynamicProperty == null) {
             dynamicProperty = getDynamicProperty();
         }
-        JSONObject removeDuplicateSuperProperties = SensorsDataUtils.mergeSuperJSONObject(dynamicProperty, superProperties);
-        SensorsDataUtils.mergeJSONObject(removeDuplicateSuperProperties, eventProperty);
+        // 使用缓存的公共属性名索引直接合并，不再复制公共属性
+        synchronized (mSuperProperties) {
+            SensorsDataUtils.mergeSuperProperties(mSuperProperties.get(), mSuperProperties.getKeyIndex(), dynamicProperty, eventProperty);
+        }
     }
 
     private void showDebugModeWarning() {
@@ -1335,8 +1340,7 @@ abstract class AbstractSensorsDataAPI implements ISensorsDataAPI {
         final JSONObject dataObj = new JSONObject();
 
         try {
-            SecureRandom random = new SecureRandom();
-            dataObj.put("_track_id", random.nextInt());
+            dataObj.put("_track_id", TrackIdGenerator.nextId());
         } catch (Exception e) {
             // ignore
         }
@@ -1434,13 +1438,7 @@ abstract class AbstractSensorsDataAPI implements ISensorsDataAPI {
         }
 
         if (TextUtils.isEmpty(libDetail)) {
-            StackTraceElement[] trace = (new Exception()).getStackTrace();
-            if (trace.length > 1) {
-                StackTraceElement traceElement = trace[0];
-                libDetail = String.format("%s##%s##%s##%s", traceElement
-                                .getClassName(), traceElement.getMethodName(), traceElement.getFileName(),
-                        traceElement.getLineNumber());
-            }
+            libDetail = LibDetailResolver.resolve(LibDetailResolver.CALL_SITE_TRACK_EVENT, eventType, mSAConfigOptions);
         }
 
         libProperties.put("$lib_detail", libDetail);
@@ -1676,14 +1674,15 @@ abstract class AbstractSensorsDataAPI implements ISensorsDataAPI {
     }
 
     /**
-     * 重新读取运营商信息
+     * 从设备上下文快照中读取运营商信息
      *
      * @param property Property
+     * @param deviceContext 设备上下文快照
      */
-    private void getCarrier(JSONObject property) {
+    private void getCarrier(JSONObject property, DeviceContextSnapshot deviceContext) {
         try {
             if (TextUtils.isEmpty(property.optString("$carrier")) && mSAConfigOptions.isDataCollectEnable) {
-                String carrier = SensorsDataUtils.getCarrier(mContext);
+                String carrier = deviceContext.getCarrier();
                 if (!TextUtils.isEmpty(carrier)) {
                     property.put("$carrier", carrier);
                 }
@@ -23,6 +23,7 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import com.sensorsdata.analytics.android.sdk.data.adapter.DbAdapter;
@@ -31,6 +32,8 @@ import com.sensorsdata.analytics.android.sdk.exceptions.ConnectErrorException;
 import com.sensorsdata.analytics.android.sdk.exceptions.DebugModeException;
 import com.sensorsdata.analytics.android.sdk.exceptions.InvalidDataException;
 import com.sensorsdata.analytics.android.sdk.exceptions.ResponseErrorException;
+import com.sensorsdata.analytics.android.sdk.network.FlushRetryPolicy;
+import com.sensorsdata.analytics.android.sdk.listener.SAFlushCallback;
 import com.sensorsdata.analytics.android.sdk.util.Base64Coder;
 import com.sensorsdata.analytics.android.sdk.util.JSONUtils;
 import com.sensorsdata.analytics.android.sdk.util.NetworkUtils;
@@ -46,9 +49,20 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 import java.util.zip.GZIPOutputStream;
 
 import javax.net.ssl.HttpsURLConnection;
@@ -66,10 +80,28 @@ class AnalyticsMessages {
     private static final int FLUSH_QUEUE = 3;
     private static final int DELETE_ALL = 4;
     private static final int FLUSH_SCHEDULE = 5;
+    private static final int FLUSH_RETRY = 6;
+    private static final int FLUSH_WITH_CALLBACK = 7;
+    /* FLUSH_QUEUE 的 arg1，表示调用 flush 接口主动上报，不受退避限制 */
+    private static final int FLUSH_MANUAL = 1;
     private static final Map<Context, AnalyticsMessages> S_INSTANCES = new HashMap<>();
     private final Worker mWorker;
     private final Context mContext;
     private final DbAdapter mDbAdapter;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int MAX_RETAINED_FLUSH_BUFFERS = 5;
+    /* 复用的压缩数据缓冲区，只在 Worker 线程中取出和归还 */
+    private final ArrayDeque<FlushBuffer> mFlushBuffers = new ArrayDeque<>();
+    /* 服务端拒绝并发请求后只串行上报 */
+    private volatile boolean mIsSerialFlush = false;
+    private ExecutorService mUploadExecutor;
+    private final FlushBatchController mBatchController = new FlushBatchController();
+    /* 本次上报是否有批次成功、失败，只在 Worker 线程中使用 */
+    private boolean mHasFlushSucceeded;
+    private boolean mHasFlushFailed;
+    /* 本次上报成功、失败的数据条数，只在 Worker 线程中使用 */
+    private int mFlushUploadedCount;
+    private int mFlushFailedCount;
     private SensorsDataAPI mSensorsDataAPI;
 
     /**
@@ -119,7 +151,11 @@ class AnalyticsMessages {
     void enqueueEventMessage(final String type, final JSONObject eventJson) {
         try {
             synchronized (mDbAdapter) {
-                int ret = mDbAdapter.addJSON(eventJson);
+                // 高优先级（默认包括 track_signup、崩溃和 profile 类数据）的数据立即写入数据库，上报时优先发送，其他事件允许合并提交
+                EventPriority priority = getEventPriority(type, eventJson);
+                boolean isHighPriority = priority == EventPriority.HIGH;
+                boolean isImmediate = mSensorsDataAPI.isDebugMode() || isHighPriority;
+                int ret = mDbAdapter.addJSON(eventJson, isImmediate, priority.getValue());
                 if (ret < 0) {
                     String error = "Failed to enqueue the event: " + eventJson;
                     if (mSensorsDataAPI.isDebugMode()) {
@@ -136,8 +172,8 @@ class AnalyticsMessages {
                         DbParams.DB_OUT_OF_MEMORY_ERROR) {
                     mWorker.runMessage(m);
                 } else {
-                    // track_signup 立即发送
-                    if (type.equals("track_signup") || ret > mSensorsDataAPI
+                    // track_signup 立即发送，其他数据按条数和时间间隔触发上报
+                    if ("track_signup".equals(type) || ret > mSensorsDataAPI
                             .getFlushBulkSize()) {
                         mWorker.runMessage(m);
                     } else {
@@ -151,10 +187,27 @@ class AnalyticsMessages {
         }
     }
 
+    /**
+     * 获取数据的优先级
+     *
+     * @param type 数据类型
+     * @param eventJson 数据
+     * @return 优先级
+     */
+    private EventPriority getEventPriority(String type, JSONObject eventJson) {
+        String eventName = eventJson.optString("event", null);
+        SAConfigOptions configOptions = SensorsDataAPI.getConfigOptions();
+        if (configOptions == null) {
+            return AbstractSAConfigOptions.getDefaultEventPriority(type, eventName);
+        }
+        return configOptions.getEventPriority(type, eventName);
+    }
+
     void flush() {
         try {
             final Message m = Message.obtain();
             m.what = FLUSH_QUEUE;
+            m.arg1 = FLUSH_MANUAL;
 
             mWorker.runMessage(m);
         } catch (Exception e) {
@@ -162,6 +215,40 @@ class AnalyticsMessages {
         }
     }
 
+    /**
+     * 上报本地数据，上报结束后在 Worker 线程中回调结果
+     *
+     * @param callback 上报结果回调
+     */
+    void flush(SAFlushCallback callback) {
+        try {
+            final Message m = Message.obtain();
+            m.what = FLUSH_WITH_CALLBACK;
+            m.obj = callback;
+
+            if (mWorker.runMessage(m)) {
+                return;
+            }
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+        // Worker 已停止，无法上报
+        try {
+            if (callback != null) {
+                callback.onFlushFinished(SAFlushResult.failed());
+            }
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+    }
+
+    /**
+     * @return 当前线程是否为上报数据的 Worker 线程
+     */
+    boolean isWorkerThread() {
+        return mWorker.isWorkerThread();
+    }
+
     void flushScheduled() {
         try {
             final Message m = Message.obtain();
@@ -184,7 +271,14 @@ class AnalyticsMessages {
         }
     }
 
-    private void sendData() {
+    /**
+     * 上报本地数据
+     *
+     * @param isManual true 表示调用 flush 接口主动上报，忽略退避状态；false 表示按条数、时间间隔或重试触发的上报
+     */
+    private void sendData(boolean isManual) {
+        mFlushUploadedCount = 0;
+        mFlushFailedCount = 0;
         try {
             if (!mSensorsDataAPI.isNetworkRequestEnable()) {
                 SALog.i(TAG, "NetworkRequest 已关闭，不发送数据！");
@@ -208,6 +302,16 @@ class AnalyticsMessages {
                 return;
             }
 
+            // 上报失败后处于退避或熔断状态，自动触发的上报等到重试时间再上报
+            if (!isManual && !mSensorsDataAPI.isDebugMode()) {
+                long retryDelay = FlushRetryPolicy.getInstance().getRetryDelay();
+                if (retryDelay > 0) {
+                    SALog.i(TAG, String.format(Locale.CHINA, "Flush is backing off, retry after %dms", retryDelay));
+                    scheduleRetry(retryDelay);
+                    return;
+                }
+            }
+
             // 如果开启多进程上报
             if (mSensorsDataAPI.getConfigOptions().isMultiProcessFlush()) {
                 // 已经有进程在上报
@@ -222,78 +326,403 @@ class AnalyticsMessages {
             SALog.printStackTrace(e);
             return;
         }
-        int count = 100;
-        while (count > 0) {
-            boolean deleteEvents = true;
-            String[] eventsData;
-            synchronized (mDbAdapter) {
-                if (mSensorsDataAPI.isDebugMode()) {
-                    /* debug 模式下服务器只允许接收 1 条数据 */
-                    eventsData = mDbAdapter.generateDataString(DbParams.TABLE_EVENTS, 1);
-                } else {
-                    eventsData = mDbAdapter.generateDataString(DbParams.TABLE_EVENTS, 50);
+        // 需要打印上报内容时读取完整的 JSON 字符串，否则直接写入 gzip 压缩流
+        boolean isStreaming = !SALog.isLogEnabled() && mDbAdapter.isStreamingSupported();
+        mHasFlushSucceeded = false;
+        mHasFlushFailed = false;
+        int maxInFlight = getMaxInFlightBatches();
+        if (!sendHighPriorityData(isStreaming)) {
+            // 高优先级的数据上报失败时不再上报其他数据，等待重试
+            SALog.i(TAG, "Failed to flush high priority events, skip the rest.");
+        } else if (maxInFlight > 1) {
+            sendDataConcurrently(maxInFlight, isStreaming);
+        } else {
+            int count = 100;
+            while (count > 0) {
+                FlushBatch batch = readBatch(null, isStreaming, false);
+                if (batch == null) {
+                    updateRetryState();
+                    DbAdapter.getInstance().commitSubProcessFlushState(false);
+                    return;
                 }
+                uploadBatch(batch);
+                count = finishBatch(batch);
             }
+        }
+        updateRetryState();
+        if (mSensorsDataAPI.getConfigOptions().isMultiProcessFlush()) {
+            DbAdapter.getInstance().commitSubProcessFlushState(false);
+        }
+    }
 
-            if (eventsData == null) {
-                DbAdapter.getInstance().commitSubProcessFlushState(false);
-                return;
+    /**
+     * 串行上报高优先级的数据，每一批上报成功后删除，全部上报后再按写入顺序上报其他数据
+     *
+     * @param isStreaming 是否直接写入 gzip 压缩流
+     * @return false 表示有一批数据上报失败
+     */
+    private boolean sendHighPriorityData(boolean isStreaming) {
+        for (int i = 0; i < 100; i++) {
+            FlushBatch batch = readBatch(null, isStreaming, true);
+            if (batch == null) {
+                break;
             }
+            uploadBatch(batch);
+            finishBatch(batch);
+            if (!batch.deleteEvents && !mSensorsDataAPI.isDebugMode()) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-            final String lastId = eventsData[0];
-            final String rawMessage = eventsData[1];
-            final String gzip = eventsData[2];
-            String errorMessage = null;
-
+    /**
+     * 同时上报多批数据：按 _id 顺序依次读取后续批次，最多 maxInFlight 批同时上报，
+     * 先返回的批次先删除。某一批上报失败后不再读取新的批次，等待所有已发出的请求返回后才结束
+     *
+     * @param maxInFlight 同时上报的最大批数
+     * @param isStreaming 是否直接写入 gzip 压缩流
+     */
+    private void sendDataConcurrently(int maxInFlight, boolean isStreaming) {
+        CompletionService<FlushBatch> completionService = new ExecutorCompletionService<>(getUploadExecutor(maxInFlight));
+        Map<Future<FlushBatch>, FlushBatch> inFlightBatches = new HashMap<>();
+        String afterId = null;
+        boolean hasMore = true;
+        boolean isInterrupted = false;
+        while (true) {
+            while (hasMore && inFlightBatches.size() < maxInFlight) {
+                final FlushBatch batch = readBatch(afterId, isStreaming, false);
+                if (batch == null) {
+                    hasMore = false;
+                    break;
+                }
+                batch.isConcurrent = true;
+                afterId = batch.lastId;
+                try {
+                    inFlightBatches.put(completionService.submit(new Callable<FlushBatch>() {
+                        @Override
+                        public FlushBatch call() {
+                            try {
+                                uploadBatch(batch);
+                            } catch (Throwable e) {
+                                failBatch(batch, e);
+                            }
+                            return batch;
+                        }
+                    }), batch);
+                } catch (Exception e) {
+                    failBatch(batch, e);
+                    finishBatch(batch);
+                    hasMore = false;
+                }
+            }
+            if (inFlightBatches.isEmpty()) {
+                break;
+            }
+            Future<FlushBatch> future;
+            try {
+                future = completionService.take();
+            } catch (InterruptedException e) {
+                // 等待所有已发出的请求返回，保证每一批都被确认或者保留
+                isInterrupted = true;
+                hasMore = false;
+                continue;
+            }
+            FlushBatch batch = inFlightBatches.remove(future);
+            if (batch == null) {
+                continue;
+            }
             try {
-                String data = rawMessage;
-                if (DbParams.GZIP_DATA_EVENT.equals(gzip)) {
-                    data = encodeData(rawMessage);
+                future.get();
+            } catch (Exception e) {
+                failBatch(batch, e);
+            }
+            if (batch.isConcurrencyRejected) {
+                SALog.i(TAG, "Server rejected concurrent requests, flush serially from now on.");
+                mIsSerialFlush = true;
+            }
+            if (finishBatch(batch) <= 0 || mIsSerialFlush) {
+                hasMore = false;
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 上报过程中出现异常时将该批数据标记为失败，数据保留在数据库中下次上报
+     *
+     * @param batch 数据
+     * @param e 异常
+     */
+    private void failBatch(FlushBatch batch, Throwable e) {
+        SALog.i(TAG, "Upload batch failed", e);
+        batch.deleteEvents = false;
+        batch.errorMessage = "Exception: " + e.getMessage();
+    }
+
+    /**
+     * 同时上报的最大批数，Debug 模式下以及服务端拒绝并发请求后只串行上报
+     *
+     * @return 最大批数
+     */
+    private int getMaxInFlightBatches() {
+        SAConfigOptions configOptions = SensorsDataAPI.getConfigOptions();
+        if (configOptions == null || mIsSerialFlush || mSensorsDataAPI.isDebugMode()) {
+            return 1;
+        }
+        return configOptions.getMaxConcurrentFlushRequests();
+    }
+
+    private ExecutorService getUploadExecutor(int maxInFlight) {
+        if (mUploadExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(maxInFlight, maxInFlight, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, ThreadNameConstants.THREAD_FLUSH_UPLOAD);
                 }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            mUploadExecutor = executor;
+        }
+        return mUploadExecutor;
+    }
+
+    /**
+     * 在 Worker 线程中读取 afterId 之后的一批数据
+     *
+     * @param afterId 上一批数据的 lastId，为 null 时从头读取
+     * @param isStreaming 是否直接写入 gzip 压缩流
+     * @param isHighPriority true 表示只读取高优先级的数据
+     * @return 待上报的数据，没有数据时返回 null
+     */
+    private FlushBatch readBatch(String afterId, boolean isStreaming, boolean isHighPriority) {
+        /* debug 模式下服务器只允许接收 1 条数据 */
+        int limit = mSensorsDataAPI.isDebugMode() ? 1 : mBatchController.getBatchSize();
+        FlushBatch batch = new FlushBatch(afterId, isStreaming, isHighPriority, acquireFlushBuffer());
+        String[] eventsData;
+        synchronized (mDbAdapter) {
+            if (isStreaming) {
+                eventsData = generateGzipData(afterId, limit, isHighPriority, batch.buffer);
+            } else {
+                eventsData = mDbAdapter.generateDataString(DbParams.TABLE_EVENTS, afterId, limit, isHighPriority);
+            }
+        }
+        if (eventsData == null) {
+            releaseFlushBuffer(batch.buffer);
+            return null;
+        }
+        batch.lastId = eventsData[0];
+        batch.rawMessage = isStreaming ? null : eventsData[1];
+        batch.gzip = eventsData[2];
+        batch.rowCount = eventsData.length > 3 ? Integer.parseInt(eventsData[3]) : limit;
+        return batch;
+    }
 
-                if (!TextUtils.isEmpty(data)) {
-                    sendHttpRequest(mSensorsDataAPI.getServerUrl(), data, gzip, rawMessage, false);
+    /**
+     * 上报一批数据，可能在上报线程中执行，只访问 batch 自身的数据
+     *
+     * @param batch 待上报的数据
+     */
+    private void uploadBatch(FlushBatch batch) {
+        long startTime = SystemClock.elapsedRealtime();
+        try {
+            SAConfigOptions configOptions = SensorsDataAPI.getConfigOptions();
+            if (configOptions != null && configOptions.isEnableRawGzipUpload()) {
+                // 流式读取的数据已经压缩在 batch.buffer 中
+                if (!batch.isStreaming) {
+                    gzipToBuffer(batch.rawMessage, batch.buffer);
                 }
-            } catch (ConnectErrorException e) {
-                deleteEvents = false;
-                errorMessage = "Connection error: " + e.getMessage();
-            } catch (InvalidDataException e) {
-                errorMessage = "Invalid data: " + e.getMessage();
-            } catch (ResponseErrorException e) {
-                deleteEvents = isDeleteEventsByCode(e.getHttpCode());
-                errorMessage = "ResponseErrorException: " + e.getMessage();
-            } catch (Exception e) {
-                deleteEvents = false;
-                errorMessage = "Exception: " + e.getMessage();
-            } finally {
-                boolean isDebugMode = mSensorsDataAPI.isDebugMode();
-                if (!TextUtils.isEmpty(errorMessage)) {
-                    if (isDebugMode || SALog.isLogEnabled()) {
-                        SALog.i(TAG, errorMessage);
-                        if (isDebugMode && SensorsDataAPI.SHOW_DEBUG_INFO_VIEW) {
-                            ToastUtil.showShort(mContext, errorMessage);
-                        }
-                    }
+                batch.payloadBytes = batch.buffer.size();
+                sendGzipHttpRequest(mSensorsDataAPI.getServerUrl(), batch.buffer.buffer(), batch.buffer.size(), batch.gzip, batch.rawMessage);
+            } else {
+                String data = batch.rawMessage;
+                if (batch.isStreaming) {
+                    data = new String(Base64Coder.encode(batch.buffer.buffer(), batch.buffer.size()));
+                } else if (DbParams.GZIP_DATA_EVENT.equals(batch.gzip)) {
+                    data = encodeData(batch.rawMessage);
                 }
-                if (deleteEvents || isDebugMode) {
-                    count = mDbAdapter.cleanupEvents(lastId);
-                    SALog.i(TAG, String.format(Locale.CHINA, "Events flushed. [left = %d]", count));
-                } else {
-                    count = 0;
+
+                byte[] body = buildFormBody(data, batch.gzip);
+                if (body != null) {
+                    // 与 raw gzip 模式一致，统计实际写入请求体的字节数
+                    batch.payloadBytes = body.length;
+                    postData(mSensorsDataAPI.getServerUrl(), body, body.length, null, batch.rawMessage, false);
                 }
+            }
+        } catch (ConnectErrorException e) {
+            batch.deleteEvents = false;
+            batch.isCongested = true;
+            batch.errorMessage = "Connection error: " + e.getMessage();
+        } catch (InvalidDataException e) {
+            batch.errorMessage = "Invalid data: " + e.getMessage();
+        } catch (ResponseErrorException e) {
+            batch.deleteEvents = isDeleteEventsByCode(e.getHttpCode());
+            batch.isCongested = e.getHttpCode() >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+            // 并发上报时返回 429 表示服务端不支持并发请求，保留数据改为串行上报
+            if (batch.isConcurrent && e.getHttpCode() == HTTP_TOO_MANY_REQUESTS) {
+                batch.isConcurrencyRejected = true;
+                batch.deleteEvents = false;
+            }
+            batch.errorMessage = "ResponseErrorException: " + e.getMessage();
+        } catch (Exception e) {
+            batch.deleteEvents = false;
+            batch.errorMessage = "Exception: " + e.getMessage();
+        } finally {
+            batch.durationMillis = SystemClock.elapsedRealtime() - startTime;
+        }
+    }
 
+    /**
+     * 在 Worker 线程中处理上报结果，上报成功（或 Debug 模式）时删除这一批数据
+     *
+     * @param batch 已上报的数据
+     * @return 剩余的数据条数，上报失败时返回 0
+     */
+    private int finishBatch(FlushBatch batch) {
+        releaseFlushBuffer(batch.buffer);
+        boolean isDebugMode = mSensorsDataAPI.isDebugMode();
+        if (!isDebugMode) {
+            updateBatchSize(batch);
+        }
+        if (!TextUtils.isEmpty(batch.errorMessage)) {
+            if (isDebugMode || SALog.isLogEnabled()) {
+                SALog.i(TAG, batch.errorMessage);
+                if (isDebugMode && SensorsDataAPI.SHOW_DEBUG_INFO_VIEW) {
+                    ToastUtil.showShort(mContext, batch.errorMessage);
+                }
             }
         }
-        if (mSensorsDataAPI.getConfigOptions().isMultiProcessFlush()) {
-            DbAdapter.getInstance().commitSubProcessFlushState(false);
+        if (batch.deleteEvents) {
+            mHasFlushSucceeded = true;
+            mFlushUploadedCount += batch.rowCount;
+        } else if (!batch.isConcurrencyRejected) {
+            mHasFlushFailed = true;
+            mFlushFailedCount += batch.rowCount;
+        }
+        if (batch.deleteEvents || isDebugMode) {
+            int count;
+            if (batch.isHighPriority) {
+                count = mDbAdapter.cleanupHighPriorityEvents(batch.lastId);
+            } else if (batch.afterId == null) {
+                count = mDbAdapter.cleanupEvents(batch.lastId);
+            } else {
+                count = mDbAdapter.cleanupEvents(batch.afterId, batch.lastId);
+            }
+            SALog.i(TAG, String.format(Locale.CHINA, "Events flushed. [left = %d]", count));
+            return count;
+        }
+        return 0;
+    }
+
+    /**
+     * 本次上报结束后更新重试状态：有批次失败时按退避时间安排重试，全部成功时重置
+     */
+    private void updateRetryState() {
+        if (mSensorsDataAPI.isDebugMode()) {
+            return;
+        }
+        if (mHasFlushFailed) {
+            scheduleRetry(FlushRetryPolicy.getInstance().onFailure());
+        } else if (mHasFlushSucceeded) {
+            FlushRetryPolicy.getInstance().onSuccess();
+        }
+    }
+
+    private void scheduleRetry(long delay) {
+        final Message m = Message.obtain();
+        m.what = FLUSH_RETRY;
+        mWorker.runMessageOnce(m, delay);
+    }
+
+    /**
+     * 根据请求的耗时和大小调整每批条数，并回调统计数据
+     *
+     * @param batch 已上报的数据
+     */
+    private void updateBatchSize(FlushBatch batch) {
+        SAConfigOptions configOptions = SensorsDataAPI.getConfigOptions();
+        if (configOptions == null) {
+            return;
+        }
+        boolean isSuccess = TextUtils.isEmpty(batch.errorMessage);
+        int nextBatchSize = mBatchController.onBatchUploaded(batch.rowCount, batch.payloadBytes, batch.durationMillis,
+                batch.isCongested, configOptions.getFlushTargetPayloadSize(), configOptions.getFlushLatencyBudget());
+        SALog.i(TAG, String.format(Locale.CHINA, "Flush metrics. [rows = %d, bytes = %d, duration = %dms, next batch size = %d]",
+                batch.rowCount, batch.payloadBytes, batch.durationMillis, nextBatchSize));
+        if (configOptions.mFlushMetricsListener != null) {
+            try {
+                configOptions.mFlushMetricsListener.onFlushMetrics(batch.rowCount, batch.payloadBytes, batch.durationMillis, isSuccess, nextBatchSize);
+            } catch (Exception e) {
+                SALog.printStackTrace(e);
+            }
+        }
+    }
+
+    private FlushBuffer acquireFlushBuffer() {
+        FlushBuffer buffer = mFlushBuffers.poll();
+        if (buffer == null) {
+            return new FlushBuffer();
+        }
+        buffer.reset();
+        return buffer;
+    }
+
+    private void releaseFlushBuffer(FlushBuffer buffer) {
+        buffer.trim();
+        if (mFlushBuffers.size() < MAX_RETAINED_FLUSH_BUFFERS) {
+            mFlushBuffers.push(buffer);
         }
     }
 
-    private void sendHttpRequest(String path, String data, String gzip, String rawMessage, boolean isRedirects) throws ConnectErrorException, ResponseErrorException {
+    /**
+     * 构建表单格式的请求体，data_list 为 Base64 编码的数据
+     *
+     * @return 请求体，没有数据时返回 null
+     */
+    private byte[] buildFormBody(String data, String gzip) {
+        if (TextUtils.isEmpty(data)) {
+            return null;
+        }
+        Uri.Builder builder = new Uri.Builder();
+        //先校验crc
+        builder.appendQueryParameter("crc", String.valueOf(data.hashCode()));
+
+        builder.appendQueryParameter("gzip", gzip);
+        builder.appendQueryParameter("data_list", data);
+
+        String query = builder.build().getEncodedQuery();
+        if (TextUtils.isEmpty(query)) {
+            return null;
+        }
+        return query.getBytes(CHARSET_UTF8);
+    }
+
+    /**
+     * 以 gzip 压缩后的二进制数据作为请求体上报，crc 为请求体的 CRC32，与 gzip 类型一起放在请求头中
+     */
+    private void sendGzipHttpRequest(String path, byte[] body, int length, String gzip, String rawMessage) throws ConnectErrorException, ResponseErrorException {
+        if (length <= 0) {
+            return;
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(body, 0, length);
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Content-Encoding", "gzip");
+        headers.put("crc", String.valueOf(crc32.getValue()));
+        headers.put("gzip", gzip);
+        postData(path, body, length, headers, rawMessage, false);
+    }
+
+    private void postData(String path, byte[] body, int length, Map<String, String> headers, String rawMessage, boolean isRedirects) throws ConnectErrorException, ResponseErrorException {
         HttpURLConnection connection = null;
         InputStream in = null;
         OutputStream out = null;
         BufferedOutputStream bout = null;
+        boolean isKeepAlive = false;
         try {
             final URL url = new URL(path);
             connection = (HttpURLConnection) url.openConnection();
@@ -316,21 +745,13 @@ class AnalyticsMessages {
                 connection.setRequestProperty("Cookie", cookie);
             }
 
-            Uri.Builder builder = new Uri.Builder();
-            //先校验crc
-            if (!TextUtils.isEmpty(data)) {
-                builder.appendQueryParameter("crc", String.valueOf(data.hashCode()));
-            }
-
-            builder.appendQueryParameter("gzip", gzip);
-            builder.appendQueryParameter("data_list", data);
-
-            String query = builder.build().getEncodedQuery();
-            if (TextUtils.isEmpty(query)) {
-                return;
+            if (headers != null) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    connection.setRequestProperty(header.getKey(), header.getValue());
+                }
             }
 
-            connection.setFixedLengthStreamingMode(query.getBytes(CHARSET_UTF8).length);
+            connection.setFixedLengthStreamingMode(length);
             connection.setDoOutput(true);
             connection.setRequestMethod("POST");
             //设置连接超时时间
@@ -339,7 +760,7 @@ class AnalyticsMessages {
             connection.setReadTimeout(30 * 1000);
             out = connection.getOutputStream();
             bout = new BufferedOutputStream(out);
-            bout.write(query.getBytes(CHARSET_UTF8));
+            bout.write(body, 0, length);
             bout.flush();
 
             int responseCode = connection.getResponseCode();
@@ -348,7 +769,7 @@ class AnalyticsMessages {
                 String location = NetworkUtils.getLocation(connection, path);
                 if (!TextUtils.isEmpty(location)) {
                     closeStream(bout, out, null, connection);
-                    sendHttpRequest(location, data, gzip, rawMessage, true);
+                    postData(location, body, length, headers, rawMessage, true);
                     return;
                 }
             }
@@ -379,10 +800,12 @@ class AnalyticsMessages {
                 throw new ResponseErrorException(String.format("flush failure with response '%s', the response code is '%d'",
                         response, responseCode), responseCode);
             }
+            // 响应已完整读取，不断开连接，后续请求可以复用
+            isKeepAlive = true;
         } catch (IOException e) {
             throw new ConnectErrorException(e);
         } finally {
-            closeStream(bout, out, in, connection);
+            closeStream(bout, out, in, isKeepAlive ? null : connection);
         }
     }
 
@@ -436,12 +859,73 @@ class AnalyticsMessages {
         }
     }
 
+    /**
+     * 从数据库中读取数据直接写入 gzip 压缩流，不生成完整的 JSON 字符串
+     *
+     * @param afterId 上一批数据的 lastId，为 null 时从头读取
+     * @param limit 条数限制
+     * @param isHighPriority true 表示只读取高优先级的数据
+     * @param buffer 保存压缩后的数据
+     * @return {lastId, null, gzip 类型, 条数}，没有数据时返回 null
+     */
+    private String[] generateGzipData(String afterId, int limit, boolean isHighPriority, FlushBuffer buffer) {
+        GZIPOutputStream gos = null;
+        try {
+            gos = new GZIPOutputStream(buffer);
+            String[] eventsData = mDbAdapter.writeData(DbParams.TABLE_EVENTS, afterId, limit, isHighPriority, gos);
+            gos.close();
+            gos = null;
+            return eventsData;
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        } finally {
+            if (gos != null) {
+                try {
+                    gos.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 将数据压缩后写入 buffer
+     *
+     * @param rawMessage 数据
+     * @param buffer 保存压缩后的数据
+     * @throws InvalidDataException 压缩失败
+     */
+    private void gzipToBuffer(String rawMessage, FlushBuffer buffer) throws InvalidDataException {
+        GZIPOutputStream gos = null;
+        try {
+            buffer.reset();
+            gos = new GZIPOutputStream(buffer);
+            gos.write(rawMessage.getBytes(CHARSET_UTF8));
+            gos.close();
+            gos = null;
+        } catch (IOException exception) {
+            // 格式错误，直接将数据删除
+            throw new InvalidDataException(exception);
+        } finally {
+            if (gos != null) {
+                try {
+                    gos.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
     private String encodeData(final String rawMessage) throws InvalidDataException {
         GZIPOutputStream gos = null;
         try {
-            ByteArrayOutputStream os = new ByteArrayOutputStream(rawMessage.getBytes(CHARSET_UTF8).length);
+            byte[] rawBytes = rawMessage.getBytes(CHARSET_UTF8);
+            ByteArrayOutputStream os = new ByteArrayOutputStream(rawBytes.length);
             gos = new GZIPOutputStream(os);
-            gos.write(rawMessage.getBytes(CHARSET_UTF8));
+            gos.write(rawBytes);
             gos.close();
             byte[] compressed = os.toByteArray();
             os.close();
@@ -460,6 +944,58 @@ class AnalyticsMessages {
         }
     }
 
+    /**
+     * 一批待上报的数据，afterId 和 lastId 之间的数据上报成功后按范围删除；
+     * 高优先级的数据删除 lastId 及之前的高优先级数据
+     */
+    private static class FlushBatch {
+        final String afterId;
+        final boolean isStreaming;
+        final boolean isHighPriority;
+        final FlushBuffer buffer;
+        String lastId;
+        String rawMessage;
+        String gzip;
+        boolean isConcurrent;
+        boolean deleteEvents = true;
+        boolean isConcurrencyRejected;
+        String errorMessage;
+        int rowCount;
+        int payloadBytes;
+        long durationMillis;
+        boolean isCongested;
+
+        FlushBatch(String afterId, boolean isStreaming, boolean isHighPriority, FlushBuffer buffer) {
+            this.afterId = afterId;
+            this.isStreaming = isStreaming;
+            this.isHighPriority = isHighPriority;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * 可以直接访问内部数组的 ByteArrayOutputStream，避免 toByteArray 的复制
+     */
+    private static class FlushBuffer extends ByteArrayOutputStream {
+        /* 超过该大小时不再保留缓冲区，避免偶尔的大批量数据长期占用内存 */
+        private static final int MAX_RETAINED_SIZE = 256 * 1024;
+
+        FlushBuffer() {
+            super(8 * 1024);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        void trim() {
+            if (buf.length > MAX_RETAINED_SIZE) {
+                buf = new byte[8 * 1024];
+                count = 0;
+            }
+        }
+    }
+
     // Worker will manage the (at most single) IO thread associated with
     // this AnalyticsMessages instance.
     // XXX: Worker class is unnecessary, should be just a subclass of HandlerThread
@@ -476,14 +1012,20 @@ class AnalyticsMessages {
             mHandler = new AnalyticsMessageHandler(thread.getLooper());
         }
 
-        void runMessage(Message msg) {
+        boolean runMessage(Message msg) {
             synchronized (mHandlerLock) {
                 // We died under suspicious circumstances. Don't try to send any more events.
                 if (mHandler == null) {
                     SALog.i(TAG, "Dead worker dropping a message: " + msg.what);
-                } else {
-                    mHandler.sendMessage(msg);
+                    return false;
                 }
+                return mHandler.sendMessage(msg);
+            }
+        }
+
+        boolean isWorkerThread() {
+            synchronized (mHandlerLock) {
+                return mHandler != null && mHandler.getLooper() == Looper.myLooper();
             }
         }
 
@@ -510,7 +1052,7 @@ class AnalyticsMessages {
             public void handleMessage(Message msg) {
                 try {
                     if (msg.what == FLUSH_QUEUE) {
-                        sendData();
+                        sendData(msg.arg1 == FLUSH_MANUAL);
                     } else if (msg.what == DELETE_ALL) {
                         try {
                             mDbAdapter.deleteAllEvents();
@@ -519,7 +1061,22 @@ class AnalyticsMessages {
                         }
                     } else if (msg.what == FLUSH_SCHEDULE) {
                         flushScheduled();
-                        sendData();
+                        sendData(false);
+                    } else if (msg.what == FLUSH_RETRY) {
+                        sendData(false);
+                    } else if (msg.what == FLUSH_WITH_CALLBACK) {
+                        SAFlushResult result;
+                        try {
+                            sendData(true);
+                            result = new SAFlushResult(mFlushUploadedCount, mDbAdapter.getEventCount(), mFlushFailedCount, false);
+                        } catch (RuntimeException e) {
+                            SALog.i(TAG, "Flush with callback failed", e);
+                            result = SAFlushResult.failed();
+                        }
+                        SAFlushCallback callback = (SAFlushCallback) msg.obj;
+                        if (callback != null) {
+                            callback.onFlushFinished(result);
+                        }
                     } else {
                         SALog.i(TAG, "Unexpected message received by SensorsData worker: " + msg);
                     }
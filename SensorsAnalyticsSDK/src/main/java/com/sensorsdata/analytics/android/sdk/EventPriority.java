@@ -0,0 +1,51 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk;
+
+/**
+ * 事件优先级：高优先级的数据优先上报，本地缓存超过上限时优先删除低优先级的数据
+ */
+public enum EventPriority {
+    /**
+     * 低优先级，缓存空间不足时最先被删除
+     */
+    LOW(-1),
+    /**
+     * 默认优先级
+     */
+    NORMAL(0),
+    /**
+     * 高优先级，立即写入数据库，下次上报时排在其他数据之前优先发送，不会额外触发上报
+     */
+    HIGH(1);
+
+    private final int mValue;
+
+    EventPriority(int value) {
+        this.mValue = value;
+    }
+
+    /**
+     * 保存在 Event 表 priority 列中的值
+     *
+     * @return 优先级的值
+     */
+    public int getValue() {
+        return mValue;
+    }
+}
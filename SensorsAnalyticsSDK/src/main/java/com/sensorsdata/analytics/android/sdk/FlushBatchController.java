@@ -0,0 +1,72 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk;
+
+/**
+ * 根据每个请求的耗时和请求体大小调整每批上报的条数（AIMD）：
+ * 请求在耗时预算内完成且批次已满时每次增加固定条数，并且不超过目标请求体大小对应的条数；
+ * 请求超时、连接失败、服务端 5xx 或耗时超出预算时条数减半
+ */
+class FlushBatchController {
+    static final int MIN_BATCH_SIZE = 10;
+    static final int MAX_BATCH_SIZE = 500;
+    static final int INITIAL_BATCH_SIZE = 50;
+    /* 每次增加的条数 */
+    private static final int ADDITIVE_INCREASE = 10;
+    private int mBatchSize = INITIAL_BATCH_SIZE;
+
+    /**
+     * 当前每批上报的条数
+     *
+     * @return 条数
+     */
+    synchronized int getBatchSize() {
+        return mBatchSize;
+    }
+
+    /**
+     * 根据一次上报请求的结果调整每批条数
+     *
+     * @param rowCount 本次上报的条数
+     * @param payloadBytes 请求体的字节数
+     * @param durationMillis 请求耗时
+     * @param isCongested 是否超时、连接失败或服务端繁忙
+     * @param targetPayloadSize 目标请求体大小，单位字节
+     * @param latencyBudget 请求耗时预算，单位毫秒
+     * @return 调整后的条数
+     */
+    synchronized int onBatchUploaded(int rowCount, int payloadBytes, long durationMillis, boolean isCongested,
+                                     int targetPayloadSize, long latencyBudget) {
+        if (isCongested || durationMillis > latencyBudget) {
+            mBatchSize = Math.max(MIN_BATCH_SIZE, mBatchSize / 2);
+            return mBatchSize;
+        }
+        if (rowCount <= 0 || payloadBytes <= 0) {
+            return mBatchSize;
+        }
+        // 按本次的平均每条大小估算目标请求体能容纳的条数，大数据量的事件（例如 H5 事件）对应更小的批次
+        int bytesPerRow = Math.max(1, payloadBytes / rowCount);
+        int sizeLimit = Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, targetPayloadSize / bytesPerRow));
+        if (rowCount >= mBatchSize) {
+            mBatchSize = Math.min(mBatchSize + ADDITIVE_INCREASE, sizeLimit);
+        } else if (mBatchSize > sizeLimit) {
+            mBatchSize = sizeLimit;
+        }
+        return mBatchSize;
+    }
+}
@@ -23,6 +23,7 @@ import android.webkit.WebView;
 import com.sensorsdata.analytics.android.sdk.deeplink.SensorsDataDeepLinkCallback;
 import com.sensorsdata.analytics.android.sdk.internal.api.IFragmentAPI;
 import com.sensorsdata.analytics.android.sdk.internal.api.IUserIdentityAPI;
+import com.sensorsdata.analytics.android.sdk.listener.SAFlushCallback;
 
 import org.json.JSONObject;
 
@@ -725,6 +726,22 @@ public interface ISensorsDataAPI extends IFragmentAPI, IUserIdentityAPI {
      */
     void flushSync();
 
+    /**
+     * 将所有本地缓存的日志发送到 Sensors Analytics，等待上报结束或者超时后返回。
+     * 不要在主线程中调用，在 SDK 的采集线程或上报线程中调用时不会等待，直接返回超时结果
+     *
+     * @param timeoutMillis 最长等待时间，单位毫秒
+     * @return 上报结果
+     */
+    SAFlushResult flushSync(long timeoutMillis);
+
+    /**
+     * 将所有本地缓存的日志发送到 Sensors Analytics，上报结束后回调结果
+     *
+     * @param callback 上报结果回调，在 SDK 的上报线程中执行
+     */
+    void flushAsync(SAFlushCallback callback);
+
     /**
      * 以轮询形式将所有本地缓存的日志发送到 Sensors Analytics.
      */
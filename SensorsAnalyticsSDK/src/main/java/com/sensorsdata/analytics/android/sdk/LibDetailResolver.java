@@ -0,0 +1,69 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk;
+
+import com.sensorsdata.analytics.android.sdk.internal.beans.EventType;
+
+import java.util.Random;
+
+/**
+ * 生成 $lib_detail 中的调用位置 class##method##file##line。
+ * 事件在 SDK 的任务线程中生成，每个调用点的调用位置都是固定的，所以每个调用点只获取一次调用栈并缓存结果
+ */
+final class LibDetailResolver {
+    /* 调用点，作为缓存的下标 */
+    static final int CALL_SITE_TRACK_ITEM = 0;
+    static final int CALL_SITE_TRACK_EVENT = 1;
+    private static final String[] CALL_SITE_CACHE = new String[2];
+    private static final Random RANDOM = new Random();
+
+    private LibDetailResolver() {
+    }
+
+    /**
+     * 获取调用 resolve 的方法所在位置，按配置关闭或抽样时返回 null
+     *
+     * @param callSite 调用点
+     * @param eventType 事件类型
+     * @param configOptions 配置
+     * @return class##method##file##line
+     */
+    static String resolve(int callSite, EventType eventType, AbstractSAConfigOptions configOptions) {
+        if (configOptions != null) {
+            if (!configOptions.isLibDetailEnabled(eventType)) {
+                return null;
+            }
+            float sampleRate = configOptions.getLibDetailSampleRate();
+            if (sampleRate < 1 && RANDOM.nextFloat() >= sampleRate) {
+                return null;
+            }
+        }
+        String libDetail = CALL_SITE_CACHE[callSite];
+        if (libDetail == null) {
+            StackTraceElement[] trace = new Throwable().getStackTrace();
+            if (trace.length > 1) {
+                // trace[1] 为调用 resolve 的方法
+                StackTraceElement traceElement = trace[1];
+                libDetail = String.format("%s##%s##%s##%s", traceElement.getClassName(), traceElement.getMethodName(),
+                        traceElement.getFileName(), traceElement.getLineNumber());
+                CALL_SITE_CACHE[callSite] = libDetail;
+            }
+        }
+        return libDetail;
+    }
+}
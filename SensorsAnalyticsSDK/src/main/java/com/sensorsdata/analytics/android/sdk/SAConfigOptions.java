@@ -22,10 +22,17 @@ import android.text.TextUtils;
 import com.sensorsdata.analytics.android.sdk.plugin.encrypt.StorePlugin;
 import com.sensorsdata.analytics.android.sdk.encrypt.IPersistentSecretKey;
 import com.sensorsdata.analytics.android.sdk.encrypt.SAEncryptListener;
+import com.sensorsdata.analytics.android.sdk.internal.beans.EventType;
+import com.sensorsdata.analytics.android.sdk.listener.SAFlushMetricsListener;
 import com.sensorsdata.analytics.android.sdk.advert.utils.ChannelUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.net.ssl.SSLSocketFactory;
 
@@ -309,6 +316,19 @@ public final class SAConfigOptions extends AbstractSAConfigOptions implements Cl
         return this;
     }
 
+    /**
+     * 开启加密时，事件在存储时使用本地生成的会话密钥（AES）加密，上报时整批压缩后使用公钥加密一次，
+     * 不再对每条事件单独压缩加密。每个 payload 解密解压后为事件数组，需要服务端支持。
+     * 仅在主进程且未开启多进程上报时生效，默认关闭
+     *
+     * @param enableBatchEncrypt 是否整批加密上报
+     * @return SAConfigOptions
+     */
+    public SAConfigOptions enableBatchEncrypt(boolean enableBatchEncrypt) {
+        this.mEnableBatchEncrypt = enableBatchEncrypt;
+        return this;
+    }
+
     /**
      * 密钥回调监听
      *
@@ -460,4 +480,149 @@ public final class SAConfigOptions extends AbstractSAConfigOptions implements Cl
         this.mEnableSession = enableSession;
         return this;
     }
-}
\ No newline at end of file
+
+    /**
+     * 是否使用分段日志文件存储 Event 数据，仅在主进程且未开启多进程上报时生效。
+     * 开启后首次启动会将数据库中未上报的数据迁移到日志文件中
+     *
+     * @param enableEventLogStorage true 使用分段日志文件，false 使用数据库
+     * @return SAConfigOptions
+     */
+    public SAConfigOptions enableEventLogStorage(boolean enableEventLogStorage) {
+        this.mEnableEventLogStorage = enableEventLogStorage;
+        return this;
+    }
+
+    /**
+     * 是否以 gzip 压缩后的二进制数据作为请求体上报。开启后请求头中包含 Content-Encoding: gzip，
+     * crc 和 gzip 参数也放在请求头中，不再使用 Base64 和表单编码，需要数据接收端支持
+     *
+     * @param enableRawGzipUpload true 二进制请求体，false 表单格式
+     * @return SAConfigOptions
+     */
+    public SAConfigOptions enableRawGzipUpload(boolean enableRawGzipUpload) {
+        this.mEnableRawGzipUpload = enableRawGzipUpload;
+        return this;
+    }
+
+    /**
+     * 设置同时上报的最大请求数。默认 1，逐批串行上报，数据按入库顺序到达服务端。
+     * 设置为大于 1 时多批数据并行上报，先返回的批次先删除，数据到达服务端的顺序可能与入库顺序不同，
+     * 同时服务端的并发请求数也会增加，需要确认数据接收端支持后再开启；
+     * Debug 模式下以及服务端返回 429 后自动切换为串行上报
+     *
+     * @param maxConcurrentFlushRequests 最大请求数，合法区间为 [1, 5]，默认 1
+     * @return SAConfigOptions
+     */
+    public SAConfigOptions setMaxConcurrentFlushRequests(int maxConcurrentFlushRequests) {
+        this.mMaxConcurrentFlushRequests = Math.max(1, Math.min(5, maxConcurrentFlushRequests));
+        return this;
+    }
+
+    /**
+     * 设置每批上报数据的目标请求体大小（压缩后），SDK 根据每条数据的平均大小计算每批条数
+     *
+     * @param targetPayloadSize 目标大小，单位字节，最小 8KB，默认 64KB
+     * @return SAConfigOptions
+     */
+    public SAConfigOptions setFlushTargetPayloadSize(int targetPayloadSize) {
+        this.mFlushTargetPayloadSize = Math.max(8 * 1024, targetPayloadSize);
+        return this;
+    }
+
+    /**
+     * 设置单个上报请求的耗时预算，请求耗时超出预算时减小每批条数
+     *
+     * @param latencyBudget 耗时预算，单位毫秒，最小 500，默认 3000
+     * @return SAConfigOptions
+     */
+    public SAConfigOptions setFlushLatencyBudget(long latencyBudget) {
+        this.mFlushLatencyBudget = Math.max(500, latencyBudget);
+        return this;
+    }
+
+    /**
+     * 设置上报请求的统计回调，可以获取每个请求的条数、大小、耗时以及调整后的每批条数
+     *
+     * @param flushMetricsListener 回调
+     * @return SAConfigOptions
+     */
+    public SAConfigOptions setFlushMetricsListener(SAFlushMetricsListener flushMetricsListener) {
+        this.mFlushMetricsListener = flushMetricsListener;
+        return this;
+    }
+
+    /**
+     * 设置埋点任务队列的容量，队列已满时按 setTrackQueueOverflowPolicy 设置的策略处理
+     *
+     * @param capacity 队列容量，最小 100，默认 10000
+     * @return SAConfigOptions
+     */
+    public SAConfigOptions setTrackQueueCapacity(int capacity) {
+        this.mTrackQueueCapacity = Math.max(100, capacity);
+        return this;
+    }
+
+    /**
+     * 设置埋点任务队列已满时的处理策略，默认 BLOCK。
+     * 注意 BLOCK 只在子线程中等待，在主线程和埋点执行线程中等同于 DROP_NEWEST，直接丢弃新任务
+     *
+     * @param overflowPolicy 处理策略
+     * @return SAConfigOptions
+     */
+    public SAConfigOptions setTrackQueueOverflowPolicy(TrackQueueOverflowPolicy overflowPolicy) {
+        if (overflowPolicy != null) {
+            this.mTrackQueueOverflowPolicy = overflowPolicy;
+        }
+        return this;
+    }
+
+    /**
+     * 指定的事件类型不采集 $lib_detail（代码埋点的调用位置），EventType.ALL 表示全部不采集
+     *
+     * @param eventTypes 事件类型
+     * @return SAConfigOptions
+     */
+    public SAConfigOptions disableLibDetail(EventType... eventTypes) {
+        if (eventTypes != null && eventTypes.length > 0) {
+            Set<EventType> disabledEventTypes = EnumSet.noneOf(EventType.class);
+            disabledEventTypes.addAll(mLibDetailDisabledEventTypes);
+            Collections.addAll(disabledEventTypes, eventTypes);
+            this.mLibDetailDisabledEventTypes = disabledEventTypes;
+        }
+        return this;
+    }
+
+    /**
+     * 设置 $lib_detail 的采样率，只有被采样的事件采集调用位置
+     *
+     * @param sampleRate 采样率，合法区间为 [0, 1]，默认 1
+     * @return SAConfigOptions
+     */
+    public SAConfigOptions setLibDetailSampleRate(float sampleRate) {
+        this.mLibDetailSampleRate = Math.max(0, Math.min(1, sampleRate));
+        return this;
+    }
+
+    /**
+     * 设置事件的优先级。高优先级的事件立即写入数据库，下次上报时排在其他数据之前优先发送，不会额外触发上报；
+     * 本地缓存超过 setMaxCacheSize 设置的上限时，优先删除低优先级的数据。
+     * 默认 track_signup、$AppCrashed 和 profile 类数据为高优先级
+     *
+     * @param eventName 事件名
+     * @param priority 优先级，为 null 时恢复默认优先级
+     * @return SAConfigOptions
+     */
+    public SAConfigOptions setEventPriority(String eventName, EventPriority priority) {
+        if (!TextUtils.isEmpty(eventName)) {
+            Map<String, EventPriority> eventPriorities = new HashMap<>(mEventPriorities);
+            if (priority == null) {
+                eventPriorities.remove(eventName);
+            } else {
+                eventPriorities.put(eventName, priority);
+            }
+            this.mEventPriorities = eventPriorities;
+        }
+        return this;
+    }
+}
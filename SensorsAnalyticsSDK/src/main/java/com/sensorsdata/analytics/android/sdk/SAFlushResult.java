@@ -0,0 +1,90 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk;
+
+/**
+ * flushSync(long)、flushAsync 的上报结果
+ */
+public final class SAFlushResult {
+    private final int mUploadedCount;
+    private final int mRemainingCount;
+    private final int mFailedCount;
+    private final boolean mIsTimeout;
+
+    SAFlushResult(int uploadedCount, int remainingCount, int failedCount, boolean isTimeout) {
+        this.mUploadedCount = uploadedCount;
+        this.mRemainingCount = remainingCount;
+        this.mFailedCount = failedCount;
+        this.mIsTimeout = isTimeout;
+    }
+
+    /**
+     * 超时未完成时的结果
+     */
+    static SAFlushResult timeout() {
+        return new SAFlushResult(0, -1, 0, true);
+    }
+
+    /**
+     * 上报任务未能执行时的结果，例如上报线程已停止
+     */
+    static SAFlushResult failed() {
+        return new SAFlushResult(0, -1, -1, false);
+    }
+
+    /**
+     * @return 上报成功并从本地删除的数据条数
+     */
+    public int getUploadedCount() {
+        return mUploadedCount;
+    }
+
+    /**
+     * @return 上报结束后本地剩余的数据条数，超时或者上报未执行时为 -1
+     */
+    public int getRemainingCount() {
+        return mRemainingCount;
+    }
+
+    /**
+     * @return 上报失败的数据条数，上报未执行时为 -1
+     */
+    public int getFailedCount() {
+        return mFailedCount;
+    }
+
+    /**
+     * @return 是否在等待时间内没有完成上报
+     */
+    public boolean isTimeout() {
+        return mIsTimeout;
+    }
+
+    /**
+     * @return 是否已经将本地数据全部上报
+     */
+    public boolean isSuccess() {
+        return !mIsTimeout && mFailedCount == 0 && mRemainingCount == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SAFlushResult{uploaded=" + mUploadedCount + ", remaining=" + mRemainingCount
+                + ", failed=" + mFailedCount + ", timeout=" + mIsTimeout + "}";
+    }
+}
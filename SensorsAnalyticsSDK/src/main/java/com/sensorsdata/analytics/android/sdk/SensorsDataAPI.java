@@ -38,10 +38,12 @@ import com.sensorsdata.analytics.android.sdk.exceptions.InvalidDataException;
 import com.sensorsdata.analytics.android.sdk.internal.beans.EventTimer;
 import com.sensorsdata.analytics.android.sdk.internal.beans.EventType;
 import com.sensorsdata.analytics.android.sdk.internal.rpc.SensorsDataContentObserver;
+import com.sensorsdata.analytics.android.sdk.listener.SAFlushCallback;
 import com.sensorsdata.analytics.android.sdk.monitor.TrackMonitor;
 import com.sensorsdata.analytics.android.sdk.remote.BaseSensorsDataSDKRemoteManager;
 import com.sensorsdata.analytics.android.sdk.util.AopUtil;
 import com.sensorsdata.analytics.android.sdk.util.AppInfoUtils;
+import com.sensorsdata.analytics.android.sdk.util.DeviceContextSnapshot;
 import com.sensorsdata.analytics.android.sdk.util.SADataHelper;
 import com.sensorsdata.analytics.android.sdk.util.SensorsDataUtils;
 import com.sensorsdata.analytics.android.sdk.util.TimeUtils;
@@ -62,7 +64,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Sensors Analytics SDK
@@ -402,6 +406,7 @@ public class SensorsDataAPI extends AbstractSensorsDataAPI {
                     mOrientationDetector.disable();
                     mOrientationDetector = null;
                 }
+                DeviceContextSnapshot.updateScreenOrientation(null);
             }
         } catch (Exception e) {
             com.sensorsdata.analytics.android.sdk.SALog.printStackTrace(e);
@@ -1432,7 +1437,7 @@ public class SensorsDataAPI extends AbstractSensorsDataAPI {
     public void track(final String eventName, final JSONObject properties) {
         try {
             final JSONObject dynamicProperty = getDynamicProperty();
-            mTrackTaskManager.addTrackEventTask(new Runnable() {
+            mTrackTaskManager.offerTrackEventTask(new Runnable() {
                 @Override
                 public void run() {
                     JSONObject _properties = ChannelUtils.checkOrSetChannelCallbackEvent(getConfigOptions().isAutoAddChannelCallbackEvent, eventName, properties, mContext);
@@ -1511,7 +1516,7 @@ public class SensorsDataAPI extends AbstractSensorsDataAPI {
     @Override
     public void trackTimerEnd(final String eventName, final JSONObject properties) {
         final long endTime = SystemClock.elapsedRealtime();
-        mTrackTaskManager.addTrackEventTask(new Runnable() {
+        mTrackTaskManager.offerTrackEventTask(new Runnable() {
             @Override
             public void run() {
                 if (eventName != null) {
@@ -1578,7 +1583,7 @@ public class SensorsDataAPI extends AbstractSensorsDataAPI {
     @Override
     @Deprecated
     public void trackViewScreen(final String url, final JSONObject properties) {
-        mTrackTaskManager.addTrackEventTask(new Runnable() {
+        mTrackTaskManager.offerTrackEventTask(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -1618,7 +1623,7 @@ public class SensorsDataAPI extends AbstractSensorsDataAPI {
 
     @Override
     public void trackViewScreen(final Activity activity) {
-        mTrackTaskManager.addTrackEventTask(new Runnable() {
+        mTrackTaskManager.offerTrackEventTask(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -1672,7 +1677,7 @@ public class SensorsDataAPI extends AbstractSensorsDataAPI {
             return;
         }
 
-        mTrackTaskManager.addTrackEventTask(new Runnable() {
+        mTrackTaskManager.offerTrackEventTask(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -1766,6 +1771,56 @@ public class SensorsDataAPI extends AbstractSensorsDataAPI {
         flush();
     }
 
+    @Override
+    public SAFlushResult flushSync(long timeoutMillis) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<SAFlushResult> result = new AtomicReference<>();
+        flushAsync(new SAFlushCallback() {
+            @Override
+            public void onFlushFinished(SAFlushResult flushResult) {
+                result.set(flushResult);
+                latch.countDown();
+            }
+        });
+        // 在采集线程或上报线程中等待会阻塞上报本身
+        if (AppInfoUtils.isTaskExecuteThread() || mMessages.isWorkerThread()) {
+            SALog.i(TAG, "flushSync(long) is called on the SDK thread, do not wait for the result.");
+            return SAFlushResult.timeout();
+        }
+        try {
+            if (latch.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return SAFlushResult.timeout();
+    }
+
+    @Override
+    public void flushAsync(final SAFlushCallback callback) {
+        Runnable flushTask = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mMessages.flush(callback);
+                } catch (Exception e) {
+                    SALog.printStackTrace(e);
+                    if (callback != null) {
+                        callback.onFlushFinished(SAFlushResult.failed());
+                    }
+                }
+            }
+        };
+        // 采集线程已停止时任务不会执行，直接上报
+        if (mTrackTaskManagerThread == null || mTrackTaskManagerThread.isStopped()) {
+            flushTask.run();
+            return;
+        }
+        // 通过采集线程提交，保证之前触发的事件都已经写入数据库
+        mTrackTaskManager.addTrackEventTask(flushTask);
+    }
+
     @Override
     public void flushScheduled() {
         try {
@@ -1802,7 +1857,7 @@ public class SensorsDataAPI extends AbstractSensorsDataAPI {
     public void startTrackThread() {
         if (mTrackTaskManagerThread == null || mTrackTaskManagerThread.isStopped()) {
             mTrackTaskManagerThread = new TrackTaskManagerThread();
-            new Thread(mTrackTaskManagerThread).start();
+            new Thread(mTrackTaskManagerThread, ThreadNameConstants.THREAD_TASK_EXECUTE).start();
             SALog.i(TAG, "Data collection thread has been started");
         }
     }
@@ -24,6 +24,7 @@ import android.webkit.WebView;
 
 import com.sensorsdata.analytics.android.sdk.deeplink.SensorsDataDeepLinkCallback;
 import com.sensorsdata.analytics.android.sdk.internal.beans.EventType;
+import com.sensorsdata.analytics.android.sdk.listener.SAFlushCallback;
 import com.sensorsdata.analytics.android.sdk.listener.SAJSListener;
 
 import org.json.JSONObject;
@@ -499,6 +500,18 @@ public class SensorsDataAPIEmptyImplementation extends SensorsDataAPI {
 
     }
 
+    @Override
+    public SAFlushResult flushSync(long timeoutMillis) {
+        return new SAFlushResult(0, 0, 0, false);
+    }
+
+    @Override
+    public void flushAsync(SAFlushCallback callback) {
+        if (callback != null) {
+            callback.onFlushFinished(new SAFlushResult(0, 0, 0, false));
+        }
+    }
+
     @Override
     public void flushScheduled() {
 
@@ -88,6 +88,13 @@ public class SensorsDataExceptionHandler implements Thread.UncaughtExceptionHand
                 }
             }
             SensorsDataAPI.sharedInstance().flush();
+            try {
+                if (SensorsDataAPI.getConfigOptions().isEnableSession()) {
+                    SessionRelatedManager.getInstance().persistSessionData();
+                }
+            } catch (Exception e1) {
+                SALog.printStackTrace(e1);
+            }
             try {
                 Thread.sleep(SLEEP_TIMEOUT_MS);
             } catch (InterruptedException e1) {
@@ -20,6 +20,8 @@ package com.sensorsdata.analytics.android.sdk;
 import android.content.Context;
 import android.view.OrientationEventListener;
 
+import com.sensorsdata.analytics.android.sdk.util.DeviceContextSnapshot;
+
 public class SensorsDataScreenOrientationDetector extends OrientationEventListener {
     private int mCurrentOrientation;
 
@@ -52,5 +54,6 @@ public class SensorsDataScreenOrientationDetector extends OrientationEventListen
         } else if (orientation > 225 && orientation < 315) { //270度
             mCurrentOrientation = 270;
         }
+        DeviceContextSnapshot.updateScreenOrientation(getOrientation());
     }
 }
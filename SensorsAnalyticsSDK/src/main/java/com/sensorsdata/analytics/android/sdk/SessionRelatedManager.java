@@ -1,5 +1,10 @@
 package com.sensorsdata.analytics.android.sdk;
 
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import com.sensorsdata.analytics.android.sdk.plugin.encrypt.SAStoreManager;
@@ -27,6 +32,10 @@ public class SessionRelatedManager {
     private final String KEY_LAST_EVENT_TIME = "lastEventTime";
     private final long SESSION_LAST_INTERVAL_TIME = 30 * 60 * 1000;
     private final long SESSION_START_INTERVAL_TIME = 12 * 60 * 60 * 1000;
+    /**
+     * 只更新 lastEventTime 时，最多间隔多久写一次存储
+     */
+    private static final long SESSION_PERSIST_INTERVAL_TIME = 5 * 1000;
 
     /**
      * UUID
@@ -40,6 +49,18 @@ public class SessionRelatedManager {
      * 最近一次事件触发时间
      */
     private long mLastEventTime;
+    /**
+     * 内存中的 session 数据是否还没有写入存储
+     */
+    private boolean mIsDirty;
+    /**
+     * 最近一次写入存储的时间，elapsedRealtime
+     */
+    private long mLastPersistTime;
+    /**
+     * 写入存储的次数
+     */
+    private int mPersistCount;
 
     public static SessionRelatedManager getInstance() {
         if (null == mSessionRelatedManager) {
@@ -52,12 +73,13 @@ public class SessionRelatedManager {
         return mSessionRelatedManager;
     }
 
-    private SessionRelatedManager() {
+    SessionRelatedManager() {
         try {
             if (!SensorsDataAPI.getConfigOptions().isEnableSession()) {
                 deleteSessionData();
             } else {
                 readSessionData();
+                registerTrimMemoryCallback();
             }
         } catch (Exception e) {
             SALog.printStackTrace(e);
@@ -75,7 +97,7 @@ public class SessionRelatedManager {
      * @param property 事件 json 数据
      * @param time 时间戳
      */
-    public void handleEventOfSession(String eventName, JSONObject property, long time) {
+    public synchronized void handleEventOfSession(String eventName, JSONObject property, long time) {
         if (!SensorsDataAPI.getConfigOptions().isEnableSession()) return;
         try {
             handleSessionState(time);
@@ -89,11 +111,38 @@ public class SessionRelatedManager {
     }
 
     /**
-     * 更新 session 数据中的 lastEventTime
+     * 更新 session 数据中的 lastEventTime，只更新内存，距离上次写入超过 SESSION_PERSIST_INTERVAL_TIME 时才写入存储
      */
     private void updateSessionLastTime(long eventTime) {
         mLastEventTime = eventTime;
+        mIsDirty = true;
+        persistIfNeeded();
+    }
+
+    /**
+     * 将未保存的 session 数据写入存储，在退到后台、内存不足、崩溃时调用
+     */
+    public synchronized void persistSessionData() {
+        if (mIsDirty) {
+            writeSessionData();
+        }
+    }
+
+    private void persistIfNeeded() {
+        if (mIsDirty && SystemClock.elapsedRealtime() - mLastPersistTime >= SESSION_PERSIST_INTERVAL_TIME) {
+            writeSessionData();
+        }
+    }
+
+    private void writeSessionData() {
         SAStoreManager.getInstance().setString(SHARED_PREF_SESSION_CUTDATA, getSessionDataPack());
+        mIsDirty = false;
+        mLastPersistTime = SystemClock.elapsedRealtime();
+        mPersistCount++;
+    }
+
+    synchronized int getPersistCount() {
+        return mPersistCount;
     }
 
     /**
@@ -103,6 +152,7 @@ public class SessionRelatedManager {
         mSessionID = null;
         mStartTime = -1;
         mLastEventTime = -1;
+        mIsDirty = false;
         SAStoreManager.getInstance().remove(SHARED_PREF_SESSION_CUTDATA);
     }
 
@@ -115,7 +165,8 @@ public class SessionRelatedManager {
             mStartTime = eventTime;
         }
         mLastEventTime = Math.max(eventTime, mLastEventTime);  // 避免补发 $AppEnd 事件时间戳被覆盖
-        SAStoreManager.getInstance().setString(SHARED_PREF_SESSION_CUTDATA, getSessionDataPack());
+        // 新的 session 立即写入存储
+        writeSessionData();
     }
 
     /**
@@ -161,10 +212,40 @@ public class SessionRelatedManager {
      *
      * @param refreshTime 心跳机制刷新时间
      */
-    public void refreshSessionByTimer(long refreshTime) {
+    public synchronized void refreshSessionByTimer(long refreshTime) {
         if (refreshTime - mLastEventTime > SESSION_LAST_INTERVAL_TIME) {
             createSessionData(refreshTime, false);
+        } else {
+            persistIfNeeded();
+        }
+    }
+
+    /**
+     * 内存不足或者退到后台时写入未保存的 session 数据
+     */
+    private void registerTrimMemoryCallback() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            return;
         }
+        Context context = SensorsDataAPI.sharedInstance().getContext();
+        if (context == null) {
+            return;
+        }
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                persistSessionData();
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                persistSessionData();
+            }
+        });
     }
 
     private String getSessionDataPack() {
@@ -180,7 +261,7 @@ public class SessionRelatedManager {
         return "";
     }
 
-    public String getSessionID() {
+    public synchronized String getSessionID() {
         return mSessionID;
     }
 }
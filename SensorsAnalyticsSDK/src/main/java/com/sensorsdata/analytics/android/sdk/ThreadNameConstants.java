@@ -23,4 +23,6 @@ public interface ThreadNameConstants {
     String THREAD_SEND_DISTINCT_ID = "SA.SendDistinctIDThread";
     String THREAD_DEEP_LINK_REQUEST = "SA.DeepLinkRequest";
     String THREAD_PUSH_HANDLER = "SA.PushThread";
+    String THREAD_GROUP_COMMIT = "SA.GroupCommitThread";
+    String THREAD_FLUSH_UPLOAD = "SA.FlushUploadThread";
 }
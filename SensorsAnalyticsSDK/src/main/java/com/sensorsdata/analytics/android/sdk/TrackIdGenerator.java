@@ -0,0 +1,54 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 生成事件的 _track_id。
+ * 进程内只使用一次 SecureRandom 生成种子，之后对递增计数器做 Weyl 序列变换和 murmur3 的 fmix32 混淆，
+ * 两步都是 32 位整数上的一一映射，因此同一进程内 2^32 个 id 互不重复，且在不同进程之间随机分布
+ */
+final class TrackIdGenerator {
+    /* 黄金分割比对应的奇数常量 */
+    private static final int GOLDEN_GAMMA = 0x9E3779B9;
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final int SEED = new SecureRandom().nextInt();
+
+    private TrackIdGenerator() {
+    }
+
+    /**
+     * 生成新的 _track_id
+     *
+     * @return _track_id
+     */
+    static int nextId() {
+        return mix(SEED + COUNTER.getAndIncrement() * GOLDEN_GAMMA);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
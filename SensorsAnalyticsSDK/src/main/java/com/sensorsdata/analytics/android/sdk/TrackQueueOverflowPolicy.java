@@ -0,0 +1,42 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk;
+
+/**
+ * 埋点任务队列已满时的处理策略，只作用于 track 和页面浏览等埋点事件，登录、用户属性、flush 等任务不会被丢弃
+ */
+public enum TrackQueueOverflowPolicy {
+    /**
+     * 短暂等待队列空出位置，超时后丢弃新任务。
+     * 在主线程和埋点执行线程中不等待，等同于 DROP_NEWEST，避免卡顿或者执行线程等待自身；
+     * 大部分埋点在主线程中触发，只有子线程中的埋点会等待
+     */
+    BLOCK,
+    /**
+     * 丢弃队列中最早的埋点事件任务
+     */
+    DROP_OLDEST,
+    /**
+     * 丢弃新任务
+     */
+    DROP_NEWEST,
+    /**
+     * 抽样保留：每 10 个新任务保留 1 个并丢弃队列中最早的埋点事件任务，其余丢弃
+     */
+    SAMPLE
+}
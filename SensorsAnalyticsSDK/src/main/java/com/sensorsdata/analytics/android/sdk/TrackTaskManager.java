@@ -17,26 +17,37 @@
 
 package com.sensorsdata.analytics.android.sdk;
 
-import java.util.concurrent.LinkedBlockingQueue;
-
 public class TrackTaskManager {
+    /* 默认队列容量 */
+    static final int DEFAULT_CAPACITY = 10000;
     private static TrackTaskManager trackTaskManager;
     private boolean mDataCollectEnable = true;
     /**
      * 请求线程队列
      */
-    private final LinkedBlockingQueue<Runnable> mTrackEventTasks;
-    private final LinkedBlockingQueue<Runnable> mTrackEventTasksCache;
+    private final TrackTaskQueue mTrackEventTasks;
+    private final TrackTaskQueue mTrackEventTasksCache;
 
-    private TrackTaskManager() {
-        mTrackEventTasks = new LinkedBlockingQueue<>();
-        mTrackEventTasksCache = new LinkedBlockingQueue<>();
+    private TrackTaskManager(int capacity, TrackQueueOverflowPolicy overflowPolicy) {
+        mTrackEventTasks = new TrackTaskQueue(capacity, overflowPolicy);
+        mTrackEventTasksCache = new TrackTaskQueue(capacity, overflowPolicy);
     }
 
     public static synchronized TrackTaskManager getInstance() {
+        return getInstance(DEFAULT_CAPACITY, TrackQueueOverflowPolicy.BLOCK);
+    }
+
+    /**
+     * 获取 TrackTaskManager，首次创建时使用指定的队列容量和溢出策略
+     *
+     * @param capacity 队列容量
+     * @param overflowPolicy 队列已满时的处理策略
+     * @return TrackTaskManager
+     */
+    static synchronized TrackTaskManager getInstance(int capacity, TrackQueueOverflowPolicy overflowPolicy) {
         try {
             if (null == trackTaskManager) {
-                trackTaskManager = new TrackTaskManager();
+                trackTaskManager = new TrackTaskManager(capacity, overflowPolicy);
             }
         } catch (Exception e) {
             SALog.printStackTrace(e);
@@ -44,6 +55,11 @@ public class TrackTaskManager {
         return trackTaskManager;
     }
 
+    /**
+     * 添加必须执行的任务，例如登录、用户属性、公共属性和 flush，队列已满时也不会丢弃
+     *
+     * @param trackEvenTask 任务
+     */
     void addTrackEventTask(Runnable trackEvenTask) {
         try {
             if (mDataCollectEnable) {
@@ -57,69 +73,80 @@ public class TrackTaskManager {
     }
 
     /**
-     * 将任务添加到真正执行的队列
-     * @param runnable Runnable
+     * 添加埋点事件任务，队列已满时按照溢出策略处理
+     *
+     * @param trackEvenTask 任务
+     * @return true 已添加，false 已丢弃
      */
-    void transformTaskQueue(Runnable runnable) {
-        try {
-            if (mTrackEventTasks.size() < 50) {// 最多只处理 50 条
-                mTrackEventTasks.put(runnable);
-            }
-        } catch (InterruptedException e) {
-            SALog.printStackTrace(e);
-        }
-    }
-
-    Runnable takeTrackEventTask() {
+    boolean offerTrackEventTask(Runnable trackEvenTask) {
         try {
             if (mDataCollectEnable) {
-                return mTrackEventTasks.take();
+                return mTrackEventTasks.offer(trackEvenTask);
             } else {
-                return mTrackEventTasksCache.take();
+                return mTrackEventTasksCache.offer(trackEvenTask);
             }
         } catch (Exception e) {
             SALog.printStackTrace(e);
         }
-        return null;
+        return false;
+    }
+
+    /**
+     * 将任务添加到真正执行的队列
+     * @param runnable Runnable
+     */
+    void transformTaskQueue(Runnable runnable) {
+        if (mTrackEventTasks.size() < 50) {// 最多只处理 50 条
+            mTrackEventTasks.put(runnable);
+        }
     }
 
-    Runnable pollTrackEventTask() {
+    /**
+     * 取出当前队列中的任务
+     *
+     * @param tasks 保存取出的任务
+     * @param isBlocking 队列为空时是否等待
+     * @return 取出的任务数
+     */
+    int drainTrackEventTasks(Runnable[] tasks, boolean isBlocking) {
         try {
             if (mDataCollectEnable) {
-                return mTrackEventTasks.poll();
+                return mTrackEventTasks.drainTo(tasks, isBlocking);
             } else {
-                return mTrackEventTasksCache.poll();
+                return mTrackEventTasksCache.drainTo(tasks, isBlocking);
             }
         } catch (Exception e) {
             SALog.printStackTrace(e);
         }
-        return null;
+        return 0;
     }
 
     boolean isEmpty(){
         return mTrackEventTasks.isEmpty();
     }
 
+    /**
+     * 队列已满时被丢弃的任务数
+     *
+     * @return 任务数
+     */
+    long getDroppedTaskCount() {
+        return mTrackEventTasks.getDroppedCount() + mTrackEventTasksCache.getDroppedCount();
+    }
+
     void setDataCollectEnable(boolean isDataCollectEnable) {
         this.mDataCollectEnable = isDataCollectEnable;
-        try {
-            if (isDataCollectEnable) {
-                mTrackEventTasksCache.put(new Runnable() {
-                    @Override
-                    public void run() {
-
-                    }
-                });
-            } else {
-                mTrackEventTasks.put(new Runnable() {
-                    @Override
-                    public void run() {
+        // 唤醒等待在另一个队列上的读取线程
+        Runnable emptyTask = new Runnable() {
+            @Override
+            public void run() {
 
-                    }
-                });
             }
-        } catch (InterruptedException e) {
-            SALog.printStackTrace(e);
+        };
+        if (isDataCollectEnable) {
+            mTrackEventTasksCache.put(emptyTask);
+        } else {
+            mTrackEventTasks.put(emptyTask);
         }
     }
 }
@@ -17,40 +17,28 @@
 
 package com.sensorsdata.analytics.android.sdk;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
+import java.util.Locale;
 
+/**
+ * 埋点任务的读取线程，每次从队列中取出多个任务并在当前线程中依次执行
+ */
 public class TrackTaskManagerThread implements Runnable {
     /**
-     * 创建一个可重用固定线程数的线程池
+     * 每次最多取出的任务数
      */
-    private static final int POOL_SIZE = 1;
+    private static final int DRAIN_BATCH_SIZE = 64;
 
     private TrackTaskManager mTrackTaskManager;
-    /**
-     * 创建一个可重用固定线程数的线程池
-     */
-    private ExecutorService mPool;
+    private final Runnable[] mTasks = new Runnable[DRAIN_BATCH_SIZE];
+    private long mDroppedTaskCount;
     /**
      * 是否停止
      */
-    private boolean isStop = false;
+    private volatile boolean isStop = false;
 
     TrackTaskManagerThread() {
         try {
             this.mTrackTaskManager = TrackTaskManager.getInstance();
-            mPool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
-                    0L, TimeUnit.MILLISECONDS,
-                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
-                @Override
-                public Thread newThread(Runnable r) {
-                    return new Thread(r, ThreadNameConstants.THREAD_TASK_EXECUTE);
-                }
-            });
         } catch (Exception e) {
             SALog.printStackTrace(e);
         }
@@ -60,22 +48,37 @@ public class TrackTaskManagerThread implements Runnable {
     public void run() {
         try {
             while (!isStop) {
-                Runnable downloadTask = mTrackTaskManager.takeTrackEventTask();
-                mPool.execute(downloadTask);
+                runTasks(mTrackTaskManager.drainTrackEventTasks(mTasks, true));
             }
             while (true) {
-                Runnable downloadTask = mTrackTaskManager.pollTrackEventTask();
-                if (downloadTask == null) {
+                int count = mTrackTaskManager.drainTrackEventTasks(mTasks, false);
+                if (count == 0) {
                     break;
                 }
-                mPool.execute(downloadTask);
+                runTasks(count);
             }
-            mPool.shutdown();
         } catch (Exception e) {
             SALog.printStackTrace(e);
         }
     }
 
+    private void runTasks(int count) {
+        for (int i = 0; i < count; i++) {
+            try {
+                mTasks[i].run();
+            } catch (Exception e) {
+                SALog.printStackTrace(e);
+            }
+            mTasks[i] = null;
+        }
+        long droppedTaskCount = mTrackTaskManager.getDroppedTaskCount();
+        if (droppedTaskCount != mDroppedTaskCount) {
+            SALog.i("SA.TrackTaskManagerThread", String.format(Locale.CHINA, "Track task queue is full, %d tasks dropped in total",
+                    droppedTaskCount));
+            mDroppedTaskCount = droppedTaskCount;
+        }
+    }
+
     void stop() {
         isStop = true;
         //解决队列阻塞时,停止队列还会触发一次事件
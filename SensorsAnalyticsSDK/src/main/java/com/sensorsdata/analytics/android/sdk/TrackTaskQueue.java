@@ -0,0 +1,249 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk;
+
+import android.os.Looper;
+
+import com.sensorsdata.analytics.android.sdk.util.AppInfoUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 埋点任务环形队列，多个线程写入，只有 TrackTaskManagerThread 一个线程读取。
+ * 读取时一次取出多个任务。容量只限制通过 offer 添加的埋点事件任务，已满时按 TrackQueueOverflowPolicy 处理并记录丢弃的任务数；
+ * 通过 put 添加的登录、用户属性、flush 等控制任务不受容量限制，也不会被丢弃
+ */
+class TrackTaskQueue {
+    /* BLOCK 策略下的最长等待时间 */
+    private static final long BLOCK_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    /* SAMPLE 策略下每 SAMPLE_RATE 个新任务保留 1 个 */
+    private static final int SAMPLE_RATE = 10;
+    private final int mCapacity;
+    private final TrackQueueOverflowPolicy mOverflowPolicy;
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mNotEmpty = mLock.newCondition();
+    private final Condition mNotFull = mLock.newCondition();
+    private Runnable[] mTasks;
+    /* 对应位置的任务是否可以丢弃 */
+    private boolean[] mDroppable;
+    private int mHead;
+    private int mCount;
+    /* 队列中可以丢弃的埋点事件任务数 */
+    private int mEventCount;
+    private int mOverflowCount;
+    private volatile long mDroppedCount;
+
+    TrackTaskQueue(int capacity, TrackQueueOverflowPolicy overflowPolicy) {
+        this.mCapacity = Math.max(1, capacity);
+        this.mTasks = new Runnable[mCapacity];
+        this.mDroppable = new boolean[mCapacity];
+        this.mOverflowPolicy = overflowPolicy == null ? TrackQueueOverflowPolicy.BLOCK : overflowPolicy;
+    }
+
+    /**
+     * 添加埋点事件任务，队列已满时按照溢出策略处理
+     *
+     * @param task 任务
+     * @return true 已添加，false 已丢弃
+     */
+    boolean offer(Runnable task) {
+        final ReentrantLock lock = mLock;
+        lock.lock();
+        try {
+            if (mEventCount >= mCapacity) {
+                switch (mOverflowPolicy) {
+                    case DROP_OLDEST:
+                        dropOldestEvent();
+                        break;
+                    case DROP_NEWEST:
+                        mDroppedCount++;
+                        return false;
+                    case SAMPLE:
+                        if (++mOverflowCount % SAMPLE_RATE != 0) {
+                            mDroppedCount++;
+                            return false;
+                        }
+                        dropOldestEvent();
+                        break;
+                    default:
+                        // 主线程和读取线程不等待，读取线程等待时没有其他线程取出任务
+                        if (isNoWaitThread() || !awaitNotFull()) {
+                            mDroppedCount++;
+                            return false;
+                        }
+                        break;
+                }
+            }
+            enqueue(task, true);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 添加必须执行的控制任务，不受容量限制
+     *
+     * @param task 任务
+     */
+    void put(Runnable task) {
+        final ReentrantLock lock = mLock;
+        lock.lock();
+        try {
+            enqueue(task, false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取出队列中的任务
+     *
+     * @param tasks 保存取出的任务
+     * @param isBlocking 队列为空时是否等待
+     * @return 取出的任务数
+     * @throws InterruptedException 等待时线程被中断
+     */
+    int drainTo(Runnable[] tasks, boolean isBlocking) throws InterruptedException {
+        final ReentrantLock lock = mLock;
+        lock.lockInterruptibly();
+        try {
+            while (isBlocking && mCount == 0) {
+                mNotEmpty.await();
+            }
+            int count = Math.min(mCount, tasks.length);
+            int eventCount = 0;
+            for (int i = 0; i < count; i++) {
+                tasks[i] = mTasks[mHead];
+                if (mDroppable[mHead]) {
+                    eventCount++;
+                }
+                mTasks[mHead] = null;
+                mHead = (mHead + 1) % mTasks.length;
+            }
+            mCount -= count;
+            mEventCount -= eventCount;
+            if (eventCount > 0 && mOverflowPolicy == TrackQueueOverflowPolicy.BLOCK) {
+                mNotFull.signalAll();
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        final ReentrantLock lock = mLock;
+        lock.lock();
+        try {
+            return mCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 队列已满时被丢弃的任务数
+     *
+     * @return 任务数
+     */
+    long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    private void enqueue(Runnable task, boolean isDroppable) {
+        if (mCount == mTasks.length) {
+            grow();
+        }
+        int index = (mHead + mCount) % mTasks.length;
+        mTasks[index] = task;
+        mDroppable[index] = isDroppable;
+        if (isDroppable) {
+            mEventCount++;
+        }
+        // 只有一个读取线程，队列由空变为非空时才需要唤醒
+        if (mCount++ == 0) {
+            mNotEmpty.signal();
+        }
+    }
+
+    /**
+     * 控制任务超出容量时扩容，保持任务的顺序
+     */
+    private void grow() {
+        int length = mTasks.length;
+        Runnable[] tasks = new Runnable[length * 2];
+        boolean[] droppable = new boolean[length * 2];
+        for (int i = 0; i < mCount; i++) {
+            int index = (mHead + i) % length;
+            tasks[i] = mTasks[index];
+            droppable[i] = mDroppable[index];
+        }
+        mTasks = tasks;
+        mDroppable = droppable;
+        mHead = 0;
+    }
+
+    /**
+     * 丢弃最早的埋点事件任务，排在它前面的控制任务依次后移
+     */
+    private void dropOldestEvent() {
+        int length = mTasks.length;
+        int offset = 0;
+        while (!mDroppable[(mHead + offset) % length]) {
+            offset++;
+        }
+        for (int i = offset; i > 0; i--) {
+            int index = (mHead + i) % length;
+            int previous = (mHead + i - 1) % length;
+            mTasks[index] = mTasks[previous];
+            mDroppable[index] = mDroppable[previous];
+        }
+        mTasks[mHead] = null;
+        mHead = (mHead + 1) % length;
+        mCount--;
+        mEventCount--;
+        mDroppedCount++;
+    }
+
+    private boolean isNoWaitThread() {
+        return Looper.myLooper() == Looper.getMainLooper() || AppInfoUtils.isTaskExecuteThread();
+    }
+
+    private boolean awaitNotFull() {
+        long nanos = BLOCK_TIMEOUT_NANOS;
+        try {
+            while (mEventCount >= mCapacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = mNotFull.awaitNanos(nanos);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
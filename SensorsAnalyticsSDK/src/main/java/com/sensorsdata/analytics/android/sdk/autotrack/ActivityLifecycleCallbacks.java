@@ -349,6 +349,10 @@ public class ActivityLifecycleCallbacks implements SensorsDataActivityLifecycleC
                 mSensorsDataInstance.flush();
                 Bundle bundle = message.getData();
                 generateAppEndData(bundle.getLong(TIME), bundle.getLong(ELAPSE_TIME));
+                if (SensorsDataAPI.getConfigOptions().isEnableSession()) {
+                    // 退到后台时保存 session 数据
+                    SessionRelatedManager.getInstance().persistSessionData();
+                }
                 mHandler.sendMessageDelayed(obtainAppEndMessage(true), mSensorsDataInstance.getSessionIntervalTime());
             }
         } catch (Exception ex) {
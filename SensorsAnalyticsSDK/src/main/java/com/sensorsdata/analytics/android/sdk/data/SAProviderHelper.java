@@ -30,6 +30,7 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.net.Uri;
 
 import com.sensorsdata.analytics.android.sdk.SALog;
+import com.sensorsdata.analytics.android.sdk.data.adapter.DbAdapter;
 import com.sensorsdata.analytics.android.sdk.data.adapter.DbParams;
 import com.sensorsdata.analytics.android.sdk.data.persistent.LoginIdKeyPersistent;
 import com.sensorsdata.analytics.android.sdk.data.persistent.PersistentAppEndData;
@@ -162,6 +163,9 @@ class SAProviderHelper {
                 return uri;
             }
             long d = database.insert(DbParams.TABLE_EVENTS, "_id", values);
+            if (d != -1) {
+                DbAdapter.notifyEventInserted();
+            }
             return ContentUris.withAppendedId(uri, d);
         } catch (Exception e) {
             SALog.printStackTrace(e);
@@ -48,7 +48,7 @@ public class SensorsDataContentProvider extends ContentProvider {
                 } catch (UnsupportedOperationException e) {
                     packageName = "com.sensorsdata.analytics.android.sdk.test";
                 }
-                dbHelper = new SensorsDataDBHelper(context);
+                dbHelper = SensorsDataDBHelper.getInstance(context);
                 mProviderHelper = new SAProviderHelper(context, dbHelper);
                 mProviderHelper.appendUri(uriMatcher, packageName + ".SensorsDataContentProvider");
                 /* 迁移数据，并删除老的数据库 */
@@ -23,12 +23,21 @@ import android.database.sqlite.SQLiteOpenHelper;
 import com.sensorsdata.analytics.android.sdk.SALog;
 import com.sensorsdata.analytics.android.sdk.data.adapter.DbParams;
 
-class SensorsDataDBHelper extends SQLiteOpenHelper {
+public class SensorsDataDBHelper extends SQLiteOpenHelper {
     private static final String TAG = "SA.SQLiteOpenHelper";
+    private static SensorsDataDBHelper instance;
     private static final String CREATE_EVENTS_TABLE =
-            String.format("CREATE TABLE %s (_id INTEGER PRIMARY KEY AUTOINCREMENT, %s TEXT NOT NULL, %s INTEGER NOT NULL);", DbParams.TABLE_EVENTS, DbParams.KEY_DATA, DbParams.KEY_CREATED_AT);
+            String.format("CREATE TABLE %s (_id INTEGER PRIMARY KEY AUTOINCREMENT, %s BLOB NOT NULL, %s INTEGER NOT NULL, %s INTEGER, %s INTEGER NOT NULL DEFAULT 0);", DbParams.TABLE_EVENTS, DbParams.KEY_DATA, DbParams.KEY_CREATED_AT, DbParams.KEY_CRC, DbParams.KEY_PRIORITY);
     private static final String EVENTS_TIME_INDEX =
             String.format("CREATE INDEX IF NOT EXISTS time_idx ON %s (%s);", DbParams.TABLE_EVENTS, DbParams.KEY_CREATED_AT);
+    /* 版本 6 增加 crc 字段，旧版本的数据 crc 为 NULL，读取时按 "json\thashCode" 格式校验 */
+    private static final String EVENTS_ADD_CRC =
+            String.format("ALTER TABLE %s ADD COLUMN %s INTEGER;", DbParams.TABLE_EVENTS, DbParams.KEY_CRC);
+    /* 版本 7 增加 priority 字段，旧版本的数据为默认优先级 */
+    private static final String EVENTS_ADD_PRIORITY =
+            String.format("ALTER TABLE %s ADD COLUMN %s INTEGER NOT NULL DEFAULT 0;", DbParams.TABLE_EVENTS, DbParams.KEY_PRIORITY);
+    private static final String EVENTS_PRIORITY_INDEX =
+            String.format("CREATE INDEX IF NOT EXISTS priority_idx ON %s (%s);", DbParams.TABLE_EVENTS, DbParams.KEY_PRIORITY);
     private static final String CHANNEL_EVENT_PERSISTENT_TABLE = String.format("CREATE TABLE %s (%s TEXT PRIMARY KEY, %s INTEGER)",
             DbParams.TABLE_CHANNEL_PERSISTENT, DbParams.KEY_CHANNEL_EVENT_NAME, DbParams.KEY_CHANNEL_RESULT);
 
@@ -36,22 +45,48 @@ class SensorsDataDBHelper extends SQLiteOpenHelper {
         super(context, DbParams.DATABASE_NAME, null, DbParams.DATABASE_VERSION);
     }
 
+    /**
+     * 获取进程内共享的 SensorsDataDBHelper，ContentProvider 与直接访问数据库时使用同一个连接
+     *
+     * @param context Context
+     * @return SensorsDataDBHelper
+     */
+    public static synchronized SensorsDataDBHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new SensorsDataDBHelper(context);
+        }
+        return instance;
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         SALog.i(TAG, "Creating a new Sensors Analytics DB");
 
         db.execSQL(CREATE_EVENTS_TABLE);
         db.execSQL(EVENTS_TIME_INDEX);
+        db.execSQL(EVENTS_PRIORITY_INDEX);
         db.execSQL(CHANNEL_EVENT_PERSISTENT_TABLE);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion == 5 || oldVersion == 6) {
+            // 保留未上报的数据，旧数据在读取时兼容校验，上报后即被删除
+            if (oldVersion == 5) {
+                SALog.i(TAG, "Upgrading app, adding crc column to Sensors Analytics DB");
+                db.execSQL(EVENTS_ADD_CRC);
+            }
+            SALog.i(TAG, "Upgrading app, adding priority column to Sensors Analytics DB");
+            db.execSQL(EVENTS_ADD_PRIORITY);
+            db.execSQL(EVENTS_PRIORITY_INDEX);
+            return;
+        }
         SALog.i(TAG, "Upgrading app, replacing Sensors Analytics DB");
 
         db.execSQL(String.format("DROP TABLE IF EXISTS %s", DbParams.TABLE_EVENTS));
         db.execSQL(CREATE_EVENTS_TABLE);
         db.execSQL(EVENTS_TIME_INDEX);
+        db.execSQL(EVENTS_PRIORITY_INDEX);
         db.execSQL(CHANNEL_EVENT_PERSISTENT_TABLE);
     }
 
@@ -24,23 +24,49 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.text.TextUtils;
 
+import com.sensorsdata.analytics.android.sdk.SAConfigOptions;
 import com.sensorsdata.analytics.android.sdk.SALog;
 import com.sensorsdata.analytics.android.sdk.SensorsDataAPI;
 
 import org.json.JSONObject;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
 
 abstract class DataOperation {
+    static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+    /* 高优先级数据的筛选条件 */
+    private static final String SELECTION_HIGH_PRIORITY = DbParams.KEY_PRIORITY + " > 0";
+    /* 缓存空间不足时依次删除的数据：低优先级、非高优先级 */
+    private static final String[] SELECTIONS_EVICTION = {DbParams.KEY_PRIORITY + " < 0", DbParams.KEY_PRIORITY + " <= 0"};
+    /* 缓存空间不足时每次删除的条数 */
+    private static final int EVICTION_SIZE = 100;
     String TAG = "EventDataOperation";
     ContentResolver contentResolver;
-    private final File mDatabaseFile;
+    IDataAccessor dataAccessor;
     private Context mContext;
+    /* 内存中维护的 Event 表数据条数（包含等待合并提交的数据），小于 0 表示需要从数据库中重新统计 */
+    private int mEventCount = -1;
+    /* 其他进程通过 ContentProvider 写入了数据，内存中的计数需要重新统计 */
+    private static volatile boolean sEventCountStale;
+    private final EventGroupCommitter mGroupCommitter;
 
     DataOperation(Context context) {
+        this(context, new ProviderDataAccessor(context));
+    }
+
+    DataOperation(Context context, IDataAccessor dataAccessor) {
         this.mContext = context;
+        this.dataAccessor = dataAccessor;
         contentResolver = context.getContentResolver();
-        mDatabaseFile = context.getDatabasePath(DbParams.DATABASE_NAME);
+        mGroupCommitter = new EventGroupCommitter(dataAccessor) {
+            @Override
+            void onCommitFailed(int count) {
+                decreaseDataCount(count);
+            }
+        };
     }
 
     /**
@@ -53,19 +79,194 @@ abstract class DataOperation {
      */
     abstract int insertData(Uri uri, ContentValues contentValues);
 
+    /**
+     * 保存 Event 数据
+     *
+     * @param uri Uri
+     * @param jsonObject 数据
+     * @param isImmediate true 表示立即写入数据库，false 表示允许与其他数据合并提交
+     * @return 正常返回 0
+     */
+    int insertData(Uri uri, JSONObject jsonObject, boolean isImmediate) {
+        return insertData(uri, jsonObject, isImmediate, 0);
+    }
+
+    /**
+     * 保存 Event 数据
+     *
+     * @param uri Uri
+     * @param jsonObject 数据
+     * @param isImmediate true 表示立即写入数据库，false 表示允许与其他数据合并提交
+     * @param priority 优先级，取值为 EventPriority 的 value
+     * @return 正常返回 0
+     */
+    int insertData(Uri uri, JSONObject jsonObject, boolean isImmediate, int priority) {
+        return insertData(uri, jsonObject);
+    }
+
+    /**
+     * 写入 Event 数据，非立即写入的数据会在短时间内合并为一个事务批量提交
+     *
+     * @param uri Uri
+     * @param contentValues 数据
+     * @param isImmediate 是否立即写入
+     * @return 正常返回 0，立即写入失败时返回 DbParams.DB_UPDATE_ERROR
+     */
+    int insertEvent(Uri uri, ContentValues contentValues, boolean isImmediate) {
+        // 先计数，写入失败时由 onCommitFailed 扣除
+        increaseDataCount(1);
+        return mGroupCommitter.add(uri, contentValues, isImmediate) ? 0 : DbParams.DB_UPDATE_ERROR;
+    }
+
+    /**
+     * 将等待合并提交的 Event 数据写入数据库，读取或上报数据前需要先调用
+     */
+    void commitPendingEvents() {
+        mGroupCommitter.commit();
+    }
+
     /**
      * 查询数据
      */
     abstract String[] queryData(Uri uri, int limit);
 
     /**
-     * 查询数据条数
+     * 查询 afterId 之后的数据，用于同时上报多批数据
+     *
+     * @param uri Uri
+     * @param afterId 从该 _id 之后开始查询，null 表示从头查询
+     * @param limit 条数限制
+     * @return {lastId, data, gzipType, count}，count 为读取的条数
+     */
+    String[] queryData(Uri uri, String afterId, int limit) {
+        return queryData(uri, afterId, limit, false);
+    }
+
+    /**
+     * 查询 afterId 之后的数据
+     *
+     * @param uri Uri
+     * @param afterId 从该 _id 之后开始查询，null 表示从头查询
+     * @param limit 条数限制
+     * @param isHighPriority true 表示只查询高优先级的数据
+     * @return {lastId, data, gzipType, count}，count 为读取的条数
+     */
+    String[] queryData(Uri uri, String afterId, int limit, boolean isHighPriority) {
+        return isHighPriority ? null : queryData(uri, limit);
+    }
+
+    /**
+     * 按写入顺序查询 Event 数据
+     *
+     * @param uri Uri
+     * @param afterId 从该 _id 之后开始查询，null 表示从头查询
+     * @param limit 条数限制
+     * @param isHighPriority true 表示只查询高优先级的数据，不支持优先级时返回 null
+     * @return Cursor
+     */
+    Cursor queryEvents(Uri uri, String afterId, int limit, boolean isHighPriority) {
+        if (!isHighPriority) {
+            return dataAccessor.queryEvents(uri, afterId, limit);
+        }
+        if (!dataAccessor.isPrioritySupported()) {
+            return null;
+        }
+        if (afterId == null) {
+            return dataAccessor.query(uri, null, SELECTION_HIGH_PRIORITY, null, "_id ASC LIMIT " + limit);
+        }
+        return dataAccessor.query(uri, null, SELECTION_HIGH_PRIORITY + " AND _id > ?", new String[]{afterId}, "_id ASC LIMIT " + limit);
+    }
+
+    /**
+     * writeData 是否直接从 Cursor 写入输出流，不支持时 writeData 先通过 queryData 拼接字符串再写入
+     *
+     * @return true 直接写入输出流
+     */
+    boolean isStreamingSupported() {
+        return false;
+    }
+
+    /**
+     * 将最早的 limit 条数据以 JSON 数组的格式写入 outputStream，并添加 _flush_time
+     *
+     * @param uri Uri
+     * @param afterId 从该 _id 之后开始查询，null 表示从头查询
+     * @param limit 条数限制
+     * @param isHighPriority true 表示只写入高优先级的数据
+     * @param outputStream 输出流
+     * @return {lastId, null, gzipType, count}，gzipType 与 queryData 相同，没有数据时返回 null
+     * @throws IOException 写入失败
+     */
+    String[] writeData(Uri uri, String afterId, int limit, boolean isHighPriority, OutputStream outputStream) throws IOException {
+        String[] eventsData = queryData(uri, afterId, limit, isHighPriority);
+        if (eventsData == null || eventsData[1] == null) {
+            return null;
+        }
+        outputStream.write(eventsData[1].getBytes(CHARSET_UTF8));
+        eventsData[1] = null;
+        return eventsData;
+    }
+
+    /**
+     * 获取 Event 表数据条数，优先使用内存中的计数。
+     * 首次调用、子进程通过 ContentProvider 写入数据后或者开启多进程上报时，使用 COUNT(*) 从数据库中统计
      *
      * @param uri Uri
      * @return 条数
      */
-    int queryDataCount(Uri uri) {
-        return queryDataCount(uri, null, null, null, null);
+    synchronized int queryDataCount(Uri uri) {
+        if (mEventCount < 0 || sEventCountStale || isMultiProcessFlush()) {
+            // 先清除标记，统计期间新写入的数据会在下次读取时统计
+            sEventCountStale = false;
+            mEventCount = queryEventCount(uri);
+        }
+        return mEventCount;
+    }
+
+    /**
+     * ContentProvider 写入 Event 数据后调用，当前进程内存中的计数不包含这部分数据
+     */
+    static void markDataCountStale() {
+        sEventCountStale = true;
+    }
+
+    /**
+     * 插入成功后更新内存中的数据条数
+     *
+     * @param count 新增条数
+     */
+    synchronized void increaseDataCount(int count) {
+        if (mEventCount >= 0) {
+            mEventCount += count;
+        }
+    }
+
+    /**
+     * 删除数据后更新内存中的数据条数，计数不再可信时置为 -1，下次读取时重新统计
+     *
+     * @param count 删除条数，小于 0 表示未知
+     */
+    private synchronized void decreaseDataCount(int count) {
+        if (mEventCount < 0 || count < 0 || mEventCount - count <= 0) {
+            mEventCount = -1;
+        } else {
+            mEventCount -= count;
+        }
+    }
+
+    /**
+     * 从数据库中统计 Event 表数据条数，并加上等待合并提交的条数
+     *
+     * @param uri Uri
+     * @return 条数
+     */
+    private int queryEventCount(Uri uri) {
+        try {
+            return dataAccessor.queryCount(uri) + mGroupCommitter.size();
+        } catch (Exception ex) {
+            SALog.printStackTrace(ex);
+        }
+        return mGroupCommitter.size();
     }
 
     /**
@@ -75,7 +276,7 @@ abstract class DataOperation {
                        String[] selectionArgs, String sortOrder) {
         Cursor cursor = null;
         try {
-            cursor = contentResolver.query(uri, projection, selection, selectionArgs, sortOrder);
+            cursor = dataAccessor.query(uri, projection, selection, selectionArgs, sortOrder);
             if (cursor != null) {
                 return cursor.getCount();
             }
@@ -89,22 +290,132 @@ abstract class DataOperation {
         return 0;
     }
 
+    /**
+     * 删除 (afterId, lastId] 范围内的数据，多批数据同时上报时可以乱序删除
+     *
+     * @param uri Uri
+     * @param afterId 该批数据查询时的 afterId，null 表示删除 lastId 及之前的全部数据
+     * @param lastId 该批数据最后一条的 _id
+     */
+    void deleteData(Uri uri, String afterId, String lastId) {
+        if (afterId == null) {
+            deleteData(uri, lastId);
+            return;
+        }
+        int deletedCount = -1;
+        try {
+            deletedCount = dataAccessor.delete(uri, "_id > ? AND _id <= ?", new String[]{afterId, lastId});
+        } catch (Exception ex) {
+            SALog.printStackTrace(ex);
+        }
+        decreaseDataCount(deletedCount);
+    }
+
+    /**
+     * 删除 lastId 及之前的高优先级数据，即按优先级上报的一批数据
+     *
+     * @param uri Uri
+     * @param lastId 该批数据最后一条的 _id
+     */
+    void deleteHighPriorityData(Uri uri, String lastId) {
+        int deletedCount = -1;
+        try {
+            deletedCount = dataAccessor.delete(uri, SELECTION_HIGH_PRIORITY + " AND _id <= ?", new String[]{lastId});
+        } catch (Exception ex) {
+            SALog.printStackTrace(ex);
+        }
+        decreaseDataCount(deletedCount);
+    }
+
     /**
      * 删除数据
      */
     void deleteData(Uri uri, String id) {
+        int deletedCount = -1;
         try {
             if (DbParams.DB_DELETE_ALL.equals(id)) {
-                contentResolver.delete(uri, null, null);
+                mGroupCommitter.clear();
+                dataAccessor.delete(uri, null, null);
             } else {
-                contentResolver.delete(uri, "_id <= ?", new String[]{id});
+                deletedCount = dataAccessor.delete(uri, "_id <= ?", new String[]{id});
             }
         } catch (Exception ex) {
             SALog.printStackTrace(ex);
         }
+        decreaseDataCount(deletedCount);
     }
 
-    String parseData(String keyData) {
+    /**
+     * 构建 Event 表的一行数据，data 以 UTF-8 编码的 BLOB 保存，crc 为 data 的 CRC32
+     *
+     * @param jsonObject 数据
+     * @return ContentValues
+     */
+    ContentValues buildEventValues(JSONObject jsonObject) {
+        return buildEventValues(jsonObject, 0);
+    }
+
+    /**
+     * 构建 Event 表的一行数据
+     *
+     * @param jsonObject 数据
+     * @param priority 优先级，取值为 EventPriority 的 value
+     * @return ContentValues
+     */
+    ContentValues buildEventValues(JSONObject jsonObject, int priority) {
+        return buildEventValues(jsonObject.toString().getBytes(CHARSET_UTF8), priority);
+    }
+
+    /**
+     * 构建 Event 表的一行数据。
+     * 使用 AES/GCM 加密插件时仍然保存 crc：整批加密和明文数据在上报时才加密，GCM 认证的是从数据库读出的内容，无法发现存储损坏；
+     * 按条加密的数据中 GCM 只覆盖 payloads，ekey、pkv 和 JSON 结构不受保护，且只能在上报后由服务端发现。
+     * crc 在读取时丢弃损坏的行，避免整批上报失败
+     *
+     * @param data 保存的数据
+     * @param priority 优先级，取值为 EventPriority 的 value
+     * @return ContentValues
+     */
+    ContentValues buildEventValues(byte[] data, int priority) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(data, 0, data.length);
+        ContentValues cv = new ContentValues();
+        cv.put(DbParams.KEY_DATA, data);
+        cv.put(DbParams.KEY_CRC, crc32.getValue());
+        cv.put(DbParams.KEY_CREATED_AT, System.currentTimeMillis());
+        if (priority != 0) {
+            cv.put(DbParams.KEY_PRIORITY, priority);
+        }
+        return cv;
+    }
+
+    /**
+     * 读取当前行的 data 并校验，兼容旧版本以 "json\thashCode" 格式保存的 TEXT 数据
+     *
+     * @param cursor Cursor
+     * @param dataIndex data 列
+     * @param crcIndex crc 列，-1 表示数据已经过校验（分段日志文件）
+     * @param crc32 复用的 CRC32
+     * @return UTF-8 编码的数据，校验失败时返回 null
+     */
+    static byte[] readData(Cursor cursor, int dataIndex, int crcIndex, CRC32 crc32) {
+        if (crcIndex < 0) {
+            return cursor.getBlob(dataIndex);
+        }
+        if (cursor.isNull(crcIndex)) {
+            String keyData = parseData(cursor.getString(dataIndex));
+            return TextUtils.isEmpty(keyData) ? null : keyData.getBytes(CHARSET_UTF8);
+        }
+        byte[] data = cursor.getBlob(dataIndex);
+        if (data == null) {
+            return null;
+        }
+        crc32.reset();
+        crc32.update(data, 0, data.length);
+        return crc32.getValue() == cursor.getLong(crcIndex) ? data : null;
+    }
+
+    static String parseData(String keyData) {
         try {
             if (TextUtils.isEmpty(keyData)) return "";
             int index = keyData.lastIndexOf("\t");
@@ -124,15 +435,23 @@ abstract class DataOperation {
 
 
     /**
-     * 数据库存满时删除数据
+     * 数据库存满时删除数据：依次删除最早的 100 条低优先级、非高优先级的数据，都没有时删除最早的 100 条数据
      *
      * @param uri URI
      * @return 正常返回 0
      */
     int deleteDataLowMemory(Uri uri) {
         if (belowMemThreshold()) {
-            SALog.i(TAG, "There is not enough space left on the device to store events, so will delete 100 oldest events");
-            String[] eventsData = queryData(uri, 100);
+            SALog.i(TAG, "There is not enough space left on the device to store events, so will delete 100 oldest events of the lowest priority");
+            commitPendingEvents();
+            if (dataAccessor.isPrioritySupported()) {
+                for (String selection : SELECTIONS_EVICTION) {
+                    if (deleteOldestData(uri, selection) > 0) {
+                        return 0;
+                    }
+                }
+            }
+            String[] eventsData = queryData(uri, EVICTION_SIZE);
             if (eventsData == null) {
                 return DbParams.DB_OUT_OF_MEMORY_ERROR;
             }
@@ -146,6 +465,51 @@ abstract class DataOperation {
         return 0;
     }
 
+    /**
+     * 删除符合条件的最早 100 条数据
+     *
+     * @param uri Uri
+     * @param selection 筛选条件
+     * @return 删除条数
+     */
+    private int deleteOldestData(Uri uri, String selection) {
+        Cursor cursor = null;
+        String lastId = null;
+        try {
+            cursor = dataAccessor.query(uri, new String[]{"_id"}, selection, null, "_id ASC LIMIT " + EVICTION_SIZE);
+            if (cursor != null && cursor.moveToLast()) {
+                lastId = cursor.getString(0);
+            }
+        } catch (Exception ex) {
+            SALog.printStackTrace(ex);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        if (lastId == null) {
+            return 0;
+        }
+        int deletedCount = -1;
+        try {
+            deletedCount = dataAccessor.delete(uri, selection + " AND _id <= ?", new String[]{lastId});
+        } catch (Exception ex) {
+            SALog.printStackTrace(ex);
+        }
+        decreaseDataCount(deletedCount);
+        return deletedCount;
+    }
+
+    private boolean isMultiProcessFlush() {
+        try {
+            SAConfigOptions configOptions = SensorsDataAPI.getConfigOptions();
+            return configOptions != null && configOptions.isMultiProcessFlush();
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+            return false;
+        }
+    }
+
     private long getMaxCacheSize(Context context) {
         try {
             return SensorsDataAPI.sharedInstance(context).getMaxCacheSize();
@@ -156,9 +520,6 @@ abstract class DataOperation {
     }
 
     private boolean belowMemThreshold() {
-        if (mDatabaseFile.exists()) {
-            return mDatabaseFile.length() >= getMaxCacheSize(mContext);
-        }
-        return false;
+        return dataAccessor.getStorageSize() >= getMaxCacheSize(mContext);
     }
 }
@@ -20,18 +20,24 @@ package com.sensorsdata.analytics.android.sdk.data.adapter;
 import android.content.ContentValues;
 import android.content.Context;
 
+import com.sensorsdata.analytics.android.sdk.SAConfigOptions;
 import com.sensorsdata.analytics.android.sdk.SALog;
+import com.sensorsdata.analytics.android.sdk.SensorsDataAPI;
 import com.sensorsdata.analytics.android.sdk.data.persistent.LoginIdKeyPersistent;
 import com.sensorsdata.analytics.android.sdk.data.persistent.PersistentLoader;
 import com.sensorsdata.analytics.android.sdk.data.persistent.PersistentLoginId;
 import com.sensorsdata.analytics.android.sdk.data.persistent.PersistentRemoteSDKConfig;
 import com.sensorsdata.analytics.android.sdk.data.persistent.UserIdentityPersistent;
 import com.sensorsdata.analytics.android.sdk.encrypt.SensorsDataEncrypt;
+import com.sensorsdata.analytics.android.sdk.util.AppInfoUtils;
 import com.sensorsdata.analytics.android.sdk.util.Base64Coder;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 public class DbAdapter {
     private static DbAdapter instance;
     private final DbParams mDbParams;
@@ -40,12 +46,45 @@ public class DbAdapter {
 
     private DbAdapter(Context context, String packageName, SensorsDataEncrypt sensorsDataEncrypt) {
         mDbParams = DbParams.getInstance(packageName);
+        Context appContext = context.getApplicationContext();
+        IDataAccessor dataAccessor;
+        SAConfigOptions configOptions = SensorsDataAPI.getConfigOptions();
+        boolean isDirectAccess = isDirectAccess(appContext);
+        if (isDirectAccess) {
+            dataAccessor = new SQLiteDataAccessor(appContext);
+            if (configOptions != null && configOptions.isEnableEventLogStorage()) {
+                dataAccessor = new SegmentLogDataAccessor(appContext, dataAccessor);
+            }
+        } else {
+            dataAccessor = new ProviderDataAccessor(appContext);
+        }
         if (sensorsDataEncrypt != null) {
-            mTrackEventOperation = new EncryptDataOperation(context.getApplicationContext(), sensorsDataEncrypt);
+            // 会话密钥只在当前进程中维护，子进程写入的数据仍按条加密
+            boolean isBatchEncrypt = isDirectAccess && configOptions != null && configOptions.isEnableBatchEncrypt();
+            mTrackEventOperation = new EncryptDataOperation(appContext, dataAccessor, sensorsDataEncrypt, isBatchEncrypt);
         } else {
-            mTrackEventOperation = new EventDataOperation(context.getApplicationContext());
+            mTrackEventOperation = new EventDataOperation(appContext, dataAccessor);
         }
-        mPersistentOperation = new PersistentDataOperation(context.getApplicationContext());
+        mPersistentOperation = new PersistentDataOperation(appContext);
+    }
+
+    /**
+     * 未开启多进程上报且运行在主进程时，直接访问数据库，不经过 ContentProvider
+     *
+     * @param context Context
+     * @return true 直接访问数据库，false 通过 ContentProvider 访问
+     */
+    private boolean isDirectAccess(Context context) {
+        try {
+            SAConfigOptions configOptions = SensorsDataAPI.getConfigOptions();
+            if (configOptions != null && configOptions.isMultiProcessFlush()) {
+                return false;
+            }
+            return AppInfoUtils.isMainProcess(context, AppInfoUtils.getAppInfoBundle(context));
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+        return false;
     }
 
     public static DbAdapter getInstance(Context context, String packageName,
@@ -56,6 +95,14 @@ public class DbAdapter {
         return instance;
     }
 
+    /**
+     * ContentProvider 写入 Event 数据后调用。子进程的数据通过 ContentProvider 写入，
+     * 未开启多进程上报时主进程直接访问数据库，需要据此重新统计数据条数
+     */
+    public static void notifyEventInserted() {
+        DataOperation.markDataCountStale();
+    }
+
     public static DbAdapter getInstance() {
         if (instance == null) {
             throw new IllegalStateException("The static method getInstance(Context context, String packageName) should be called before calling getInstance()");
@@ -72,13 +119,60 @@ public class DbAdapter {
      * on failure
      */
     public int addJSON(JSONObject j) {
-        int code = mTrackEventOperation.insertData(mDbParams.getEventUri(), j);
+        return addJSON(j, true);
+    }
+
+    /**
+     * Adds a JSON string representing an event with properties or a person record
+     * to the SQLiteDatabase.
+     *
+     * @param j the JSON to record
+     * @param isImmediate true to write the event to database immediately, false to allow
+     * it to be committed together with other events in one transaction
+     * @return the number of rows in the table, or DB_OUT_OF_MEMORY_ERROR/DB_UPDATE_ERROR
+     * on failure
+     */
+    public int addJSON(JSONObject j, boolean isImmediate) {
+        return addJSON(j, isImmediate, 0);
+    }
+
+    /**
+     * Adds a JSON string representing an event with properties or a person record
+     * to the SQLiteDatabase.
+     *
+     * @param j the JSON to record
+     * @param isImmediate true to write the event to database immediately, false to allow
+     * it to be committed together with other events in one transaction
+     * @param priority the value of EventPriority, high priority events are flushed first
+     * and low priority events are deleted first when the cache is full
+     * @return the number of rows in the table, or DB_OUT_OF_MEMORY_ERROR/DB_UPDATE_ERROR
+     * on failure
+     */
+    public int addJSON(JSONObject j, boolean isImmediate, int priority) {
+        int code = mTrackEventOperation.insertData(mDbParams.getEventUri(), j, isImmediate, priority);
         if (code == 0) {
             return mTrackEventOperation.queryDataCount(mDbParams.getEventUri());
         }
         return code;
     }
 
+    /**
+     * 将等待合并提交的数据写入数据库
+     */
+    public void commitPendingEvents() {
+        mTrackEventOperation.commitPendingEvents();
+    }
+
+    /**
+     * 获取本地缓存的事件条数，包括等待合并提交的数据
+     *
+     * @return 事件条数
+     */
+    public int getEventCount() {
+        mTrackEventOperation.commitPendingEvents();
+        return mTrackEventOperation.queryDataCount(mDbParams.getEventUri());
+    }
+
     /**
      * Removes all events from table
      */
@@ -97,6 +191,29 @@ public class DbAdapter {
         return mTrackEventOperation.queryDataCount(mDbParams.getEventUri());
     }
 
+    /**
+     * Removes events with after_id &lt; _id &lt;= last_id from table
+     *
+     * @param after_id the after id used to query the batch, null means from the first row
+     * @param last_id the last id to delete
+     * @return the number of rows in the table
+     */
+    public int cleanupEvents(String after_id, String last_id) {
+        mTrackEventOperation.deleteData(mDbParams.getEventUri(), after_id, last_id);
+        return mTrackEventOperation.queryDataCount(mDbParams.getEventUri());
+    }
+
+    /**
+     * Removes high priority events with an _id &lt;= last_id from table
+     *
+     * @param last_id the last id of the high priority batch
+     * @return the number of rows in the table
+     */
+    public int cleanupHighPriorityEvents(String last_id) {
+        mTrackEventOperation.deleteHighPriorityData(mDbParams.getEventUri(), last_id);
+        return mTrackEventOperation.queryDataCount(mDbParams.getEventUri());
+    }
+
     /**
      * 保存启动的页面个数
      *
@@ -497,11 +614,76 @@ public class DbAdapter {
      * @return 数据
      */
     public String[] generateDataString(String tableName, int limit) {
+        return generateDataString(tableName, null, limit);
+    }
+
+    /**
+     * 从 Event 表中读取 afterId 之后的上报数据
+     *
+     * @param tableName 表名
+     * @param afterId 从该 _id 之后开始查询，null 表示从头查询
+     * @param limit 条数限制
+     * @return 数据
+     */
+    public String[] generateDataString(String tableName, String afterId, int limit) {
+        return generateDataString(tableName, afterId, limit, false);
+    }
+
+    /**
+     * 从 Event 表中读取 afterId 之后的上报数据
+     *
+     * @param tableName 表名
+     * @param afterId 从该 _id 之后开始查询，null 表示从头查询
+     * @param limit 条数限制
+     * @param isHighPriority true 表示只读取高优先级的数据
+     * @return 数据
+     */
+    public String[] generateDataString(String tableName, String afterId, int limit, boolean isHighPriority) {
         try {
-            return mTrackEventOperation.queryData(mDbParams.getEventUri(), limit);
+            mTrackEventOperation.commitPendingEvents();
+            return mTrackEventOperation.queryData(mDbParams.getEventUri(), afterId, limit, isHighPriority);
         } catch (Exception e) {
             SALog.printStackTrace(e);
         }
         return null;
     }
-}
\ No newline at end of file
+
+    /**
+     * 是否支持将 Event 数据直接写入输出流，加密数据需要按密钥分组，不支持
+     *
+     * @return true 支持 writeData
+     */
+    public boolean isStreamingSupported() {
+        return mTrackEventOperation.isStreamingSupported();
+    }
+
+    /**
+     * 从 Event 表中读取 afterId 之后的上报数据，以 JSON 数组的格式直接写入 outputStream
+     *
+     * @param tableName 表名
+     * @param afterId 从该 _id 之后开始查询，null 表示从头查询
+     * @param limit 条数限制
+     * @param outputStream 输出流
+     * @return {lastId, null, gzip 类型, 条数}，没有数据时返回 null
+     * @throws IOException 写入失败
+     */
+    public String[] writeData(String tableName, String afterId, int limit, OutputStream outputStream) throws IOException {
+        return writeData(tableName, afterId, limit, false, outputStream);
+    }
+
+    /**
+     * 从 Event 表中读取 afterId 之后的上报数据，以 JSON 数组的格式直接写入 outputStream
+     *
+     * @param tableName 表名
+     * @param afterId 从该 _id 之后开始查询，null 表示从头查询
+     * @param limit 条数限制
+     * @param isHighPriority true 表示只读取高优先级的数据
+     * @param outputStream 输出流
+     * @return {lastId, null, gzip 类型, 条数}，没有数据时返回 null
+     * @throws IOException 写入失败
+     */
+    public String[] writeData(String tableName, String afterId, int limit, boolean isHighPriority, OutputStream outputStream) throws IOException {
+        mTrackEventOperation.commitPendingEvents();
+        return mTrackEventOperation.writeData(mDbParams.getEventUri(), afterId, limit, isHighPriority, outputStream);
+    }
+}
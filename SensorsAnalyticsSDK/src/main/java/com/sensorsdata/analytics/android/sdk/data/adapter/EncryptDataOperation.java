@@ -24,6 +24,7 @@ import android.net.Uri;
 import android.text.TextUtils;
 
 import com.sensorsdata.analytics.android.sdk.SALog;
+import com.sensorsdata.analytics.android.sdk.encrypt.EventStoreCipher;
 import com.sensorsdata.analytics.android.sdk.encrypt.SensorsDataEncrypt;
 
 import org.json.JSONArray;
@@ -31,27 +32,70 @@ import org.json.JSONObject;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.CRC32;
 
 class EncryptDataOperation extends DataOperation {
+    private static final String EKEY = "ekey";
+    private static final String KEY_VER = "pkv";
+    private static final String PAYLOADS = "payloads";
+    /* 查询到的数据类型：无法读取、已加密、需要整批加密、明文 */
+    private static final int ROW_INVALID = 0;
+    private static final int ROW_ENCRYPTED = 1;
+    private static final int ROW_BATCH = 2;
+    private static final int ROW_PLAIN = 3;
 
     private SensorsDataEncrypt mSensorsDataEncrypt;
+    private final Context mContext;
+    /* 是否整批加密上报：存储时使用会话密钥加密，上报时整批压缩后加密一次 */
+    private final boolean mIsBatchEncrypt;
+    private EventStoreCipher mStoreCipher;
+    private boolean mIsStoreCipherLoaded;
 
-    EncryptDataOperation(Context context, SensorsDataEncrypt sensorsDataEncrypt) {
-        super(context);
+    EncryptDataOperation(Context context, IDataAccessor dataAccessor, SensorsDataEncrypt sensorsDataEncrypt) {
+        this(context, dataAccessor, sensorsDataEncrypt, false);
+    }
+
+    EncryptDataOperation(Context context, IDataAccessor dataAccessor, SensorsDataEncrypt sensorsDataEncrypt, boolean isBatchEncrypt) {
+        super(context, dataAccessor);
+        this.mContext = context;
         this.mSensorsDataEncrypt = sensorsDataEncrypt;
+        this.mIsBatchEncrypt = isBatchEncrypt;
+    }
+
+    /**
+     * 获取会话密钥，Event 表为空时轮换密钥
+     *
+     * @param uri Uri
+     * @return EventStoreCipher，生成密钥失败时返回 null
+     */
+    private synchronized EventStoreCipher getStoreCipher(Uri uri) {
+        if (!mIsStoreCipherLoaded) {
+            mIsStoreCipherLoaded = true;
+            mStoreCipher = EventStoreCipher.create(mContext, dataAccessor.queryCount(uri) == 0);
+        }
+        return mStoreCipher;
     }
 
     @Override
     int insertData(Uri uri, JSONObject jsonObject) {
+        return insertData(uri, jsonObject, true, 0);
+    }
+
+    @Override
+    int insertData(Uri uri, JSONObject jsonObject, boolean isImmediate, int priority) {
         try {
             if (deleteDataLowMemory(uri) != 0) {
                 return DbParams.DB_OUT_OF_MEMORY_ERROR;
             }
+            if (mIsBatchEncrypt) {
+                EventStoreCipher storeCipher = getStoreCipher(uri);
+                byte[] sealedData = storeCipher == null ? null : storeCipher.seal(jsonObject.toString().getBytes(CHARSET_UTF8));
+                if (sealedData != null) {
+                    return insertEvent(uri, buildEventValues(sealedData, priority), isImmediate);
+                }
+            }
             jsonObject = mSensorsDataEncrypt.encryptTrackData(jsonObject);
-            ContentValues cv = new ContentValues();
-            cv.put(DbParams.KEY_DATA, jsonObject.toString() + "\t" + jsonObject.toString().hashCode());
-            cv.put(DbParams.KEY_CREATED_AT, System.currentTimeMillis());
-            contentResolver.insert(uri, cv);
+            return insertEvent(uri, buildEventValues(jsonObject, priority), isImmediate);
         } catch (Throwable e) {
             SALog.d(TAG, e.getMessage());
         }
@@ -64,7 +108,7 @@ class EncryptDataOperation extends DataOperation {
             if (deleteDataLowMemory(uri) != 0) {
                 return DbParams.DB_OUT_OF_MEMORY_ERROR;
             }
-            contentResolver.insert(uri, contentValues);
+            dataAccessor.insert(uri, contentValues);
         } catch (Exception e) {
             SALog.printStackTrace(e);
         }
@@ -73,69 +117,154 @@ class EncryptDataOperation extends DataOperation {
 
     @Override
     String[] queryData(Uri uri, int limit) {
+        return queryData(uri, null, limit);
+    }
+
+    @Override
+    String[] queryData(Uri uri, String afterId, int limit, boolean isHighPriority) {
         Cursor cursor = null;
         String data = null;
         String last_id = null;
         String gzipType = DbParams.GZIP_DATA_ENCRYPT;
+        int count = 0;
         try {
-            Map<String, JSONArray> dataEncryptMap = new HashMap<>();
-            JSONArray dataJsonArray = new JSONArray();
-            cursor = contentResolver.query(uri, null, null, null, DbParams.KEY_CREATED_AT + " ASC LIMIT " + limit);
+            cursor = queryEvents(uri, afterId, limit, isHighPriority);
             if (cursor != null) {
+                count = cursor.getCount();
+                // 每条数据的类型和内容，按查询顺序保存
+                int[] rowTypes = new int[count];
+                JSONObject[] rows = new JSONObject[count];
+                // 已加密数据的 ekey$pkv 和 payloads
+                String[] rowKeys = new String[count];
+                String[] rowPayloads = new String[count];
+                String[] rowIds = new String[count];
+                // 整批加密上报的数据
+                JSONArray batchJsonArray = new JSONArray();
                 String keyData;
+                byte[] dataBytes;
                 JSONObject jsonObject;
-                final String EKEY = "ekey";
-                final String KEY_VER = "pkv";
-                final String PAYLOADS = "payloads";
-                while (cursor.moveToNext()) {
-                    if (cursor.isLast()) {
-                        last_id = cursor.getString(cursor.getColumnIndex("_id"));
-                    }
+                final int idIndex = cursor.getColumnIndex("_id");
+                final int dataIndex = cursor.getColumnIndex(DbParams.KEY_DATA);
+                final int crcIndex = cursor.getColumnIndex(DbParams.KEY_CRC);
+                final CRC32 crc32 = new CRC32();
+                int position = 0;
+                while (cursor.moveToNext() && position < count) {
+                    rowIds[position] = cursor.getString(idIndex);
                     try {
-                        keyData = cursor.getString(cursor.getColumnIndex(DbParams.KEY_DATA));
-                        keyData = parseData(keyData);
+                        dataBytes = readData(cursor, dataIndex, crcIndex, crc32);
+                        if (dataBytes == null || dataBytes.length == 0) {
+                            continue;
+                        }
+                        if (EventStoreCipher.isSealed(dataBytes)) {
+                            EventStoreCipher storeCipher = getStoreCipher(uri);
+                            byte[] openData = storeCipher == null ? null : storeCipher.open(dataBytes);
+                            if (openData == null) {
+                                continue;
+                            }
+                            jsonObject = new JSONObject(new String(openData, CHARSET_UTF8));
+                            jsonObject.put("_flush_time", System.currentTimeMillis());
+                            rows[position] = jsonObject;
+                            rowTypes[position] = ROW_BATCH;
+                            batchJsonArray.put(jsonObject);
+                            continue;
+                        }
+                        keyData = new String(dataBytes, CHARSET_UTF8);
                         if (TextUtils.isEmpty(keyData)) {
                             continue;
                         }
 
                         jsonObject = new JSONObject(keyData);
                         boolean isHasEkey = jsonObject.has(EKEY);
-                        if (!isHasEkey) { // 如果没有包含 Ekey 字段，则重新进行加密
+                        if (!isHasEkey && mIsBatchEncrypt) { // 未加密的数据整批加密
+                            jsonObject.put("_flush_time", System.currentTimeMillis());
+                            rows[position] = jsonObject;
+                            rowTypes[position] = ROW_BATCH;
+                            batchJsonArray.put(jsonObject);
+                            continue;
+                        } else if (!isHasEkey) { // 如果没有包含 Ekey 字段，则重新进行加密
                             jsonObject = mSensorsDataEncrypt.encryptTrackData(jsonObject);
                         }
 
                         if (jsonObject.has(EKEY)) {
-                            String key = jsonObject.getString(EKEY) + "$" + jsonObject.getInt(KEY_VER);
-                            if (dataEncryptMap.containsKey(key)) {
-                                dataEncryptMap.get(key).put(jsonObject.getString(PAYLOADS));
-                            } else {
-                                JSONArray jsonArray = new JSONArray();
-                                jsonArray.put(jsonObject.getString(PAYLOADS));
-                                dataEncryptMap.put(key, jsonArray);
-                            }
+                            rowKeys[position] = jsonObject.getString(EKEY) + "$" + jsonObject.getInt(KEY_VER);
+                            rowPayloads[position] = jsonObject.getString(PAYLOADS);
+                            rowTypes[position] = ROW_ENCRYPTED;
                         } else {
                             jsonObject.put("_flush_time", System.currentTimeMillis());
-                            dataJsonArray.put(jsonObject);
+                            rows[position] = jsonObject;
+                            rowTypes[position] = ROW_PLAIN;
                         }
                     } catch (Exception e) {
                         SALog.printStackTrace(e);
+                    } finally {
+                        position++;
                     }
                 }
-                JSONArray dataEncryptJsonArray = new JSONArray();
-                for (String key : dataEncryptMap.keySet()) {
-                    jsonObject = new JSONObject();
-                    jsonObject.put(EKEY, key.substring(0, key.indexOf("$")));
-                    jsonObject.put(KEY_VER, Integer.valueOf(key.substring(key.indexOf("$") + 1)));
-                    jsonObject.put(PAYLOADS, dataEncryptMap.get(key));
-                    jsonObject.put("flush_time", System.currentTimeMillis());
-                    dataEncryptJsonArray.put(jsonObject);
+                count = position;
+
+                JSONObject batchData = batchJsonArray.length() > 0 ? mSensorsDataEncrypt.encryptBatchData(batchJsonArray) : null;
+                boolean isBatchEncrypted = batchData != null;
+                // 密文和明文不能在同一个请求中上报，遇到另一种数据时结束本批，剩余的数据留到下一批
+                int end = findBatchEnd(rowTypes, count, isBatchEncrypted);
+                if (isBatchEncrypted && end < count) {
+                    JSONArray events = new JSONArray();
+                    for (int i = 0; i < end; i++) {
+                        if (rowTypes[i] == ROW_BATCH) {
+                            events.put(rows[i]);
+                        }
+                    }
+                    if (events.length() != batchJsonArray.length()) {
+                        batchData = events.length() > 0 ? mSensorsDataEncrypt.encryptBatchData(events) : null;
+                        if (batchData == null && events.length() > 0) {
+                            isBatchEncrypted = false;
+                            end = findBatchEnd(rowTypes, count, false);
+                        }
+                    }
                 }
-                if (dataEncryptJsonArray.length() > 0) {
+                if (isEncryptedRow(rowTypes, end, isBatchEncrypted)) {
+                    Map<String, JSONArray> dataEncryptMap = new HashMap<>();
+                    for (int i = 0; i < end; i++) {
+                        if (rowTypes[i] != ROW_ENCRYPTED) {
+                            continue;
+                        }
+                        String key = rowKeys[i];
+                        if (dataEncryptMap.containsKey(key)) {
+                            dataEncryptMap.get(key).put(rowPayloads[i]);
+                        } else {
+                            JSONArray jsonArray = new JSONArray();
+                            jsonArray.put(rowPayloads[i]);
+                            dataEncryptMap.put(key, jsonArray);
+                        }
+                    }
+                    JSONArray dataEncryptJsonArray = new JSONArray();
+                    for (String key : dataEncryptMap.keySet()) {
+                        jsonObject = new JSONObject();
+                        jsonObject.put(EKEY, key.substring(0, key.indexOf("$")));
+                        jsonObject.put(KEY_VER, Integer.valueOf(key.substring(key.indexOf("$") + 1)));
+                        jsonObject.put(PAYLOADS, dataEncryptMap.get(key));
+                        jsonObject.put("flush_time", System.currentTimeMillis());
+                        dataEncryptJsonArray.put(jsonObject);
+                    }
+                    if (batchData != null) {
+                        batchData.put("flush_time", System.currentTimeMillis());
+                        dataEncryptJsonArray.put(batchData);
+                    }
                     data = dataEncryptJsonArray.toString();
                 } else {
+                    // 没有加密的数据，以及还没有公钥时整批加密的数据按明文上报
+                    JSONArray dataJsonArray = new JSONArray();
+                    for (int i = 0; i < end; i++) {
+                        if (rowTypes[i] == ROW_BATCH || rowTypes[i] == ROW_PLAIN) {
+                            dataJsonArray.put(rows[i]);
+                        }
+                    }
                     data = dataJsonArray.toString();
                     gzipType = DbParams.GZIP_DATA_EVENT;
                 }
+                count = end;
+                if (end > 0) {
+                    last_id = rowIds[end - 1];
+                }
             }
         } catch (Exception ex) {
             SALog.printStackTrace(ex);
@@ -145,11 +274,52 @@ class EncryptDataOperation extends DataOperation {
             }
         }
         if (last_id != null) {
-            return new String[]{last_id, data, gzipType};
+            return new String[]{last_id, data, gzipType, String.valueOf(count)};
         }
         return null;
     }
 
+    /**
+     * 查找本批数据的结束位置：从第一条有效数据开始，到第一条加密状态不同的数据之前
+     *
+     * @param rowTypes 每条数据的类型
+     * @param count 数据条数
+     * @param isBatchEncrypted 整批加密是否成功
+     * @return 本批数据的条数
+     */
+    private static int findBatchEnd(int[] rowTypes, int count, boolean isBatchEncrypted) {
+        int first = 0;
+        while (first < count && rowTypes[first] == ROW_INVALID) {
+            first++;
+        }
+        if (first == count) {
+            return count;
+        }
+        boolean isEncrypted = isEncryptedType(rowTypes[first], isBatchEncrypted);
+        for (int i = first + 1; i < count; i++) {
+            if (rowTypes[i] != ROW_INVALID && isEncryptedType(rowTypes[i], isBatchEncrypted) != isEncrypted) {
+                return i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 本批数据是否按密文上报
+     */
+    private static boolean isEncryptedRow(int[] rowTypes, int end, boolean isBatchEncrypted) {
+        for (int i = 0; i < end; i++) {
+            if (rowTypes[i] != ROW_INVALID) {
+                return isEncryptedType(rowTypes[i], isBatchEncrypted);
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEncryptedType(int rowType, boolean isBatchEncrypted) {
+        return rowType == ROW_ENCRYPTED || (rowType == ROW_BATCH && isBatchEncrypted);
+    }
+
     @Override
     void deleteData(Uri uri, String id) {
         super.deleteData(uri, id);
@@ -28,23 +28,29 @@ import com.sensorsdata.analytics.android.sdk.SALog;
 
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
 class EventDataOperation extends DataOperation {
 
-    EventDataOperation(Context context) {
-        super(context);
+    EventDataOperation(Context context, IDataAccessor dataAccessor) {
+        super(context, dataAccessor);
         TAG = "EventDataOperation";
     }
 
     @Override
     int insertData(Uri uri, JSONObject jsonObject) {
+        return insertData(uri, jsonObject, true, 0);
+    }
+
+    @Override
+    int insertData(Uri uri, JSONObject jsonObject, boolean isImmediate, int priority) {
         try {
             if (deleteDataLowMemory(uri) != 0) {
                 return DbParams.DB_OUT_OF_MEMORY_ERROR;
             }
-            ContentValues cv = new ContentValues();
-            cv.put(DbParams.KEY_DATA, jsonObject.toString() + "\t" + jsonObject.toString().hashCode());
-            cv.put(DbParams.KEY_CREATED_AT, System.currentTimeMillis());
-            contentResolver.insert(uri, cv);
+            return insertEvent(uri, buildEventValues(jsonObject, priority), isImmediate);
         } catch (Throwable e) {
             SALog.d(TAG, e.getMessage());
         }
@@ -57,7 +63,7 @@ class EventDataOperation extends DataOperation {
             if (deleteDataLowMemory(uri) != 0) {
                 return DbParams.DB_OUT_OF_MEMORY_ERROR;
             }
-            contentResolver.insert(uri, contentValues);
+            dataAccessor.insert(uri, contentValues);
         } catch (Exception e) {
             SALog.printStackTrace(e);
         }
@@ -66,25 +72,36 @@ class EventDataOperation extends DataOperation {
 
     @Override
     String[] queryData(Uri uri, int limit) {
+        return queryData(uri, null, limit);
+    }
+
+    @Override
+    String[] queryData(Uri uri, String afterId, int limit, boolean isHighPriority) {
         Cursor cursor = null;
         String data = null;
         String last_id = null;
+        int count = 0;
         try {
-            cursor = contentResolver.query(uri, null, null, null, DbParams.KEY_CREATED_AT + " ASC LIMIT " + limit);
+            cursor = queryEvents(uri, afterId, limit, isHighPriority);
             if (cursor != null) {
+                count = cursor.getCount();
                 StringBuilder dataBuilder = new StringBuilder();
                 final String flush_time = ",\"_flush_time\":";
                 String suffix = ",";
                 dataBuilder.append("[");
                 String keyData;
+                byte[] dataBytes;
+                final int dataIndex = cursor.getColumnIndex(DbParams.KEY_DATA);
+                final int crcIndex = cursor.getColumnIndex(DbParams.KEY_CRC);
+                final CRC32 crc32 = new CRC32();
                 while (cursor.moveToNext()) {
                     if (cursor.isLast()) {
                         suffix = "]";
                         last_id = cursor.getString(cursor.getColumnIndex("_id"));
                     }
                     try {
-                        keyData = cursor.getString(cursor.getColumnIndex(DbParams.KEY_DATA));
-                        keyData = parseData(keyData);
+                        dataBytes = readData(cursor, dataIndex, crcIndex, crc32);
+                        keyData = dataBytes == null ? null : new String(dataBytes, CHARSET_UTF8);
                         if (!TextUtils.isEmpty(keyData)) {
                             dataBuilder.append(keyData, 0, keyData.length() - 1)
                                     .append(flush_time)
@@ -108,11 +125,69 @@ class EventDataOperation extends DataOperation {
         }
 
         if (last_id != null) {
-            return new String[]{last_id, data, DbParams.GZIP_DATA_EVENT};
+            return new String[]{last_id, data, DbParams.GZIP_DATA_EVENT, String.valueOf(count)};
         }
         return null;
     }
 
+    @Override
+    boolean isStreamingSupported() {
+        return true;
+    }
+
+    @Override
+    String[] writeData(Uri uri, String afterId, int limit, boolean isHighPriority, OutputStream outputStream) throws IOException {
+        Cursor cursor = null;
+        String lastId = null;
+        int count;
+        try {
+            cursor = queryEvents(uri, afterId, limit, isHighPriority);
+            if (cursor == null) {
+                return null;
+            }
+            count = cursor.getCount();
+            // 去掉每条数据末尾的 "}"，拼接 _flush_time 后重新闭合
+            final byte[] flushTime = (",\"_flush_time\":" + System.currentTimeMillis() + "}").getBytes(CHARSET_UTF8);
+            final int idIndex = cursor.getColumnIndex("_id");
+            final int dataIndex = cursor.getColumnIndex(DbParams.KEY_DATA);
+            final int crcIndex = cursor.getColumnIndex(DbParams.KEY_CRC);
+            final CRC32 crc32 = new CRC32();
+            boolean isFirst = true;
+            byte[] dataBytes;
+            outputStream.write('[');
+            while (cursor.moveToNext()) {
+                lastId = cursor.getString(idIndex);
+                try {
+                    dataBytes = readData(cursor, dataIndex, crcIndex, crc32);
+                } catch (Exception e) {
+                    SALog.printStackTrace(e);
+                    continue;
+                }
+                if (dataBytes == null || dataBytes.length < 2 || dataBytes[dataBytes.length - 1] != '}') {
+                    continue;
+                }
+                if (!isFirst) {
+                    outputStream.write(',');
+                }
+                outputStream.write(dataBytes, 0, dataBytes.length - 1);
+                outputStream.write(flushTime);
+                isFirst = false;
+            }
+            outputStream.write(']');
+        } catch (final SQLiteException e) {
+            SALog.i(TAG, "Could not pull records for SensorsData out of database events. Waiting to send.", e);
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        if (lastId == null) {
+            return null;
+        }
+        return new String[]{lastId, null, DbParams.GZIP_DATA_EVENT, String.valueOf(count)};
+    }
+
     @Override
     void deleteData(Uri uri, String id) {
         super.deleteData(uri, id);
@@ -0,0 +1,158 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.data.adapter;
+
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+
+import com.sensorsdata.analytics.android.sdk.SALog;
+import com.sensorsdata.analytics.android.sdk.ThreadNameConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Event 数据合并提交：短时间内的多条数据通过一次 bulkInsert 在同一个事务中写入数据库，
+ * 减少频繁采集（例如 $AppClick、$AppViewScreen）时的磁盘同步次数
+ */
+class EventGroupCommitter {
+    private static final String TAG = "SA.EventGroupCommitter";
+    /* 单次合并提交的最大条数 */
+    private static final int MAX_BATCH_SIZE = 50;
+    /* 合并提交的最长等待时间，单位毫秒 */
+    private static final long MAX_DELAY_MILLIS = 50;
+    private static final int COMMIT_PENDING = 1;
+    private final IDataAccessor mDataAccessor;
+    private final List<ContentValues> mPendingValues = new ArrayList<>();
+    private Uri mUri;
+    private Handler mHandler;
+
+    EventGroupCommitter(IDataAccessor dataAccessor) {
+        this.mDataAccessor = dataAccessor;
+    }
+
+    /**
+     * 添加待写入的数据
+     *
+     * @param uri Uri
+     * @param values 数据
+     * @param isImmediate true 表示立即写入（连同之前缓存的数据），false 表示等待合并提交
+     * @return false 表示立即写入失败
+     */
+    boolean add(Uri uri, ContentValues values, boolean isImmediate) {
+        synchronized (this) {
+            mUri = uri;
+            mPendingValues.add(values);
+            if (!isImmediate && mPendingValues.size() < MAX_BATCH_SIZE && scheduleCommit()) {
+                return true;
+            }
+        }
+        return commit() >= 0;
+    }
+
+    /**
+     * 将缓存的数据写入数据库。未写入的数据不再保留，通过 onCommitFailed 通知调用方
+     *
+     * @return 写入的条数，有数据未写入时返回 -1
+     */
+    int commit() {
+        int size;
+        int count = 0;
+        synchronized (this) {
+            size = mPendingValues.size();
+            if (size == 0) {
+                return 0;
+            }
+            try {
+                if (size == 1) {
+                    count = isInserted(mUri, mDataAccessor.insert(mUri, mPendingValues.get(0))) ? 1 : 0;
+                } else {
+                    count = mDataAccessor.bulkInsert(mUri, mPendingValues.toArray(new ContentValues[size]));
+                }
+            } catch (Exception e) {
+                SALog.printStackTrace(e);
+            } finally {
+                mPendingValues.clear();
+            }
+            if (count >= size) {
+                return size;
+            }
+            SALog.i(TAG, "commit failed, " + (size - count) + " events dropped");
+        }
+        // 在锁外回调，避免与调用方的锁形成死锁
+        onCommitFailed(size - count);
+        return -1;
+    }
+
+    /**
+     * 写入失败时回调，用于修正内存中的数据条数
+     *
+     * @param count 未写入的条数
+     */
+    void onCommitFailed(int count) {
+
+    }
+
+    /**
+     * 缓存中尚未写入的条数
+     *
+     * @return 条数
+     */
+    synchronized int size() {
+        return mPendingValues.size();
+    }
+
+    /**
+     * 丢弃缓存中的数据
+     */
+    synchronized void clear() {
+        mPendingValues.clear();
+    }
+
+    /**
+     * 插入成功时返回的 Uri 包含新数据的 _id
+     */
+    private static boolean isInserted(Uri uri, Uri result) {
+        return result != null && !result.equals(uri) && !"-1".equals(result.getLastPathSegment());
+    }
+
+    private boolean scheduleCommit() {
+        try {
+            if (mHandler == null) {
+                HandlerThread thread = new HandlerThread(ThreadNameConstants.THREAD_GROUP_COMMIT);
+                thread.start();
+                mHandler = new Handler(thread.getLooper()) {
+                    @Override
+                    public void handleMessage(Message msg) {
+                        commit();
+                    }
+                };
+            }
+            if (!mHandler.hasMessages(COMMIT_PENDING)) {
+                mHandler.sendEmptyMessageDelayed(COMMIT_PENDING, MAX_DELAY_MILLIS);
+            }
+            return true;
+        } catch (Exception e) {
+            SALog.i(TAG, "schedule commit failed, commit immediately", e);
+        }
+        return false;
+    }
+}
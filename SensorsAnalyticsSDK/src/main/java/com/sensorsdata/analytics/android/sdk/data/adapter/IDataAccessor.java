@@ -0,0 +1,100 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.data.adapter;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+/**
+ * Event 表的读写通道，可以通过 ContentProvider 跨进程访问，也可以在当前进程中直接访问数据库
+ */
+interface IDataAccessor {
+
+    /**
+     * 插入数据
+     *
+     * @param uri Uri
+     * @param values 数据
+     * @return 插入数据的 Uri
+     */
+    Uri insert(Uri uri, ContentValues values);
+
+    /**
+     * 在同一个事务中插入多条数据
+     *
+     * @param uri Uri
+     * @param values 数据
+     * @return 插入条数
+     */
+    int bulkInsert(Uri uri, ContentValues[] values);
+
+    /**
+     * 查询数据
+     *
+     * @param uri Uri
+     * @param projection 列名
+     * @param selection 筛选条件
+     * @param selectionArgs 筛选参数
+     * @param sortOrder 排序
+     * @return Cursor
+     */
+    Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder);
+
+    /**
+     * 按写入顺序查询 afterId 之后最早的 Event 数据，返回的 Cursor 包含 _id、data、created_at 列
+     *
+     * @param uri Uri
+     * @param afterId 从该 _id 之后开始查询，null 表示从头查询
+     * @param limit 条数限制
+     * @return Cursor
+     */
+    Cursor queryEvents(Uri uri, String afterId, int limit);
+
+    /**
+     * 是否保存事件优先级（priority 列），不支持时按写入顺序上报和删除数据
+     *
+     * @return true 支持按优先级查询和删除
+     */
+    boolean isPrioritySupported();
+
+    /**
+     * 删除数据
+     *
+     * @param uri Uri
+     * @param selection 筛选条件
+     * @param selectionArgs 筛选参数
+     * @return 删除条数
+     */
+    int delete(Uri uri, String selection, String[] selectionArgs);
+
+    /**
+     * 查询数据条数
+     *
+     * @param uri Uri
+     * @return 条数
+     */
+    int queryCount(Uri uri);
+
+    /**
+     * 数据占用的存储空间，用于判断是否超过最大缓存
+     *
+     * @return 字节数
+     */
+    long getStorageSize();
+}
@@ -0,0 +1,99 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.data.adapter;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.sensorsdata.analytics.android.sdk.SALog;
+
+import java.io.File;
+
+/**
+ * 通过 SensorsDataContentProvider 访问数据库，支持多进程
+ */
+class ProviderDataAccessor implements IDataAccessor {
+    private final ContentResolver mContentResolver;
+    private final File mDatabaseFile;
+
+    ProviderDataAccessor(Context context) {
+        this.mContentResolver = context.getContentResolver();
+        this.mDatabaseFile = context.getDatabasePath(DbParams.DATABASE_NAME);
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        return mContentResolver.insert(uri, values);
+    }
+
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        return mContentResolver.bulkInsert(uri, values);
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        return mContentResolver.query(uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    @Override
+    public Cursor queryEvents(Uri uri, String afterId, int limit) {
+        // 按 _id 排序，保证每批数据是一段连续的 _id，可以按范围删除
+        if (afterId == null) {
+            return query(uri, null, null, null, "_id ASC LIMIT " + limit);
+        }
+        return query(uri, null, "_id > ?", new String[]{afterId}, "_id ASC LIMIT " + limit);
+    }
+
+    @Override
+    public boolean isPrioritySupported() {
+        return true;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return mContentResolver.delete(uri, selection, selectionArgs);
+    }
+
+    @Override
+    public int queryCount(Uri uri) {
+        Cursor cursor = null;
+        try {
+            // 使用 COUNT(*) 统计，避免将整张表加载到 Cursor 中
+            cursor = mContentResolver.query(uri, new String[]{"COUNT(*)"}, null, null, null);
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getInt(0);
+            }
+        } catch (Exception ex) {
+            SALog.printStackTrace(ex);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public long getStorageSize() {
+        return mDatabaseFile.exists() ? mDatabaseFile.length() : 0;
+    }
+}
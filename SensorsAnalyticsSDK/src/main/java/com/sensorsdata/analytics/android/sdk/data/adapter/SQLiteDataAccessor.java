@@ -0,0 +1,251 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.data.adapter;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.Build;
+
+import com.sensorsdata.analytics.android.sdk.SALog;
+import com.sensorsdata.analytics.android.sdk.data.SensorsDataDBHelper;
+
+import java.io.File;
+
+/**
+ * 在当前进程中直接访问数据库，不经过 ContentProvider。
+ * 与 SensorsDataContentProvider 共用同一个 SensorsDataDBHelper，插入、删除和计数使用预编译的 SQLiteStatement
+ */
+class SQLiteDataAccessor implements IDataAccessor {
+    private static final String TAG = "SA.SQLiteDataAccessor";
+    private static final String INSERT_EVENT = String.format("INSERT INTO %s (%s, %s, %s, %s) VALUES (?, ?, ?, ?)",
+            DbParams.TABLE_EVENTS, DbParams.KEY_DATA, DbParams.KEY_CREATED_AT, DbParams.KEY_CRC, DbParams.KEY_PRIORITY);
+    private static final String DELETE_EVENTS = String.format("DELETE FROM %s WHERE _id <= ?", DbParams.TABLE_EVENTS);
+    private static final String COUNT_EVENTS = String.format("SELECT COUNT(*) FROM %s", DbParams.TABLE_EVENTS);
+    private final Context mContext;
+    private final SQLiteOpenHelper mDbHelper;
+    private SQLiteDatabase mDatabase;
+    private SQLiteStatement mInsertStatement;
+    private SQLiteStatement mDeleteStatement;
+    private SQLiteStatement mCountStatement;
+
+    SQLiteDataAccessor(Context context) {
+        this.mContext = context;
+        this.mDbHelper = SensorsDataDBHelper.getInstance(context);
+    }
+
+    @Override
+    public synchronized Uri insert(Uri uri, ContentValues values) {
+        try {
+            SQLiteDatabase database = getWritableDatabase();
+            if (database == null) {
+                return uri;
+            }
+            String tableName = uri.getLastPathSegment();
+            if (DbParams.TABLE_EVENTS.equals(tableName)) {
+                long id = insertEvent(database, values);
+                if (id != -1) {
+                    return ContentUris.withAppendedId(uri, id);
+                }
+            } else if (DbParams.TABLE_CHANNEL_PERSISTENT.equals(tableName)) {
+                if (values.containsKey(DbParams.KEY_CHANNEL_EVENT_NAME)) {
+                    long id = database.insertWithOnConflict(tableName, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                    return ContentUris.withAppendedId(uri, id);
+                }
+            }
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+        return uri;
+    }
+
+    @Override
+    public synchronized int bulkInsert(Uri uri, ContentValues[] values) {
+        SQLiteDatabase database = getWritableDatabase();
+        if (database == null || !DbParams.TABLE_EVENTS.equals(uri.getLastPathSegment())) {
+            return 0;
+        }
+        int count = 0;
+        try {
+            database.beginTransaction();
+            for (ContentValues contentValues : values) {
+                if (insertEvent(database, contentValues) != -1) {
+                    count++;
+                }
+            }
+            database.setTransactionSuccessful();
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+            count = 0;
+        } finally {
+            try {
+                database.endTransaction();
+            } catch (Exception e) {
+                SALog.printStackTrace(e);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        try {
+            SQLiteDatabase database = getWritableDatabase();
+            if (database != null) {
+                return database.query(uri.getLastPathSegment(), projection, selection, selectionArgs, null, null, sortOrder);
+            }
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+        return null;
+    }
+
+    @Override
+    public Cursor queryEvents(Uri uri, String afterId, int limit) {
+        // 按 _id 排序，保证每批数据是一段连续的 _id，可以按范围删除
+        if (afterId == null) {
+            return query(uri, null, null, null, "_id ASC LIMIT " + limit);
+        }
+        return query(uri, null, "_id > ?", new String[]{afterId}, "_id ASC LIMIT " + limit);
+    }
+
+    @Override
+    public boolean isPrioritySupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized int delete(Uri uri, String selection, String[] selectionArgs) {
+        try {
+            SQLiteDatabase database = getWritableDatabase();
+            if (database == null) {
+                return 0;
+            }
+            String tableName = uri.getLastPathSegment();
+            // executeUpdateDelete 在 API 11 之后才支持
+            if (DbParams.TABLE_EVENTS.equals(tableName) && "_id <= ?".equals(selection)
+                    && selectionArgs != null && selectionArgs.length == 1
+                    && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                if (mDeleteStatement == null) {
+                    mDeleteStatement = database.compileStatement(DELETE_EVENTS);
+                }
+                mDeleteStatement.clearBindings();
+                mDeleteStatement.bindString(1, selectionArgs[0]);
+                return mDeleteStatement.executeUpdateDelete();
+            }
+            return database.delete(tableName, selection, selectionArgs);
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+        return 0;
+    }
+
+    @Override
+    public synchronized int queryCount(Uri uri) {
+        try {
+            SQLiteDatabase database = getWritableDatabase();
+            if (database == null) {
+                return 0;
+            }
+            if (DbParams.TABLE_EVENTS.equals(uri.getLastPathSegment())) {
+                if (mCountStatement == null) {
+                    mCountStatement = database.compileStatement(COUNT_EVENTS);
+                }
+                return (int) mCountStatement.simpleQueryForLong();
+            }
+            Cursor cursor = database.rawQuery("SELECT COUNT(*) FROM " + uri.getLastPathSegment(), null);
+            try {
+                if (cursor.moveToFirst()) {
+                    return cursor.getInt(0);
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+        return 0;
+    }
+
+    @Override
+    public long getStorageSize() {
+        File databaseFile = mContext.getDatabasePath(DbParams.DATABASE_NAME);
+        return databaseFile.exists() ? databaseFile.length() : 0;
+    }
+
+    private long insertEvent(SQLiteDatabase database, ContentValues values) {
+        if (!values.containsKey(DbParams.KEY_DATA) || !values.containsKey(DbParams.KEY_CREATED_AT)) {
+            return -1;
+        }
+        if (mInsertStatement == null) {
+            mInsertStatement = database.compileStatement(INSERT_EVENT);
+        }
+        mInsertStatement.clearBindings();
+        mInsertStatement.bindBlob(1, values.getAsByteArray(DbParams.KEY_DATA));
+        mInsertStatement.bindLong(2, values.getAsLong(DbParams.KEY_CREATED_AT));
+        Long crc = values.getAsLong(DbParams.KEY_CRC);
+        if (crc != null) {
+            mInsertStatement.bindLong(3, crc);
+        }
+        Integer priority = values.getAsInteger(DbParams.KEY_PRIORITY);
+        mInsertStatement.bindLong(4, priority == null ? 0 : priority);
+        return mInsertStatement.executeInsert();
+    }
+
+    /**
+     * 获取数据库，数据库文件被删除后重新打开，并重新编译 SQLiteStatement
+     *
+     * @return SQLiteDatabase
+     */
+    private SQLiteDatabase getWritableDatabase() {
+        try {
+            if (!mContext.getDatabasePath(DbParams.DATABASE_NAME).exists()) {
+                mDbHelper.close();
+            }
+            SQLiteDatabase database = mDbHelper.getWritableDatabase();
+            if (database != mDatabase) {
+                releaseStatements();
+                mDatabase = database;
+            }
+            return database;
+        } catch (Exception e) {
+            SALog.i(TAG, "Could not open the database", e);
+        }
+        return null;
+    }
+
+    private void releaseStatements() {
+        if (mInsertStatement != null) {
+            mInsertStatement.close();
+            mInsertStatement = null;
+        }
+        if (mDeleteStatement != null) {
+            mDeleteStatement.close();
+            mDeleteStatement = null;
+        }
+        if (mCountStatement != null) {
+            mCountStatement.close();
+            mCountStatement = null;
+        }
+    }
+}
@@ -0,0 +1,668 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.data.adapter;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+
+import com.sensorsdata.analytics.android.sdk.SALog;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * 使用追加写入的分段日志文件存储 Event 数据，其他表仍然通过数据库访问。
+ * <p>
+ * 每条记录的格式为：4 字节数据长度 + 4 字节 CRC32 + 8 字节 created_at + data，
+ * 记录在日志中的结束偏移量作为 _id，删除 _id 之前的数据只需要移动已上报的偏移量（cursor 文件），
+ * 分段文件中的数据全部上报后整个文件被删除。进程在写入过程中被杀时，启动后截断最后一个分段中不完整的记录。
+ * 只能在单个进程中使用。
+ */
+class SegmentLogDataAccessor implements IDataAccessor {
+    private static final String TAG = "SA.SegmentLogDataAccessor";
+    private static final String LOG_DIR = "sensorsdata_event_log";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CURSOR_FILE = "cursor";
+    private static final String CURSOR_TEMP_FILE = "cursor.tmp";
+    /* 单个分段文件的大小上限，超过后写入新的分段 */
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+    /* 记录头：4 字节数据长度 + 4 字节 CRC32 */
+    private static final int HEADER_SIZE = 8;
+    /* 数据中 created_at 占用的字节数 */
+    private static final int CREATED_AT_SIZE = 8;
+    /* 单条记录的长度上限，超过时认为记录头已损坏 */
+    private static final int MAX_RECORD_SIZE = 8 * 1024 * 1024;
+    /* 从数据库迁移数据时每次读取的条数 */
+    private static final int MIGRATE_BATCH_SIZE = 500;
+    private static final String[] EVENT_COLUMNS = {"_id", DbParams.KEY_DATA, DbParams.KEY_CREATED_AT};
+    private final File mLogDir;
+    private final IDataAccessor mDatabaseAccessor;
+    /* 分段文件，key 为分段在日志中的起始偏移量 */
+    private final TreeMap<Long, File> mSegments = new TreeMap<>();
+    /* 乱序确认的数据范围，key 为起始偏移量，value 为 {结束偏移量, 条数}，只保存在内存中 */
+    private final TreeMap<Long, long[]> mAcknowledgedRanges = new TreeMap<>();
+    private final CRC32 mCRC32 = new CRC32();
+    private final ByteBuffer mHeaderBuffer = ByteBuffer.allocate(HEADER_SIZE);
+    private RandomAccessFile mActiveFile;
+    private FileChannel mActiveChannel;
+    private long mActiveBaseOffset;
+    /* 已上报数据的结束偏移量 */
+    private long mReadOffset;
+    /* 日志末尾的偏移量 */
+    private long mEndOffset;
+    /* 未上报的记录条数 */
+    private int mCount;
+    private boolean mIsLoaded;
+
+    SegmentLogDataAccessor(Context context, IDataAccessor databaseAccessor) {
+        this.mLogDir = new File(context.getFilesDir(), LOG_DIR);
+        this.mDatabaseAccessor = databaseAccessor;
+    }
+
+    @Override
+    public synchronized Uri insert(Uri uri, ContentValues values) {
+        if (!isEventUri(uri)) {
+            return mDatabaseAccessor.insert(uri, values);
+        }
+        if (!ensureLoaded(uri)) {
+            return uri;
+        }
+        try {
+            long id = append(values);
+            mActiveChannel.force(false);
+            if (id != -1) {
+                return ContentUris.withAppendedId(uri, id);
+            }
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+            resetTail();
+        }
+        return uri;
+    }
+
+    @Override
+    public synchronized int bulkInsert(Uri uri, ContentValues[] values) {
+        if (!isEventUri(uri)) {
+            return mDatabaseAccessor.bulkInsert(uri, values);
+        }
+        if (!ensureLoaded(uri)) {
+            return 0;
+        }
+        int count = 0;
+        try {
+            for (ContentValues contentValues : values) {
+                if (append(contentValues) != -1) {
+                    count++;
+                }
+            }
+            mActiveChannel.force(false);
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+            resetTail();
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        if (!isEventUri(uri)) {
+            return mDatabaseAccessor.query(uri, projection, selection, selectionArgs, sortOrder);
+        }
+        SALog.i(TAG, "The event log only supports queryEvents");
+        return null;
+    }
+
+    @Override
+    public synchronized Cursor queryEvents(Uri uri, String afterId, int limit) {
+        if (!ensureLoaded(uri)) {
+            return null;
+        }
+        // 子进程通过 ContentProvider 写入数据库的数据
+        migrateFromDatabase(uri);
+        MatrixCursor cursor = new MatrixCursor(EVENT_COLUMNS);
+        long position = mReadOffset;
+        try {
+            if (afterId != null) {
+                position = Math.max(position, Long.parseLong(afterId));
+            }
+            while (cursor.getCount() < limit && position < mEndOffset) {
+                Long baseOffset = mSegments.floorKey(position);
+                if (baseOffset == null) {
+                    break;
+                }
+                RandomAccessFile file = new RandomAccessFile(mSegments.get(baseOffset), "r");
+                long segmentEnd;
+                try {
+                    FileChannel channel = file.getChannel();
+                    long segmentSize = channel.size();
+                    segmentEnd = baseOffset + segmentSize;
+                    while (cursor.getCount() < limit && position < segmentEnd) {
+                        // 跳过乱序确认的数据
+                        long[] range = mAcknowledgedRanges.get(position);
+                        if (range != null) {
+                            position = range[0];
+                            continue;
+                        }
+                        byte[] payload = readRecord(channel, position - baseOffset, segmentSize);
+                        if (payload == null) {
+                            SALog.i(TAG, "The segment " + baseOffset + " is corrupted, skip the rest of it");
+                            position = segmentEnd;
+                            break;
+                        }
+                        position += HEADER_SIZE + payload.length;
+                        long createdAt = ByteBuffer.wrap(payload).getLong();
+                        byte[] data = new byte[payload.length - CREATED_AT_SIZE];
+                        System.arraycopy(payload, CREATED_AT_SIZE, data, 0, data.length);
+                        cursor.addRow(new Object[]{position, data, createdAt});
+                    }
+                } finally {
+                    file.close();
+                }
+                if (position >= segmentEnd) {
+                    Long nextOffset = mSegments.higherKey(baseOffset);
+                    if (nextOffset == null) {
+                        break;
+                    }
+                    position = Math.max(position, nextOffset);
+                }
+            }
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+        return cursor;
+    }
+
+    @Override
+    public boolean isPrioritySupported() {
+        // 日志只能按写入顺序确认删除，不保存优先级
+        return false;
+    }
+
+    @Override
+    public synchronized int delete(Uri uri, String selection, String[] selectionArgs) {
+        if (!isEventUri(uri)) {
+            return mDatabaseAccessor.delete(uri, selection, selectionArgs);
+        }
+        if (!ensureLoaded(uri)) {
+            return 0;
+        }
+        try {
+            if (selection == null) {
+                mDatabaseAccessor.delete(uri, null, null);
+                return acknowledge(mEndOffset);
+            } else if ("_id <= ?".equals(selection) && selectionArgs != null && selectionArgs.length == 1) {
+                return acknowledge(Long.parseLong(selectionArgs[0]));
+            } else if ("_id > ? AND _id <= ?".equals(selection) && selectionArgs != null && selectionArgs.length == 2) {
+                return acknowledgeRange(Long.parseLong(selectionArgs[0]), Long.parseLong(selectionArgs[1]));
+            }
+            SALog.i(TAG, "The event log does not support selection: " + selection);
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+        return 0;
+    }
+
+    @Override
+    public synchronized int queryCount(Uri uri) {
+        if (!isEventUri(uri)) {
+            return mDatabaseAccessor.queryCount(uri);
+        }
+        if (!ensureLoaded(uri)) {
+            return 0;
+        }
+        migrateFromDatabase(uri);
+        return mCount;
+    }
+
+    @Override
+    public synchronized long getStorageSize() {
+        if (mIsLoaded && !mSegments.isEmpty()) {
+            return mEndOffset - mSegments.firstKey();
+        }
+        return 0;
+    }
+
+    private boolean isEventUri(Uri uri) {
+        return DbParams.TABLE_EVENTS.equals(uri.getLastPathSegment());
+    }
+
+    /**
+     * 首次使用时加载分段文件和已上报的偏移量，截断最后一个分段中不完整的记录，并迁移数据库中的数据
+     *
+     * @param uri Event 表的 Uri
+     * @return true 加载成功
+     */
+    private boolean ensureLoaded(Uri uri) {
+        if (mIsLoaded) {
+            return true;
+        }
+        try {
+            if (!mLogDir.exists() && !mLogDir.mkdirs()) {
+                SALog.i(TAG, "Could not create the event log directory");
+                return false;
+            }
+            File[] files = mLogDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    String name = file.getName();
+                    if (name.endsWith(SEGMENT_SUFFIX)) {
+                        try {
+                            mSegments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+                        } catch (NumberFormatException e) {
+                            SALog.i(TAG, "Unknown file in the event log directory: " + name);
+                        }
+                    }
+                }
+            }
+            long readOffset = readCursor();
+            if (mSegments.isEmpty()) {
+                long baseOffset = Math.max(readOffset, 0);
+                mSegments.put(baseOffset, segmentFile(baseOffset));
+            }
+            mActiveBaseOffset = mSegments.lastKey();
+            mActiveFile = new RandomAccessFile(mSegments.get(mActiveBaseOffset), "rw");
+            mActiveChannel = mActiveFile.getChannel();
+            long validSize = scanValidSize(mActiveChannel);
+            if (validSize < mActiveChannel.size()) {
+                SALog.i(TAG, "Truncate the incomplete record at the end of the event log");
+                mActiveChannel.truncate(validSize);
+                mActiveChannel.force(false);
+            }
+            mActiveChannel.position(validSize);
+            mEndOffset = mActiveBaseOffset + validSize;
+            // cursor 文件丢失或者损坏时从头上报，重复数据由服务端去重
+            mReadOffset = Math.min(Math.max(readOffset, mSegments.firstKey()), mEndOffset);
+            recycleSegments();
+            mCount = countRecords(mReadOffset, mEndOffset);
+            mIsLoaded = true;
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+            closeActiveSegment();
+            mSegments.clear();
+            return false;
+        }
+        migrateFromDatabase(uri);
+        return true;
+    }
+
+    /**
+     * 将数据库中的 Event 数据迁移到日志中，写入日志后再从数据库中删除
+     *
+     * @param uri Event 表的 Uri
+     */
+    private void migrateFromDatabase(Uri uri) {
+        try {
+            while (mDatabaseAccessor.queryCount(uri) > 0) {
+                Cursor cursor = mDatabaseAccessor.queryEvents(uri, null, MIGRATE_BATCH_SIZE);
+                if (cursor == null) {
+                    return;
+                }
+                String lastId = null;
+                try {
+                    int dataIndex = cursor.getColumnIndex(DbParams.KEY_DATA);
+                    int crcIndex = cursor.getColumnIndex(DbParams.KEY_CRC);
+                    CRC32 crc32 = new CRC32();
+                    while (cursor.moveToNext()) {
+                        lastId = cursor.getString(cursor.getColumnIndex("_id"));
+                        // 日志中只保存校验通过的数据
+                        byte[] data = DataOperation.readData(cursor, dataIndex, crcIndex, crc32);
+                        if (data == null) {
+                            continue;
+                        }
+                        ContentValues values = new ContentValues();
+                        values.put(DbParams.KEY_DATA, data);
+                        values.put(DbParams.KEY_CREATED_AT, cursor.getLong(cursor.getColumnIndex(DbParams.KEY_CREATED_AT)));
+                        append(values);
+                    }
+                } finally {
+                    cursor.close();
+                }
+                if (lastId == null) {
+                    return;
+                }
+                mActiveChannel.force(false);
+                if (mDatabaseAccessor.delete(uri, "_id <= ?", new String[]{lastId}) <= 0) {
+                    return;
+                }
+                SALog.i(TAG, "Migrated events from the database to the event log, last id = " + lastId);
+            }
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+            resetTail();
+        }
+    }
+
+    /**
+     * 追加一条记录，调用方负责 force
+     *
+     * @param values 数据
+     * @return 记录的结束偏移量，数据不完整时返回 -1
+     * @throws IOException 写入失败
+     */
+    private long append(ContentValues values) throws IOException {
+        byte[] bytes = values.getAsByteArray(DbParams.KEY_DATA);
+        Long createdAt = values.getAsLong(DbParams.KEY_CREATED_AT);
+        if (bytes == null || createdAt == null) {
+            return -1;
+        }
+        int length = CREATED_AT_SIZE + bytes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        buffer.putInt(length);
+        buffer.putInt(0);
+        buffer.putLong(createdAt);
+        buffer.put(bytes);
+        mCRC32.reset();
+        mCRC32.update(buffer.array(), HEADER_SIZE, length);
+        buffer.putInt(4, (int) mCRC32.getValue());
+        buffer.flip();
+        if (mEndOffset > mActiveBaseOffset && mEndOffset - mActiveBaseOffset + buffer.remaining() > SEGMENT_SIZE) {
+            rollSegment();
+        }
+        while (buffer.hasRemaining()) {
+            mActiveChannel.write(buffer);
+        }
+        mEndOffset += HEADER_SIZE + length;
+        mCount++;
+        return mEndOffset;
+    }
+
+    /**
+     * 当前分段写满后，从日志末尾开始一个新的分段
+     */
+    private void rollSegment() throws IOException {
+        mActiveChannel.force(false);
+        closeActiveSegment();
+        File file = segmentFile(mEndOffset);
+        mActiveFile = new RandomAccessFile(file, "rw");
+        mActiveChannel = mActiveFile.getChannel();
+        mActiveBaseOffset = mEndOffset;
+        mSegments.put(mActiveBaseOffset, file);
+    }
+
+    /**
+     * 写入失败后丢弃最后一条不完整的记录
+     */
+    private void resetTail() {
+        try {
+            if (mActiveChannel != null) {
+                mActiveChannel.truncate(mEndOffset - mActiveBaseOffset);
+                mActiveChannel.position(mEndOffset - mActiveBaseOffset);
+            }
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+    }
+
+    /**
+     * 标记 offset 之前的数据已上报，删除其中已经全部上报的分段
+     *
+     * @param offset 结束偏移量
+     * @return 本次标记的记录条数
+     */
+    private int acknowledge(long offset) throws IOException {
+        offset = Math.min(offset, mEndOffset);
+        if (offset <= mReadOffset) {
+            return 0;
+        }
+        // 与乱序确认的范围连续时，一起移动已上报的偏移量
+        Map.Entry<Long, long[]> range = mAcknowledgedRanges.floorEntry(offset);
+        while (range != null && range.getValue()[0] > offset) {
+            offset = range.getValue()[0];
+            range = mAcknowledgedRanges.floorEntry(offset);
+        }
+        int count = countRecords(mReadOffset, offset);
+        // 乱序确认时已经扣除的条数
+        Iterator<long[]> iterator = mAcknowledgedRanges.headMap(offset).values().iterator();
+        while (iterator.hasNext()) {
+            count -= iterator.next()[1];
+            iterator.remove();
+        }
+        writeCursor(offset);
+        mReadOffset = offset;
+        mCount = Math.max(0, mCount - count);
+        recycleSegments();
+        return count;
+    }
+
+    /**
+     * 标记 (afterOffset, lastOffset] 范围内的数据已上报，范围之前还有未确认的数据时只记录在内存中，
+     * 读取时跳过，等之前的数据确认后再一起移动已上报的偏移量
+     *
+     * @param afterOffset 起始偏移量
+     * @param lastOffset 结束偏移量
+     * @return 本次标记的记录条数
+     */
+    private int acknowledgeRange(long afterOffset, long lastOffset) throws IOException {
+        if (afterOffset <= mReadOffset) {
+            return acknowledge(lastOffset);
+        }
+        lastOffset = Math.min(lastOffset, mEndOffset);
+        if (lastOffset <= afterOffset || mAcknowledgedRanges.containsKey(afterOffset)) {
+            return 0;
+        }
+        int count = countRecords(afterOffset, lastOffset);
+        mAcknowledgedRanges.put(afterOffset, new long[]{lastOffset, count});
+        mCount = Math.max(0, mCount - count);
+        return count;
+    }
+
+    private void recycleSegments() {
+        while (mSegments.size() > 1) {
+            long baseOffset = mSegments.firstKey();
+            Long nextOffset = mSegments.higherKey(baseOffset);
+            if (nextOffset == null || nextOffset > mReadOffset) {
+                return;
+            }
+            File file = mSegments.remove(baseOffset);
+            if (!file.delete()) {
+                SALog.i(TAG, "Could not delete the segment " + file.getName());
+            }
+        }
+    }
+
+    /**
+     * 统计 [from, to) 之间的记录条数，只读取记录头
+     */
+    private int countRecords(long from, long to) throws IOException {
+        int count = 0;
+        long position = from;
+        while (position < to) {
+            Long baseOffset = mSegments.floorKey(position);
+            if (baseOffset == null) {
+                break;
+            }
+            RandomAccessFile file = new RandomAccessFile(mSegments.get(baseOffset), "r");
+            try {
+                FileChannel channel = file.getChannel();
+                long segmentEnd = Math.min(baseOffset + channel.size(), to);
+                while (position < segmentEnd) {
+                    int length = readLength(channel, position - baseOffset);
+                    if (length < 0 || position + HEADER_SIZE + length > segmentEnd) {
+                        position = segmentEnd;
+                        break;
+                    }
+                    position += HEADER_SIZE + length;
+                    count++;
+                }
+            } finally {
+                file.close();
+            }
+            Long nextOffset = mSegments.higherKey(baseOffset);
+            if (nextOffset == null) {
+                break;
+            }
+            position = Math.max(position, nextOffset);
+        }
+        return count;
+    }
+
+    /**
+     * 从分段开头校验每条记录，返回完整记录的总长度
+     */
+    private long scanValidSize(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            byte[] payload = readRecord(channel, position, size);
+            if (payload == null) {
+                break;
+            }
+            position += HEADER_SIZE + payload.length;
+        }
+        return position;
+    }
+
+    private int readLength(FileChannel channel, long position) throws IOException {
+        mHeaderBuffer.clear();
+        readFully(channel, mHeaderBuffer, position);
+        mHeaderBuffer.flip();
+        int length = mHeaderBuffer.getInt();
+        if (length < CREATED_AT_SIZE || length > MAX_RECORD_SIZE) {
+            return -1;
+        }
+        return length;
+    }
+
+    /**
+     * 读取并校验一条记录
+     *
+     * @return 记录的数据，记录不完整或者 CRC 校验失败时返回 null
+     */
+    private byte[] readRecord(FileChannel channel, long position, long size) throws IOException {
+        if (position + HEADER_SIZE > size) {
+            return null;
+        }
+        int length = readLength(channel, position);
+        if (length < 0 || position + HEADER_SIZE + length > size) {
+            return null;
+        }
+        long crc = mHeaderBuffer.getInt() & 0xFFFFFFFFL;
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, position + HEADER_SIZE);
+        mCRC32.reset();
+        mCRC32.update(payload.array(), 0, length);
+        if (mCRC32.getValue() != crc) {
+            return null;
+        }
+        return payload.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the segment");
+            }
+        }
+    }
+
+    /**
+     * 读取已上报的偏移量
+     *
+     * @return 偏移量，cursor 文件不存在或者损坏时返回 -1
+     */
+    private long readCursor() {
+        File file = new File(mLogDir, CURSOR_FILE);
+        if (!file.exists() || file.length() != 12) {
+            return -1;
+        }
+        FileInputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file);
+            byte[] bytes = new byte[12];
+            int read = 0;
+            while (read < bytes.length) {
+                int count = inputStream.read(bytes, read, bytes.length - read);
+                if (count < 0) {
+                    return -1;
+                }
+                read += count;
+            }
+            mCRC32.reset();
+            mCRC32.update(bytes, 0, 8);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long offset = buffer.getLong();
+            if ((buffer.getInt() & 0xFFFFFFFFL) == mCRC32.getValue()) {
+                return offset;
+            }
+            SALog.i(TAG, "The cursor of the event log is corrupted");
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    SALog.printStackTrace(e);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 先写临时文件再重命名，保证 cursor 文件不会只写入一半
+     */
+    private void writeCursor(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        buffer.putLong(offset);
+        mCRC32.reset();
+        mCRC32.update(buffer.array(), 0, 8);
+        buffer.putInt((int) mCRC32.getValue());
+        File tempFile = new File(mLogDir, CURSOR_TEMP_FILE);
+        FileOutputStream outputStream = new FileOutputStream(tempFile);
+        try {
+            outputStream.write(buffer.array());
+            outputStream.getFD().sync();
+        } finally {
+            outputStream.close();
+        }
+        if (!tempFile.renameTo(new File(mLogDir, CURSOR_FILE))) {
+            throw new IOException("Could not update the cursor of the event log");
+        }
+    }
+
+    private File segmentFile(long baseOffset) {
+        return new File(mLogDir, String.format(Locale.US, "%020d%s", baseOffset, SEGMENT_SUFFIX));
+    }
+
+    private void closeActiveSegment() {
+        if (mActiveFile != null) {
+            try {
+                mActiveFile.close();
+            } catch (IOException e) {
+                SALog.printStackTrace(e);
+            }
+            mActiveFile = null;
+            mActiveChannel = null;
+        }
+    }
+}
@@ -19,11 +19,17 @@ package com.sensorsdata.analytics.android.sdk.data.persistent;
 
 import com.sensorsdata.analytics.android.sdk.SALog;
 import com.sensorsdata.analytics.android.sdk.data.adapter.DbParams;
+import com.sensorsdata.analytics.android.sdk.util.PropertyKeyIndex;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
 public class PersistentSuperProperties extends PersistentIdentity<JSONObject> {
+    /**
+     * 公共属性的属性名索引，公共属性更新时失效，下次使用时重新创建
+     */
+    private PropertyKeyIndex mKeyIndex;
+
     public PersistentSuperProperties() {
         super(DbParams.PersistentName.SUPER_PROPERTIES, new PersistentSerializer<JSONObject>() {
             @Override
@@ -47,4 +53,24 @@ public class PersistentSuperProperties extends PersistentIdentity<JSONObject> {
             }
         });
     }
+
+    @Override
+    public void commit(JSONObject item) {
+        synchronized (this) {
+            mKeyIndex = null;
+        }
+        super.commit(item);
+    }
+
+    /**
+     * 获取当前公共属性的属性名索引，调用方需要与修改公共属性的操作在同一个锁 (this) 内
+     *
+     * @return 属性名索引
+     */
+    public synchronized PropertyKeyIndex getKeyIndex() {
+        if (mKeyIndex == null) {
+            mKeyIndex = PropertyKeyIndex.create(get());
+        }
+        return mKeyIndex;
+    }
 }
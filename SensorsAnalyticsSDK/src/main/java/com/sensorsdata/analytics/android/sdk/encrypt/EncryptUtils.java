@@ -24,13 +24,14 @@ import com.sensorsdata.analytics.android.sdk.util.Base64Coder;
 
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
-import java.security.Key;
+import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
 import java.security.SecureRandom;
-import java.security.interfaces.ECPublicKey;
-import java.security.spec.KeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
@@ -44,6 +45,16 @@ import javax.crypto.spec.SecretKeySpec;
 class EncryptUtils {
 
     private static final String TAG = "SensorsDataEncrypt";
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    /* Cipher 不是线程安全的，每个线程按 provider 和 transformation 缓存 */
+    private static final ThreadLocal<Map<String, Cipher>> CIPHER_CACHE = new ThreadLocal<Map<String, Cipher>>() {
+        @Override
+        protected Map<String, Cipher> initialValue() {
+            return new HashMap<>();
+        }
+    };
+    /* 解析后的公钥，公钥或加密类型变化时重新解析 */
+    private static volatile CachedPublicKey sCachedPublicKey;
 
     /**
      * 随机生成 AES/SM4 加密秘钥
@@ -75,20 +86,13 @@ class EncryptUtils {
             return null;
         }
         try {
-            byte[] keyBytes = Base64Coder.decode(publicKey);
-            KeySpec x509EncodedKeySpec = new X509EncodedKeySpec(keyBytes);
             Cipher cipher;
             if ("EC".equals(type)) {
-                KeyFactory keyFactory = KeyFactory.getInstance("EC", "SC");
-                ECPublicKey ecPublicKey = (ECPublicKey) keyFactory.generatePublic(x509EncodedKeySpec);
-                cipher = Cipher.getInstance("ECIES", "SC");
-                cipher.init(Cipher.ENCRYPT_MODE, ecPublicKey);
+                cipher = getCipher("ECIES", "SC");
             } else {
-                KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-                Key rsaPublicKey = keyFactory.generatePublic(x509EncodedKeySpec);
-                cipher = Cipher.getInstance("RSA/None/PKCS1Padding");
-                cipher.init(Cipher.ENCRYPT_MODE, rsaPublicKey);
+                cipher = getCipher("RSA/None/PKCS1Padding", null);
             }
+            cipher.init(Cipher.ENCRYPT_MODE, getPublicKey(publicKey, type));
 
             int contentLen = content.length;
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
@@ -129,12 +133,11 @@ class EncryptUtils {
             return null;
         }
         try {
-            SecureRandom random = new SecureRandom();
             // 随机生成初始化向量
             byte[] ivBytes = new byte[16];
-            random.nextBytes(ivBytes);
+            SECURE_RANDOM.nextBytes(ivBytes);
             SecretKeySpec secretKeySpec = new SecretKeySpec(key, mode.algorithm);
-            Cipher cipher = Cipher.getInstance(mode.transformation);
+            Cipher cipher = getCipher(mode.transformation, null);
             cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, new IvParameterSpec(ivBytes));
 
             byte[] encryptedBytes = cipher.doFinal(contentBytes);
@@ -148,4 +151,62 @@ class EncryptUtils {
         }
         return null;
     }
+
+    /**
+     * 获取当前线程缓存的 Cipher，每次使用前需要重新 init
+     *
+     * @param transformation 加密方式
+     * @param provider provider，null 表示使用默认 provider
+     * @return Cipher
+     * @throws GeneralSecurityException 不支持的加密方式
+     */
+    static Cipher getCipher(String transformation, String provider) throws GeneralSecurityException {
+        Map<String, Cipher> ciphers = CIPHER_CACHE.get();
+        String cacheKey = provider == null ? transformation : provider + "/" + transformation;
+        Cipher cipher = ciphers.get(cacheKey);
+        if (cipher == null) {
+            cipher = provider == null ? Cipher.getInstance(transformation) : Cipher.getInstance(transformation, provider);
+            ciphers.put(cacheKey, cipher);
+        }
+        return cipher;
+    }
+
+    /**
+     * 获取解析后的公钥，公钥和加密类型不变时只解析一次
+     *
+     * @param publicKey Base64 编码的公钥
+     * @param type 加密类型 EC or RSA
+     * @return PublicKey
+     * @throws GeneralSecurityException 公钥格式错误
+     */
+    static PublicKey getPublicKey(String publicKey, String type) throws GeneralSecurityException {
+        CachedPublicKey cachedPublicKey = sCachedPublicKey;
+        if (cachedPublicKey != null && cachedPublicKey.encodedKey.equals(publicKey) && cachedPublicKey.type.equals(type)) {
+            return cachedPublicKey.publicKey;
+        }
+        X509EncodedKeySpec x509EncodedKeySpec = new X509EncodedKeySpec(Base64Coder.decode(publicKey));
+        KeyFactory keyFactory = "EC".equals(type) ? KeyFactory.getInstance("EC", "SC") : KeyFactory.getInstance("RSA");
+        PublicKey key = keyFactory.generatePublic(x509EncodedKeySpec);
+        sCachedPublicKey = new CachedPublicKey(publicKey, type, key);
+        return key;
+    }
+
+    /**
+     * 公钥更新后清除缓存
+     */
+    static void clearPublicKeyCache() {
+        sCachedPublicKey = null;
+    }
+
+    private static class CachedPublicKey {
+        final String encodedKey;
+        final String type;
+        final PublicKey publicKey;
+
+        CachedPublicKey(String encodedKey, String type, PublicKey publicKey) {
+            this.encodedKey = encodedKey;
+            this.type = type;
+            this.publicKey = publicKey;
+        }
+    }
 }
@@ -0,0 +1,258 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.encrypt;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.text.TextUtils;
+
+import com.sensorsdata.analytics.android.sdk.SALog;
+import com.sensorsdata.analytics.android.sdk.util.Base64Coder;
+
+import java.nio.ByteBuffer;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 使用会话密钥加密保存在本地的 Event 数据。
+ * 会话密钥为随机生成的 AES 密钥，在 Event 表为空时轮换，表中的数据始终使用同一个密钥；
+ * 每条数据以 AES/CTR 加密，初始化向量为每条数据随机生成的 16 字节，不需要填充和 gzip。
+ * CTR 模式按 16 字节的块递增整个初始化向量，使用递增序号作为初始化向量会使相邻数据的密钥流重叠。
+ * 加密后的数据格式为：标识(1) + 密钥 ID(4) + 初始化向量(16) + 密文。
+ * 会话密钥不以明文保存：Android 6.0 及以上使用 Android Keystore 中不可导出的密钥以 AES/GCM 加密后保存；
+ * 更低版本或者 Keystore 不可用时使用 AESSecretManager 加密，此时加密密钥与数据在同一个沙盒中，只能避免直接读取
+ */
+public class EventStoreCipher {
+    private static final String TAG = "SA.EventStoreCipher";
+    private static final String SP_FILE = "com.sensorsdata.analytics.android.sdk.event_store";
+    private static final String SP_KEY = "session_key";
+    private static final String SP_KEY_ID = "session_key_id";
+    private static final String ALGORITHM = "AES";
+    private static final String TRANSFORMATION = "AES/CTR/NoPadding";
+    /* 加密数据的标识，明文 JSON 数据以 '{' 开头 */
+    private static final byte MAGIC = 0x01;
+    private static final int IV_SIZE = 16;
+    private static final int HEADER_SIZE = 1 + 4 + IV_SIZE;
+    private static final String KEY_STORE = "AndroidKeyStore";
+    private static final String KEY_STORE_ALIAS = "com.sensorsdata.analytics.android.sdk.event_store";
+    private static final String WRAP_TRANSFORMATION = "AES/GCM/NoPadding";
+    /* 保存的会话密钥前缀：Android Keystore 加密、AESSecretManager 加密；没有前缀的是旧版本明文保存的密钥 */
+    private static final String PREFIX_KEY_STORE = "ks:";
+    private static final String PREFIX_AES = "aes:";
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    private final SecretKeySpec mKey;
+    private final int mKeyId;
+    private Cipher mEncryptCipher;
+    private Cipher mDecryptCipher;
+
+    private EventStoreCipher(byte[] key, int keyId) {
+        this.mKey = new SecretKeySpec(key, ALGORITHM);
+        this.mKeyId = keyId;
+    }
+
+    /**
+     * 加载会话密钥，不存在或者需要轮换时生成新的密钥
+     *
+     * @param context Context
+     * @param isRotate true 表示生成新的密钥，只能在 Event 表为空时轮换
+     * @return EventStoreCipher，生成密钥失败时返回 null
+     */
+    public static EventStoreCipher create(Context context, boolean isRotate) {
+        try {
+            SharedPreferences sp = context.getSharedPreferences(SP_FILE, Context.MODE_PRIVATE);
+            String key = sp.getString(SP_KEY, "");
+            if (isRotate || TextUtils.isEmpty(key)) {
+                KeyGenerator keyGen = KeyGenerator.getInstance(ALGORITHM);
+                keyGen.init(128);
+                byte[] keyBytes = keyGen.generateKey().getEncoded();
+                int keyId = SECURE_RANDOM.nextInt();
+                String wrappedKey = wrapKey(context, keyBytes);
+                // 同步写入，保证已加密的数据在进程被杀后仍然可以解密
+                if (wrappedKey == null || !sp.edit().putString(SP_KEY, wrappedKey).putInt(SP_KEY_ID, keyId).commit()) {
+                    return null;
+                }
+                return new EventStoreCipher(keyBytes, keyId);
+            }
+            byte[] keyBytes = unwrapKey(context, key);
+            if (keyBytes == null) {
+                return null;
+            }
+            if (!key.startsWith(PREFIX_KEY_STORE) && !key.startsWith(PREFIX_AES)) {
+                // 旧版本明文保存的密钥重新加密后保存
+                String wrappedKey = wrapKey(context, keyBytes);
+                if (wrappedKey != null) {
+                    sp.edit().putString(SP_KEY, wrappedKey).commit();
+                }
+            }
+            return new EventStoreCipher(keyBytes, sp.getInt(SP_KEY_ID, 0));
+        } catch (Exception e) {
+            SALog.i(TAG, "create session key failed", e);
+        }
+        return null;
+    }
+
+    /**
+     * 加密会话密钥，优先使用 Android Keystore
+     *
+     * @param context Context
+     * @param keyBytes 会话密钥
+     * @return 带前缀的密文，失败时返回 null
+     */
+    private static String wrapKey(Context context, byte[] keyBytes) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            try {
+                Cipher cipher = Cipher.getInstance(WRAP_TRANSFORMATION);
+                cipher.init(Cipher.ENCRYPT_MODE, getKeyStoreKey());
+                byte[] iv = cipher.getIV();
+                byte[] encrypted = cipher.doFinal(keyBytes);
+                byte[] wrapped = new byte[1 + iv.length + encrypted.length];
+                ByteBuffer.wrap(wrapped).put((byte) iv.length).put(iv).put(encrypted);
+                return PREFIX_KEY_STORE + new String(Base64Coder.encode(wrapped));
+            } catch (Exception e) {
+                SALog.i(TAG, "wrap session key with Android Keystore failed", e);
+            }
+        }
+        AESSecretManager secretManager = AESSecretManager.getInstance();
+        secretManager.initSecretKey(context);
+        String plainKey = new String(Base64Coder.encode(keyBytes));
+        String encryptedKey = secretManager.encryptAES(plainKey);
+        // AESSecretManager 没有密钥时返回原文
+        if (TextUtils.isEmpty(encryptedKey) || encryptedKey.equals(plainKey)) {
+            return null;
+        }
+        return PREFIX_AES + encryptedKey;
+    }
+
+    /**
+     * 解密保存的会话密钥
+     *
+     * @param context Context
+     * @param key 保存的会话密钥
+     * @return 会话密钥，解密失败时返回 null
+     * @throws Exception 解密异常
+     */
+    private static byte[] unwrapKey(Context context, String key) throws Exception {
+        if (key.startsWith(PREFIX_KEY_STORE)) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                return null;
+            }
+            byte[] wrapped = Base64Coder.decode(key.substring(PREFIX_KEY_STORE.length()));
+            int ivLength = wrapped[0];
+            Cipher cipher = Cipher.getInstance(WRAP_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, getKeyStoreKey(), new GCMParameterSpec(128, wrapped, 1, ivLength));
+            return cipher.doFinal(wrapped, 1 + ivLength, wrapped.length - 1 - ivLength);
+        }
+        if (key.startsWith(PREFIX_AES)) {
+            AESSecretManager secretManager = AESSecretManager.getInstance();
+            secretManager.initSecretKey(context);
+            String plainKey = secretManager.decryptAES(key.substring(PREFIX_AES.length()));
+            return TextUtils.isEmpty(plainKey) ? null : Base64Coder.decode(plainKey);
+        }
+        return Base64Coder.decode(key);
+    }
+
+    /**
+     * 获取 Android Keystore 中用于加密会话密钥的密钥，不存在时生成
+     *
+     * @return SecretKey
+     * @throws Exception Keystore 不可用
+     */
+    @TargetApi(Build.VERSION_CODES.M)
+    private static SecretKey getKeyStoreKey() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KEY_STORE);
+        keyStore.load(null);
+        Key key = keyStore.getKey(KEY_STORE_ALIAS, null);
+        if (key instanceof SecretKey) {
+            return (SecretKey) key;
+        }
+        KeyGenerator keyGenerator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEY_STORE);
+        keyGenerator.init(new KeyGenParameterSpec.Builder(KEY_STORE_ALIAS, KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .build());
+        return keyGenerator.generateKey();
+    }
+
+    /**
+     * 是否为会话密钥加密的数据
+     *
+     * @param data 数据
+     * @return true 是加密的数据
+     */
+    public static boolean isSealed(byte[] data) {
+        return data != null && data.length > HEADER_SIZE && data[0] == MAGIC;
+    }
+
+    /**
+     * 加密数据
+     *
+     * @param data 明文
+     * @return 加密后的数据，失败时返回 null
+     */
+    public synchronized byte[] seal(byte[] data) {
+        try {
+            if (mEncryptCipher == null) {
+                mEncryptCipher = Cipher.getInstance(TRANSFORMATION);
+            }
+            byte[] iv = new byte[IV_SIZE];
+            SECURE_RANDOM.nextBytes(iv);
+            mEncryptCipher.init(Cipher.ENCRYPT_MODE, mKey, new IvParameterSpec(iv));
+            byte[] sealed = new byte[HEADER_SIZE + data.length];
+            ByteBuffer.wrap(sealed).put(MAGIC).putInt(mKeyId).put(iv);
+            mEncryptCipher.doFinal(data, 0, data.length, sealed, HEADER_SIZE);
+            return sealed;
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+        return null;
+    }
+
+    /**
+     * 解密数据
+     *
+     * @param sealed 加密后的数据
+     * @return 明文，不是当前会话密钥加密的数据或者解密失败时返回 null
+     */
+    public synchronized byte[] open(byte[] sealed) {
+        if (!isSealed(sealed) || ByteBuffer.wrap(sealed, 1, 4).getInt() != mKeyId) {
+            return null;
+        }
+        try {
+            if (mDecryptCipher == null) {
+                mDecryptCipher = Cipher.getInstance(TRANSFORMATION);
+            }
+            mDecryptCipher.init(Cipher.DECRYPT_MODE, mKey, new IvParameterSpec(sealed, 5, IV_SIZE));
+            return mDecryptCipher.doFinal(sealed, HEADER_SIZE, sealed.length - HEADER_SIZE);
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+        return null;
+    }
+}
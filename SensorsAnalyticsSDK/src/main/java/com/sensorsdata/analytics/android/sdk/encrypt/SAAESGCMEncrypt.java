@@ -0,0 +1,148 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.encrypt;
+
+import android.os.Build;
+import android.util.Base64;
+import android.util.Base64OutputStream;
+
+import com.sensorsdata.analytics.android.sdk.SALog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES/GCM 加密，对称密钥的协商方式与 SARSAEncrypt、SAECEncrypt 相同（ekey、pkv）。
+ * 每次加密（按条加密时为每条数据，整批加密时为每批数据）随机生成 12 字节的 nonce，
+ * 密文格式为 Base64(nonce + 密文 + 16 字节认证标签)，服务端解密时同时校验数据完整性
+ */
+class SAAESGCMEncrypt implements SAStreamEncryptListener {
+    static final String SYMMETRIC_ENCRYPT_TYPE = "AES_GCM";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int NONCE_SIZE = 12;
+    private static final int TAG_SIZE_BITS = 128;
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    private final String mAsymmetricEncryptType;
+
+    /**
+     * 对称密钥
+     */
+    byte[] aesKey;
+
+    /**
+     * 加密后的对称密钥
+     */
+    String mEncryptKey;
+
+    SAAESGCMEncrypt(String asymmetricEncryptType) {
+        this.mAsymmetricEncryptType = asymmetricEncryptType;
+    }
+
+    /**
+     * 当前系统是否支持 AES/GCM
+     *
+     * @return true 支持
+     */
+    static boolean isSupported() {
+        try {
+            Cipher.getInstance(TRANSFORMATION);
+            return true;
+        } catch (Exception e) {
+            SALog.i("SA.SAAESGCMEncrypt", "AES/GCM is not supported: " + e);
+        }
+        return false;
+    }
+
+    @Override
+    public String symmetricEncryptType() {
+        return SYMMETRIC_ENCRYPT_TYPE;
+    }
+
+    @Override
+    public String encryptEvent(byte[] event) {
+        if (aesKey == null || event == null) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(event.length * 4 / 3 + 64);
+            OutputStream outputStream = encryptEventStream(buffer);
+            outputStream.write(event);
+            outputStream.close();
+            return buffer.toString("US-ASCII");
+        } catch (Exception ex) {
+            SALog.printStackTrace(ex);
+        }
+        return null;
+    }
+
+    @Override
+    public OutputStream encryptEventStream(OutputStream out) throws IOException {
+        if (aesKey == null) {
+            throw new IOException("The symmetric key is not ready.");
+        }
+        try {
+            byte[] nonce = new byte[NONCE_SIZE];
+            SECURE_RANDOM.nextBytes(nonce);
+            Cipher cipher = EncryptUtils.getCipher(TRANSFORMATION, null);
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(aesKey, "AES"), createParameterSpec(nonce));
+            OutputStream base64OutputStream = new Base64OutputStream(out, Base64.NO_WRAP);
+            base64OutputStream.write(nonce);
+            return new CipherOutputStream(base64OutputStream, cipher);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e.toString());
+        }
+    }
+
+    @Override
+    public String asymmetricEncryptType() {
+        return mAsymmetricEncryptType;
+    }
+
+    @Override
+    public String encryptSymmetricKeyWithPublicKey(String publicKey) {
+        if (mEncryptKey == null) {
+            try {
+                aesKey = EncryptUtils.generateSymmetricKey(SymmetricEncryptMode.AES);
+                mEncryptKey = EncryptUtils.encryptAESKey(publicKey, aesKey, mAsymmetricEncryptType);
+            } catch (NoSuchAlgorithmException e) {
+                SALog.printStackTrace(e);
+                return null;
+            }
+        }
+        return mEncryptKey;
+    }
+
+    private static AlgorithmParameterSpec createParameterSpec(byte[] nonce) {
+        // GCMParameterSpec 在 API 19 之后才支持，之前的版本使用 IvParameterSpec，认证标签默认为 128 位
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return new GCMParameterSpec(TAG_SIZE_BITS, nonce);
+        }
+        return new IvParameterSpec(nonce);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.encrypt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 支持流式加密的加密插件，整批上报时数据压缩后直接写入加密流，不生成完整的明文数组和压缩数据。
+ * 密文仍然完整保存在内存中：上报请求需要在请求体之前发送 crc（表单参数或请求头），无法边加密边写入请求体
+ */
+public interface SAStreamEncryptListener extends SAEncryptListener {
+    /**
+     * 创建加密流，写入的数据（gzip 后的埋点信息）加密后以 Base64 编码写入 out，
+     * 格式与 {@link #encryptEvent(byte[])} 的返回值相同。关闭返回的流时完成加密并关闭 out
+     *
+     * @param out 输出流
+     * @return 加密流
+     * @throws IOException 创建加密流失败
+     */
+    OutputStream encryptEventStream(OutputStream out) throws IOException;
+}
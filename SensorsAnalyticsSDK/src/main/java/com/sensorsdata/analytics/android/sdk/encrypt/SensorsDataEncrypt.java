@@ -23,10 +23,13 @@ import android.text.TextUtils;
 import com.sensorsdata.analytics.android.sdk.SALog;
 import com.sensorsdata.analytics.android.sdk.plugin.encrypt.SAStoreManager;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.zip.GZIPOutputStream;
 
@@ -34,6 +37,7 @@ public class SensorsDataEncrypt {
     private static final String SP_SECRET_KEY = "secret_key";
     private static final int KEY_VERSION_DEFAULT = 0;
     private static final String TAG = "SA.SensorsDataEncrypt";
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
     private List<SAEncryptListener> mListeners;
     private SecreteKey mSecreteKey;
 
@@ -47,8 +51,15 @@ public class SensorsDataEncrypt {
         this.mContext = context;
         this.mListeners = listeners;
         mListeners.add(new SARSAEncrypt());
+        boolean isGCMSupported = SAAESGCMEncrypt.isSupported();
+        if (isGCMSupported) {
+            mListeners.add(new SAAESGCMEncrypt("RSA"));
+        }
         if (SensorsDataEncrypt.isECEncrypt()) {
             mListeners.add(new SAECEncrypt());
+            if (isGCMSupported) {
+                mListeners.add(new SAAESGCMEncrypt("EC"));
+            }
         }
     }
 
@@ -75,29 +86,7 @@ public class SensorsDataEncrypt {
      */
     public JSONObject encryptTrackData(JSONObject jsonObject) {
         try {
-            if (isSecretKeyNull(mSecreteKey)) {
-                mSecreteKey = loadSecretKey();
-                if (isSecretKeyNull(mSecreteKey)) {
-                    return jsonObject;
-                }
-            }
-
-            if (!isMatchEncryptType(mEncryptListener, mSecreteKey)) {
-                mEncryptListener = getEncryptListener(mSecreteKey);
-            }
-
-            if (mEncryptListener == null) {
-                return jsonObject;
-            }
-
-            //获取公钥加密后的对称密钥
-            String publicKey = mSecreteKey.key;
-            if (publicKey.startsWith("EC:")) {
-                publicKey = publicKey.substring(publicKey.indexOf(":") + 1);
-            }
-
-            String encryptedKey = mEncryptListener.encryptSymmetricKeyWithPublicKey(publicKey);
-
+            String encryptedKey = getEncryptedSymmetricKey();
             if (TextUtils.isEmpty(encryptedKey)) {
                 return jsonObject;
             }
@@ -117,6 +106,95 @@ public class SensorsDataEncrypt {
         return jsonObject;
     }
 
+    /**
+     * 将一批数据整体压缩后加密一次
+     *
+     * @param events 一批数据
+     * @return {ekey, pkv, payloads}，payloads 只有一个元素，解密解压后为 JSON 数组；没有公钥或加密失败时返回 null
+     */
+    public JSONObject encryptBatchData(JSONArray events) {
+        try {
+            String encryptedKey = getEncryptedSymmetricKey();
+            if (TextUtils.isEmpty(encryptedKey)) {
+                return null;
+            }
+            String encryptData;
+            if (mEncryptListener instanceof SAStreamEncryptListener) {
+                encryptData = encryptEventStream((SAStreamEncryptListener) mEncryptListener, events);
+            } else {
+                encryptData = mEncryptListener.encryptEvent(gzipEventData(events.toString()));
+            }
+            if (TextUtils.isEmpty(encryptData)) {
+                return null;
+            }
+            JSONObject dataJson = new JSONObject();
+            dataJson.put("ekey", encryptedKey);
+            dataJson.put("pkv", mSecreteKey.version);
+            dataJson.put("payloads", new JSONArray().put(encryptData));
+            return dataJson;
+        } catch (Exception ex) {
+            SALog.printStackTrace(ex);
+        }
+        return null;
+    }
+
+    /**
+     * 逐条写入 gzip 压缩流，压缩后的数据直接写入加密流。
+     * 密文写入内存后再拼接到上报数据中，因为上报时需要先计算整个请求体的 crc
+     *
+     * @param listener 支持流式加密的插件
+     * @param events 一批数据
+     * @return Base64 编码的密文
+     * @throws IOException 加密失败
+     */
+    private String encryptEventStream(SAStreamEncryptListener listener, JSONArray events) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(listener.encryptEventStream(buffer));
+        try {
+            gzipOutputStream.write('[');
+            for (int i = 0; i < events.length(); i++) {
+                if (i > 0) {
+                    gzipOutputStream.write(',');
+                }
+                gzipOutputStream.write(String.valueOf(events.opt(i)).getBytes(CHARSET_UTF8));
+            }
+            gzipOutputStream.write(']');
+        } finally {
+            gzipOutputStream.close();
+        }
+        return buffer.toString("US-ASCII");
+    }
+
+    /**
+     * 获取公钥加密后的对称密钥，同时确定加密插件
+     *
+     * @return 加密后的对称密钥，没有可用的公钥或加密插件时返回 null
+     * @throws JSONException 读取密钥异常
+     */
+    private String getEncryptedSymmetricKey() throws JSONException {
+        if (isSecretKeyNull(mSecreteKey)) {
+            mSecreteKey = loadSecretKey();
+            if (isSecretKeyNull(mSecreteKey)) {
+                return null;
+            }
+        }
+
+        if (!isMatchEncryptType(mEncryptListener, mSecreteKey)) {
+            mEncryptListener = getEncryptListener(mSecreteKey);
+        }
+
+        if (mEncryptListener == null) {
+            return null;
+        }
+
+        //获取公钥加密后的对称密钥
+        String publicKey = mSecreteKey.key;
+        if (publicKey.startsWith("EC:")) {
+            publicKey = publicKey.substring(publicKey.indexOf(":") + 1);
+        }
+        return mEncryptListener.encryptSymmetricKeyWithPublicKey(publicKey);
+    }
+
     /**
      * 保存密钥
      *
@@ -128,6 +206,7 @@ public class SensorsDataEncrypt {
 
             SAEncryptListener encryptListener = getEncryptListener(secreteKey);
             if (encryptListener != null) {
+                EncryptUtils.clearPublicKeyCache();
                 if (mPersistentSecretKey != null) {
                     mPersistentSecretKey.saveSecretKey(secreteKey);
                     // 同时删除本地的密钥
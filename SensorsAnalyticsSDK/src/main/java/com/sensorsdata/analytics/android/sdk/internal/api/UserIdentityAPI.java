@@ -30,6 +30,7 @@ import com.sensorsdata.analytics.android.sdk.data.persistent.PersistentLoader;
 import com.sensorsdata.analytics.android.sdk.exceptions.InvalidDataException;
 import com.sensorsdata.analytics.android.sdk.internal.beans.EventType;
 import com.sensorsdata.analytics.android.sdk.listener.SAEventListener;
+import com.sensorsdata.analytics.android.sdk.plugin.encrypt.SAStoreManager;
 import com.sensorsdata.analytics.android.sdk.util.AppInfoUtils;
 import com.sensorsdata.analytics.android.sdk.util.SAContextManager;
 import com.sensorsdata.analytics.android.sdk.util.SADataHelper;
@@ -199,13 +200,19 @@ public final class UserIdentityAPI implements IUserIdentityAPI {
     public void login(String loginId, JSONObject properties) {
         try {
             mLoginIdValue = loginId;
-            DbAdapter.getInstance().commitLoginId(loginId);
-            // 先同步 identities ，多进程在 A 进程修改了，再次进入 B 进程调用 login
-            mLoginIdentities = new JSONObject(DbAdapter.getInstance().getIdentities());
-            DbAdapter.getInstance().commitLoginIdKey(LOGIN_ID_KEY);
-            // 更新 identities 相关信息
-            updateIdentities(LOGIN_ID_KEY, loginId);
-            clearIdentities(Arrays.asList(ANDROID_ID, ANDROID_UUID, LOGIN_ID_KEY));
+            // loginId、loginIdKey 与 identities 合并为一次写入
+            SAStoreManager.getInstance().beginBatchWrite();
+            try {
+                DbAdapter.getInstance().commitLoginId(loginId);
+                // 先同步 identities ，多进程在 A 进程修改了，再次进入 B 进程调用 login
+                mLoginIdentities = new JSONObject(DbAdapter.getInstance().getIdentities());
+                DbAdapter.getInstance().commitLoginIdKey(LOGIN_ID_KEY);
+                // 更新 identities 相关信息
+                updateIdentities(LOGIN_ID_KEY, loginId);
+                clearIdentities(Arrays.asList(ANDROID_ID, ANDROID_UUID, LOGIN_ID_KEY));
+            } finally {
+                SAStoreManager.getInstance().endBatchWrite();
+            }
             // 通知调用 login 接口
             if (mSAContextManager.getEventListenerList() != null) {
                 for (SAEventListener eventListener : mSAContextManager.getEventListenerList()) {
@@ -226,30 +233,36 @@ public final class UserIdentityAPI implements IUserIdentityAPI {
     public void logout() {
         try {
             synchronized (mLoginIdLock) {
-                SALog.i(TAG, "logout is called");
-                if (!TextUtils.isEmpty(getLoginId())) {
-                    try {
-                        DbAdapter.getInstance().commitLoginId(null);
-                        mLoginIdValue = null;
-                    } catch (Exception ex) {
-                        SALog.printStackTrace(ex);
-                    }
+                // loginId、loginIdKey 与 identities 合并为一次写入
+                SAStoreManager.getInstance().beginBatchWrite();
+                try {
+                    SALog.i(TAG, "logout is called");
+                    if (!TextUtils.isEmpty(getLoginId())) {
+                        try {
+                            DbAdapter.getInstance().commitLoginId(null);
+                            mLoginIdValue = null;
+                        } catch (Exception ex) {
+                            SALog.printStackTrace(ex);
+                        }
 
-                    // 进行通知调用 logout 接口
-                    if (mSAContextManager.getEventListenerList() != null) {
-                        for (SAEventListener eventListener : mSAContextManager.getEventListenerList()) {
-                            try {
-                                eventListener.logout();
-                            } catch (Exception e) {
-                                SALog.printStackTrace(e);
+                        // 进行通知调用 logout 接口
+                        if (mSAContextManager.getEventListenerList() != null) {
+                            for (SAEventListener eventListener : mSAContextManager.getEventListenerList()) {
+                                try {
+                                    eventListener.logout();
+                                } catch (Exception e) {
+                                    SALog.printStackTrace(e);
+                                }
                             }
                         }
+                        TrackMonitor.getInstance().callLogout();
+                        SALog.i(TAG, "Clean loginId");
                     }
-                    TrackMonitor.getInstance().callLogout();
-                    SALog.i(TAG, "Clean loginId");
+                    DbAdapter.getInstance().commitLoginIdKey("");
+                    clearIdentities(Arrays.asList(ANDROID_ID, ANDROID_UUID));
+                } finally {
+                    SAStoreManager.getInstance().endBatchWrite();
                 }
-                DbAdapter.getInstance().commitLoginIdKey("");
-                clearIdentities(Arrays.asList(ANDROID_ID, ANDROID_UUID));
             }
         } catch (Exception ex) {
             SALog.printStackTrace(ex);
@@ -0,0 +1,29 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.listener;
+
+import com.sensorsdata.analytics.android.sdk.SAFlushResult;
+
+public interface SAFlushCallback {
+    /**
+     * 上报结束后的回调，在 SDK 的上报线程中执行，不要做耗时操作
+     *
+     * @param result 上报结果
+     */
+    void onFlushFinished(SAFlushResult result);
+}
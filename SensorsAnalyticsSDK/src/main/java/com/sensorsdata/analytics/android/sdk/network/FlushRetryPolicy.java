@@ -0,0 +1,170 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.network;
+
+import com.sensorsdata.analytics.android.sdk.SALog;
+import com.sensorsdata.analytics.android.sdk.plugin.encrypt.AbstractStoreManager;
+import com.sensorsdata.analytics.android.sdk.plugin.encrypt.SAStoreManager;
+
+import java.util.Random;
+
+/**
+ * 上报失败后的重试策略：
+ * 1. 连续失败时按指数退避计算重试时间，并在 [0, 退避时间] 之间随机取值（full jitter），避免大量设备同时重试；
+ * 2. 连续失败 CIRCUIT_BREAKER_THRESHOLD 次后熔断，之后每隔 CIRCUIT_OPEN_DELAY 只尝试一次；
+ * 3. 上报成功或网络发生变化时重置。
+ * 失败次数和下次重试时间保存在本地，进程重启后仍然生效。
+ * 只限制按条数、时间间隔自动触发的上报，调用 flush 接口主动上报时不受限制
+ */
+public class FlushRetryPolicy {
+    private static final String TAG = "SA.FlushRetryPolicy";
+    private static final String SHARED_PREF_FLUSH_FAILURE_COUNT = "sensorsdata.flush.failure_count";
+    private static final String SHARED_PREF_FLUSH_RETRY_TIME = "sensorsdata.flush.retry_time";
+    /* 首次重试的最大等待时间 */
+    static final long BASE_DELAY = 10 * 1000;
+    /* 退避时间上限 */
+    static final long MAX_DELAY = 10 * 60 * 1000;
+    /* 连续失败次数达到该值后熔断 */
+    static final int CIRCUIT_BREAKER_THRESHOLD = 6;
+    /* 熔断后的重试间隔 */
+    static final long CIRCUIT_OPEN_DELAY = 30 * 60 * 1000;
+    private static volatile FlushRetryPolicy mInstance;
+    private final AbstractStoreManager mStoreManager;
+    private final Random mRandom;
+    private final Clock mClock;
+    private boolean mIsLoaded;
+    private int mFailureCount;
+    private long mRetryTime;
+
+    /**
+     * 时间来源，便于测试
+     */
+    interface Clock {
+        long currentTimeMillis();
+    }
+
+    private FlushRetryPolicy() {
+        this(SAStoreManager.getInstance(), new Random(), new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+        });
+    }
+
+    FlushRetryPolicy(AbstractStoreManager storeManager, Random random, Clock clock) {
+        this.mStoreManager = storeManager;
+        this.mRandom = random;
+        this.mClock = clock;
+    }
+
+    public static FlushRetryPolicy getInstance() {
+        if (mInstance == null) {
+            synchronized (FlushRetryPolicy.class) {
+                if (mInstance == null) {
+                    mInstance = new FlushRetryPolicy();
+                }
+            }
+        }
+        return mInstance;
+    }
+
+    /**
+     * 距离下次允许上报的时间
+     *
+     * @return 等待时间，单位毫秒，小于等于 0 表示可以上报
+     */
+    public synchronized long getRetryDelay() {
+        load();
+        if (mRetryTime <= 0) {
+            return 0;
+        }
+        long now = mClock.currentTimeMillis();
+        long delay = mRetryTime - now;
+        // 系统时间被修改时，等待时间不超过熔断间隔
+        if (delay > CIRCUIT_OPEN_DELAY) {
+            mRetryTime = now + CIRCUIT_OPEN_DELAY;
+            return CIRCUIT_OPEN_DELAY;
+        }
+        return delay;
+    }
+
+    /**
+     * 上报失败，计算下次重试的时间
+     *
+     * @return 等待时间，单位毫秒
+     */
+    public synchronized long onFailure() {
+        load();
+        mFailureCount++;
+        long delay;
+        if (mFailureCount >= CIRCUIT_BREAKER_THRESHOLD) {
+            delay = CIRCUIT_OPEN_DELAY / 2 + (long) (mRandom.nextDouble() * CIRCUIT_OPEN_DELAY / 2);
+            SALog.i(TAG, "Circuit breaker is open, retry after " + delay + "ms");
+        } else {
+            long backoff = Math.min(MAX_DELAY, BASE_DELAY << (mFailureCount - 1));
+            delay = (long) (mRandom.nextDouble() * backoff);
+            SALog.i(TAG, "Flush failed " + mFailureCount + " times, retry after " + delay + "ms");
+        }
+        mRetryTime = mClock.currentTimeMillis() + delay;
+        save();
+        return delay;
+    }
+
+    /**
+     * 上报成功，重置状态
+     */
+    public synchronized void onSuccess() {
+        reset();
+    }
+
+    /**
+     * 网络发生变化时重置退避和熔断状态，立即允许上报
+     */
+    public synchronized void reset() {
+        load();
+        if (mFailureCount == 0 && mRetryTime == 0) {
+            return;
+        }
+        mFailureCount = 0;
+        mRetryTime = 0;
+        save();
+    }
+
+    private void load() {
+        if (mIsLoaded) {
+            return;
+        }
+        try {
+            mFailureCount = mStoreManager.getInteger(SHARED_PREF_FLUSH_FAILURE_COUNT, 0);
+            mRetryTime = mStoreManager.getLong(SHARED_PREF_FLUSH_RETRY_TIME, 0);
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+        mIsLoaded = true;
+    }
+
+    private void save() {
+        try {
+            mStoreManager.setInteger(SHARED_PREF_FLUSH_FAILURE_COUNT, mFailureCount);
+            mStoreManager.setLong(SHARED_PREF_FLUSH_RETRY_TIME, mRetryTime);
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+    }
+}
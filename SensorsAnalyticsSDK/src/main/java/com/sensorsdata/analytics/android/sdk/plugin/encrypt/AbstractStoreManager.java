@@ -19,38 +19,63 @@ package com.sensorsdata.analytics.android.sdk.plugin.encrypt;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.os.Build;
 import android.text.TextUtils;
-import android.util.LruCache;
 
 import com.sensorsdata.analytics.android.sdk.SALog;
 import com.sensorsdata.analytics.android.sdk.util.SASpUtils;
+import com.sensorsdata.analytics.android.sdk.util.ThreadUtils;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * 存储管理：读取优先使用内存中的缓存，不加锁；写入按 key 分段加锁，不同 key 的写入互不阻塞。
+ * 数据保存在低优先级插件中时，读取后在后台线程中迁移到最高优先级的插件，每个 key 只迁移一次
+ */
 public abstract class AbstractStoreManager {
 
+    private static final String TAG = "SA.AbstractStoreManager";
+    /* 写锁的分段数 */
+    private static final int LOCK_STRIPES = 16;
+    /* 缓存中表示数据不存在 */
+    private static final Object NULL_VALUE = new Object();
+    private static final String TYPE_STRING = "String";
+    private static final String TYPE_BOOL = "Bool";
+    private static final String TYPE_INTEGER = "Integer";
+    private static final String TYPE_FLOAT = "Float";
+    private static final String TYPE_LONG = "Long";
     private final List<StorePlugin> mStorePluginList;
     private final Set<String> mStoreTypes;
-    private final LruCacheData mLruCacheSPData;
-    private StorePlugin mMaxPriorityPlugin;
-    private String mMaxPluginType;
-    private final Lock mLock;
-    protected boolean mDefaultState = true;
-    private static final String TAG = "SA.AbstractStoreManager";
+    /* 已读取或写入的数据，key 不包含插件类型 */
+    private final Map<String, Object> mValueCache;
+    /* 等待迁移到最高优先级插件的 key */
+    private final Set<String> mMigratingKeys;
+    private final Lock[] mLocks;
+    /* 当前线程批量写入期间暂存的数据 */
+    private final ThreadLocal<PendingWrites> mPendingWrites = new ThreadLocal<>();
+    private volatile StorePlugin mMaxPriorityPlugin;
+    private volatile String mMaxPluginType;
+    protected volatile boolean mDefaultState = true;
 
     protected AbstractStoreManager() {
-        mStorePluginList = new ArrayList<>();
-        mLruCacheSPData = new LruCacheData(10);
-        mLock = new ReentrantLock(true);
+        mStorePluginList = new CopyOnWriteArrayList<>();
+        mValueCache = new ConcurrentHashMap<>();
+        mMigratingKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
         mStoreTypes = new HashSet<>();
+        mLocks = new Lock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            mLocks[i] = new ReentrantLock();
+        }
     }
 
     public void registerPlugin(StorePlugin plugin) {
@@ -62,268 +87,211 @@ public abstract class AbstractStoreManager {
             SALog.i(TAG, "PluginType is null");
             return;
         }
-        if (!mStoreTypes.contains(pluginType)) {
-            mStoreTypes.add(pluginType);
-        } else {
-            for (StorePlugin storePlugin : mStorePluginList) {
-                if (TextUtils.equals(pluginType, storePlugin.type())) {
-                    mStorePluginList.remove(storePlugin);
-                    break;
+        synchronized (mStoreTypes) {
+            if (!mStoreTypes.contains(pluginType)) {
+                mStoreTypes.add(pluginType);
+            } else {
+                for (StorePlugin storePlugin : mStorePluginList) {
+                    if (TextUtils.equals(pluginType, storePlugin.type())) {
+                        mStorePluginList.remove(storePlugin);
+                        break;
+                    }
                 }
             }
+            mStorePluginList.add(0, plugin);
+            mMaxPriorityPlugin = plugin;
+            mMaxPluginType = plugin.type();
+            // 最高优先级的插件变化后，缓存的数据可能来自其他插件
+            mValueCache.clear();
         }
-        mStorePluginList.add(0, plugin);
-        mMaxPriorityPlugin = plugin;
-        mMaxPluginType = plugin.type();
     }
 
-    public void setString(final String key, final String value) {
-        mLock.lock();
-        try {
-            if (mDefaultState) {//默认处理方式
-                storeKeys(key, value, "String");
-                return;
+    /**
+     * 开始批量写入：当前线程之后的写入先更新缓存，调用 endBatchWrite 时一次写入 SAEncryptStorePlugin，只提交一次。
+     * 最高优先级的插件不是 SAEncryptStorePlugin 时逐个写入。可以嵌套调用，最外层的 endBatchWrite 时写入
+     */
+    public void beginBatchWrite() {
+        PendingWrites pendingWrites = mPendingWrites.get();
+        if (pendingWrites == null) {
+            pendingWrites = new PendingWrites();
+            mPendingWrites.set(pendingWrites);
+        }
+        pendingWrites.depth++;
+    }
+
+    /**
+     * 结束批量写入，写入 beginBatchWrite 之后暂存的数据
+     */
+    public void endBatchWrite() {
+        PendingWrites pendingWrites = mPendingWrites.get();
+        if (pendingWrites == null || --pendingWrites.depth > 0) {
+            return;
+        }
+        mPendingWrites.remove();
+        setValues(pendingWrites.values);
+    }
+
+    /**
+     * 批量写入数据，最高优先级的插件为 SAEncryptStorePlugin 时只提交一次
+     *
+     * @param values key 与数据，数据为 null 时移除该 key
+     */
+    public void setValues(Map<String, ?> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        StorePlugin maxPriorityPlugin = mMaxPriorityPlugin;
+        if (mDefaultState || !(maxPriorityPlugin instanceof SAEncryptStorePlugin)) {
+            for (Map.Entry<String, ?> entry : values.entrySet()) {
+                Object value = entry.getValue();
+                if (value == null) {
+                    setValue(entry.getKey(), null, TYPE_STRING);
+                } else {
+                    setValue(entry.getKey(), value, typeOf(value));
+                }
             }
-            // value 为 null 时，无法加密，此时应该是移除数据
-            if (value == null) {
-                for (StorePlugin plugin : mStorePluginList) {
-                    plugin.remove(plugin.type() + key);
+            return;
+        }
+        for (Lock lock : mLocks) {
+            lock.lock();
+        }
+        try {
+            Map<String, Object> pluginValues = new HashMap<>();
+            for (Map.Entry<String, ?> entry : values.entrySet()) {
+                String key = entry.getKey();
+                Object value = entry.getValue();
+                if (value == null) {
+                    for (StorePlugin plugin : mStorePluginList) {
+                        if (plugin != maxPriorityPlugin) {
+                            plugin.remove(plugin.type() + key);
+                        }
+                    }
+                } else {
+                    removeUselessValue(key);
                 }
-                mLruCacheSPData.remove(key);
-            } else {
-                removeUselessValue(key);
-                mMaxPriorityPlugin.setString(mMaxPluginType + key, value);
-                mLruCacheSPData.put(key, value);
+                pluginValues.put(maxPriorityPlugin.type() + key, value);
+                mValueCache.put(key, value == null ? NULL_VALUE : value);
             }
+            ((SAEncryptStorePlugin) maxPriorityPlugin).setValues(pluginValues);
         } catch (Exception e) {
-            SALog.i(TAG, "save data failed,key = " + key + "value = " + value, e);
+            for (String key : values.keySet()) {
+                mValueCache.remove(key);
+            }
+            SALog.i(TAG, "save data failed", e);
         } finally {
-            mLock.unlock();
+            for (Lock lock : mLocks) {
+                lock.unlock();
+            }
         }
     }
 
-    public void setBool(final String key, final boolean value) {
-        mLock.lock();
+    /**
+     * 一次性解密最高优先级插件中的所有数据并放入缓存，之后首次读取时不再逐个读取和解密。
+     * 只对 SAEncryptStorePlugin 生效，解密期间会阻塞写入，建议在初始化时于子线程中调用
+     */
+    public void preload() {
+        StorePlugin maxPriorityPlugin = mMaxPriorityPlugin;
+        if (mDefaultState || !(maxPriorityPlugin instanceof SAEncryptStorePlugin)) {
+            return;
+        }
+        for (Lock lock : mLocks) {
+            lock.lock();
+        }
         try {
-            if (mDefaultState) {//默认处理方式
-                storeKeys(key, value, "Bool");
-                return;
+            String pluginType = maxPriorityPlugin.type();
+            Map<String, String> values = ((SAEncryptStorePlugin) maxPriorityPlugin).preload();
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                String key = entry.getKey();
+                if (key.startsWith(pluginType) && !TextUtils.isEmpty(entry.getValue())) {
+                    key = key.substring(pluginType.length());
+                    // 已读取或写入的数据比文件中的新
+                    if (!mValueCache.containsKey(key)) {
+                        mValueCache.put(key, new PreloadedValue(entry.getValue()));
+                    }
+                }
             }
-            removeUselessValue(key);
-            mMaxPriorityPlugin.setBool(mMaxPluginType + key, value);
-            mLruCacheSPData.put(key, value);
         } catch (Exception e) {
-            SALog.i(TAG, "save data failed,key = " + key + "value = " + value, e);
+            SALog.i(TAG, "preload failed", e);
         } finally {
-            mLock.unlock();
+            for (Lock lock : mLocks) {
+                lock.unlock();
+            }
         }
     }
 
+    public void setString(final String key, final String value) {
+        setValue(key, value, TYPE_STRING);
+    }
+
+    public void setBool(final String key, final boolean value) {
+        setValue(key, value, TYPE_BOOL);
+    }
+
     public void setInteger(final String key, final int value) {
-        mLock.lock();
-        try {
-            if (mDefaultState) {//默认处理方式
-                storeKeys(key, value, "Integer");
-                return;
-            }
-            removeUselessValue(key);
-            mMaxPriorityPlugin.setInteger(mMaxPluginType + key, value);
-            mLruCacheSPData.put(key, value);
-        } catch (Exception e) {
-            SALog.i(TAG, "save data failed,key = " + key + "value = " + value, e);
-        } finally {
-            mLock.unlock();
-        }
+        setValue(key, value, TYPE_INTEGER);
     }
 
     public void setFloat(final String key, final float value) {
-        mLock.lock();
-        try {
-            if (mDefaultState) {//默认处理方式
-                storeKeys(key, value, "Float");
-                return;
-            }
-            removeUselessValue(key);
-            mMaxPriorityPlugin.setFloat(mMaxPluginType + key, value);
-            mLruCacheSPData.put(key, value);
-        } catch (Exception e) {
-            SALog.i(TAG, "save data failed,key = " + key + "value = " + value, e);
-        } finally {
-            mLock.unlock();
-        }
+        setValue(key, value, TYPE_FLOAT);
     }
 
     public void setLong(final String key, final long value) {
-        mLock.lock();
-        try {
-            if (mDefaultState) {//默认处理方式
-                storeKeys(key, value, "Long");
-                return;
-            }
-            removeUselessValue(key);
-            mMaxPriorityPlugin.setLong(mMaxPluginType + key, value);
-            mLruCacheSPData.put(key, value);
-        } catch (Exception e) {
-            SALog.i(TAG, "save data failed,key = " + key + "value = " + value, e);
-        } finally {
-            mLock.unlock();
-        }
+        setValue(key, value, TYPE_LONG);
     }
 
     public String getString(final String key, final String defaultValue) {
-        mLock.lock();
         try {
-            String value = (String) mLruCacheSPData.get(key);
-            if (value != null) {
-                return value;
-            }
-            if (mDefaultState) {//默认处理方式
-                return getValue(key, "String", defaultValue);
-            }
-
-            for (StorePlugin plugin : mStorePluginList) {
-                value = plugin.getString(plugin.type() + key);
-                if (!TextUtils.isEmpty(value)) {
-                    if (plugin != mMaxPriorityPlugin) {
-                        plugin.remove(plugin.type() + key);
-                        mMaxPriorityPlugin.setString(mMaxPluginType + key, value);
-                    }
-                    mLruCacheSPData.put(key, value);
-                    break;
-                }
-            }
-            return value == null ? defaultValue : value;
+            Object value = getValue(key, TYPE_STRING);
+            return value instanceof String ? (String) value : defaultValue;
         } catch (Exception e) {
             SALog.i(TAG, "get data failed,key = " + key, e);
-        } finally {
-            mLock.unlock();
         }
         return defaultValue;
     }
 
     public boolean getBool(final String key, final boolean defaultValue) {
-        mLock.lock();
         try {
-            Boolean value = (Boolean) mLruCacheSPData.get(key);
-            if (value != null) {
-                return value;
-            }
-            if (mDefaultState) {//默认处理方式
-                return getValue(key, "Bool", defaultValue);
-            }
-            for (StorePlugin plugin : mStorePluginList) {
-                value = plugin.getBool(plugin.type() + key);
-                if (value != null) {
-                    if (plugin != mMaxPriorityPlugin) {
-                        plugin.remove(plugin.type() + key);
-                        mMaxPriorityPlugin.setBool(mMaxPluginType + key, value);
-                    }
-                    mLruCacheSPData.put(key, value);
-                    break;
-                }
-            }
-            return value == null ? defaultValue : value;
+            Object value = getValue(key, TYPE_BOOL);
+            return value instanceof Boolean ? (Boolean) value : defaultValue;
         } catch (Exception e) {
             SALog.i(TAG, "get data failed,key = " + key, e);
-        } finally {
-            mLock.unlock();
         }
         return defaultValue;
     }
 
     public int getInteger(final String key, final int defaultValue) {
-        mLock.lock();
         try {
-            Integer value = (Integer) mLruCacheSPData.get(key);
-            if (value != null) {
-                return value;
-            }
-            if (mDefaultState) {//默认处理方式
-                return getValue(key, "Integer", defaultValue);
-            }
-            for (StorePlugin plugin : mStorePluginList) {
-                value = plugin.getInteger(plugin.type() + key);
-                if (value != null) {
-                    if (plugin != mMaxPriorityPlugin) {
-                        plugin.remove(plugin.type() + key);
-                        mMaxPriorityPlugin.setInteger(mMaxPluginType + key, value);
-                    }
-                    mLruCacheSPData.put(key, value);
-                    break;
-                }
-            }
-            return value == null ? defaultValue : value;
+            Object value = getValue(key, TYPE_INTEGER);
+            return value instanceof Integer ? (Integer) value : defaultValue;
         } catch (Exception e) {
             SALog.i(TAG, "get data failed,key = " + key, e);
-        } finally {
-            mLock.unlock();
         }
         return defaultValue;
     }
 
     public float getFloat(final String key, final float defaultValue) {
-        mLock.lock();
         try {
-            Float value = (Float) mLruCacheSPData.get(key);
-            if (value != null) {
-                return value;
-            }
-            if (mDefaultState) {//默认处理方式
-                return getValue(key, "Float", defaultValue);
-            }
-
-            for (StorePlugin plugin : mStorePluginList) {
-                value = plugin.getFloat(plugin.type() + key);
-                if (value != null) {
-                    if (plugin != mMaxPriorityPlugin) {
-                        plugin.remove(plugin.type() + key);
-                        mMaxPriorityPlugin.setFloat(mMaxPluginType + key, value);
-                    }
-                    mLruCacheSPData.put(key, value);
-                    break;
-                }
-            }
-            return value == null ? defaultValue : value;
+            Object value = getValue(key, TYPE_FLOAT);
+            return value instanceof Float ? (Float) value : defaultValue;
         } catch (Exception e) {
             SALog.i(TAG, "get data failed,key = " + key, e);
-        } finally {
-            mLock.unlock();
         }
         return defaultValue;
     }
 
     public Long getLong(final String key, final long defaultValue) {
-        mLock.lock();
         try {
-            Long value = (Long) mLruCacheSPData.get(key);
-            if (value != null) {
-                return value;
-            }
-            if (mDefaultState) {//默认处理方式
-                return getValue(key, "Long", defaultValue);
-            }
-            for (StorePlugin plugin : mStorePluginList) {
-                value = plugin.getLong(plugin.type() + key);
-                if (value != null) {
-                    if (plugin != mMaxPriorityPlugin) {
-                        plugin.remove(plugin.type() + key);
-                        mMaxPriorityPlugin.setLong(mMaxPluginType + key, value);
-                    }
-                    mLruCacheSPData.put(key, value);
-                    break;
-                }
-            }
-            return value == null ? defaultValue : value;
+            Object value = getValue(key, TYPE_LONG);
+            return value instanceof Long ? (Long) value : defaultValue;
         } catch (Exception e) {
             SALog.i(TAG, "get data failed,key = " + key, e);
-        } finally {
-            mLock.unlock();
         }
         return defaultValue;
     }
 
     public void remove(final String key) {
-        mLock.lock();
+        Lock lock = getLock(key);
+        lock.lock();
         try {
             for (StorePlugin plugin : mStorePluginList) {
                 if (mDefaultState) {
@@ -335,16 +303,22 @@ public abstract class AbstractStoreManager {
                     plugin.remove(plugin.type() + key);
                 }
             }
-            mLruCacheSPData.remove(key);
         } catch (Exception e) {
             SALog.i(TAG, "remove failed,key = " + key, e);
         } finally {
-            mLock.unlock();
+            PendingWrites pendingWrites = mPendingWrites.get();
+            if (pendingWrites != null) {
+                pendingWrites.values.remove(key);
+            }
+            mValueCache.remove(key);
+            lock.unlock();
         }
     }
 
     public void upgrade() {
-        mLock.lock();
+        for (Lock lock : mLocks) {
+            lock.lock();
+        }
         try {
             int size = mStorePluginList.size();
             for (int i = size - 1; i >= 0; i--) {
@@ -361,16 +335,22 @@ public abstract class AbstractStoreManager {
         } catch (Exception e) {
             SALog.i(TAG, "upgrade failed", e);
         } finally {
-            mLock.unlock();
+            mValueCache.clear();
+            for (Lock lock : mLocks) {
+                lock.unlock();
+            }
         }
     }
 
     public boolean isExists(final String key) {
-        mLock.lock();
         try {
             if (TextUtils.isEmpty(key)) {
                 return false;
             }
+            Object value = mValueCache.get(key);
+            if (value != null && value != NULL_VALUE) {
+                return true;
+            }
             for (StorePlugin plugin : mStorePluginList) {
                 if (plugin.isExists(plugin.type() + key)) {
                     return true;
@@ -378,8 +358,6 @@ public abstract class AbstractStoreManager {
             }
         } catch (Exception e) {
             SALog.i(TAG, "isExists failed,key = " + key, e);
-        } finally {
-            mLock.unlock();
         }
         return false;
     }
@@ -402,6 +380,154 @@ public abstract class AbstractStoreManager {
         return true;
     }
 
+    private Lock getLock(String key) {
+        return mLocks[(key.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    /**
+     * 写入数据，同一个 key 的写入、首次读取和迁移在同一个分段锁中执行
+     *
+     * @param key key
+     * @param value 数据，为 null 时移除数据
+     * @param type 数据类型
+     */
+    private void setValue(String key, Object value, String type) {
+        Lock lock = getLock(key);
+        lock.lock();
+        try {
+            PendingWrites pendingWrites = mPendingWrites.get();
+            if (pendingWrites != null && !mDefaultState && mMaxPriorityPlugin instanceof SAEncryptStorePlugin) {
+                // 批量写入期间只更新缓存，结束时统一写入
+                pendingWrites.values.put(key, value);
+                mValueCache.put(key, value == null ? NULL_VALUE : value);
+                return;
+            }
+            if (mDefaultState) {//默认处理方式
+                storeKeys(key, value, type);
+            } else if (value == null) {
+                // value 为 null 时，无法加密，此时应该是移除数据
+                for (StorePlugin plugin : mStorePluginList) {
+                    plugin.remove(plugin.type() + key);
+                }
+            } else {
+                removeUselessValue(key);
+                putValue(mMaxPriorityPlugin, key, value, type);
+            }
+            mValueCache.put(key, value == null ? NULL_VALUE : value);
+        } catch (Exception e) {
+            mValueCache.remove(key);
+            SALog.i(TAG, "save data failed,key = " + key + "value = " + value, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取数据，缓存命中时不加锁
+     *
+     * @param key key
+     * @param type 数据类型
+     * @return 数据，不存在时返回 null
+     */
+    private Object getValue(String key, String type) {
+        Object value = mValueCache.get(key);
+        if (value == null || value instanceof PreloadedValue) {
+            Lock lock = getLock(key);
+            lock.lock();
+            try {
+                value = mValueCache.get(key);
+                if (value instanceof PreloadedValue) {
+                    // 预加载的数据按首次读取的类型转换
+                    value = ((PreloadedValue) value).parse(type);
+                    if (value != null) {
+                        mValueCache.put(key, value);
+                    }
+                }
+                if (value == null) {
+                    value = loadValue(key, type);
+                    if (value == null) {
+                        value = NULL_VALUE;
+                    }
+                    mValueCache.put(key, value);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return value == NULL_VALUE ? null : value;
+    }
+
+    /**
+     * 从插件中读取数据，数据保存在低优先级插件中时在后台迁移
+     *
+     * @param key key
+     * @param type 数据类型
+     * @return 数据，不存在时返回 null
+     */
+    private Object loadValue(String key, String type) {
+        if (mDefaultState) {//默认处理方式
+            return getPluginValue(getDefaultPlugin(key), key, type);
+        }
+        for (StorePlugin plugin : mStorePluginList) {
+            Object value = getPluginValue(plugin, key, type);
+            if (!isEmptyValue(value)) {
+                if (plugin != mMaxPriorityPlugin) {
+                    migrateValue(plugin, key, type);
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 在后台线程中将数据迁移到最高优先级的插件
+     *
+     * @param plugin 数据所在的插件
+     * @param key key
+     * @param type 数据类型
+     */
+    private void migrateValue(final StorePlugin plugin, final String key, final String type) {
+        if (!mMigratingKeys.add(key)) {
+            return;
+        }
+        try {
+            ThreadUtils.getSinglePool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    Lock lock = getLock(key);
+                    lock.lock();
+                    try {
+                        StorePlugin maxPriorityPlugin = mMaxPriorityPlugin;
+                        // 迁移之前数据已被修改或移除时，旧插件中已没有数据
+                        if (plugin == maxPriorityPlugin || isEmptyValue(getPluginValue(plugin, key, type))) {
+                            return;
+                        }
+                        if (isEmptyValue(getPluginValue(maxPriorityPlugin, key, type))) {
+                            putValue(maxPriorityPlugin, key, getPluginValue(plugin, key, type), type);
+                        }
+                        // 确认已写入最高优先级的插件后才移除旧数据
+                        if (!isEmptyValue(getPluginValue(maxPriorityPlugin, key, type))) {
+                            plugin.remove(plugin.type() + key);
+                        }
+                    } catch (Exception e) {
+                        SALog.i(TAG, "migrate data failed,key = " + key, e);
+                    } finally {
+                        lock.unlock();
+                        mMigratingKeys.remove(key);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            mMigratingKeys.remove(key);
+            SALog.printStackTrace(e);
+        }
+    }
+
+    private boolean isEmptyValue(Object value) {
+        return value == null || value instanceof String && TextUtils.isEmpty((String) value);
+    }
+
     private void removeUselessValue(String key) {
         for (StorePlugin plugin : mStorePluginList) {
             if (plugin != mMaxPriorityPlugin) {
@@ -410,92 +536,110 @@ public abstract class AbstractStoreManager {
         }
     }
 
-    private void storeKeys(String key, Object value, String type) {
-        StorePlugin tempPlugin = mMaxPriorityPlugin;
+    /**
+     * 默认处理方式下 key 所在的插件，默认为 sensorsdata 插件
+     *
+     * @param key key
+     * @return StorePlugin
+     */
+    private StorePlugin getDefaultPlugin(String key) {
         for (StorePlugin plugin : mStorePluginList) {
             if (plugin instanceof DefaultStorePlugin && ((DefaultStorePlugin) plugin).storeKeys() != null
                     && ((DefaultStorePlugin) plugin).storeKeys().contains(key)) {
-                tempPlugin = plugin;
-                break;
+                return plugin;
             }
         }
+        return mMaxPriorityPlugin;
+    }
+
+    private void storeKeys(String key, Object value, String type) {
+        putValue(getDefaultPlugin(key), key, value, type);
+    }
+
+    private void putValue(StorePlugin plugin, String key, Object value, String type) {
         switch (type) {
-            case "String":
-                tempPlugin.setString(tempPlugin.type() + key, (String) value);
+            case TYPE_STRING:
+                plugin.setString(plugin.type() + key, (String) value);
                 break;
-            case "Integer":
-                tempPlugin.setInteger(tempPlugin.type() + key, (Integer) value);
+            case TYPE_INTEGER:
+                plugin.setInteger(plugin.type() + key, (Integer) value);
                 break;
-            case "Float":
-                tempPlugin.setFloat(tempPlugin.type() + key, (Float) value);
+            case TYPE_FLOAT:
+                plugin.setFloat(plugin.type() + key, (Float) value);
                 break;
-            case "Long":
-                tempPlugin.setLong(tempPlugin.type() + key, (Long) value);
+            case TYPE_LONG:
+                plugin.setLong(plugin.type() + key, (Long) value);
                 break;
-            case "Bool":
-                tempPlugin.setBool(tempPlugin.type() + key, (Boolean) value);
+            case TYPE_BOOL:
+                plugin.setBool(plugin.type() + key, (Boolean) value);
                 break;
         }
     }
 
-    private <T> T getValue(String key, String type, T defaultValue) {
-        //默认为 sensorsdata 插件
-        StorePlugin tempPlugin = mMaxPriorityPlugin;
-        for (StorePlugin plugin : mStorePluginList) {
-            if (plugin instanceof DefaultStorePlugin && ((DefaultStorePlugin) plugin).storeKeys() != null
-                    && ((DefaultStorePlugin) plugin).storeKeys().contains(key)) {
-                tempPlugin = plugin;
-                break;
-            }
-        }
-        Object value = null;
+    private Object getPluginValue(StorePlugin plugin, String key, String type) {
         switch (type) {
-            case "String":
-                value = (T) tempPlugin.getString(tempPlugin.type() + key);
-                break;
-            case "Integer":
-                value = (T) tempPlugin.getInteger(tempPlugin.type() + key);
-                break;
-            case "Float":
-                value = (T) tempPlugin.getFloat(tempPlugin.type() + key);
-                break;
-            case "Long":
-                value = (T) tempPlugin.getLong(tempPlugin.type() + key);
-                break;
-            case "Bool":
-                value = (T) tempPlugin.getBool(tempPlugin.type() + key);
-                break;
+            case TYPE_STRING:
+                return plugin.getString(plugin.type() + key);
+            case TYPE_INTEGER:
+                return plugin.getInteger(plugin.type() + key);
+            case TYPE_FLOAT:
+                return plugin.getFloat(plugin.type() + key);
+            case TYPE_LONG:
+                return plugin.getLong(plugin.type() + key);
+            case TYPE_BOOL:
+                return plugin.getBool(plugin.type() + key);
+        }
+        return null;
+    }
+    private static String typeOf(Object value) {
+        if (value instanceof Boolean) {
+            return TYPE_BOOL;
+        } else if (value instanceof Integer) {
+            return TYPE_INTEGER;
+        } else if (value instanceof Float) {
+            return TYPE_FLOAT;
+        } else if (value instanceof Long) {
+            return TYPE_LONG;
         }
-        return value == null ? defaultValue : (T) value;
+        return TYPE_STRING;
     }
 
-    private class LruCacheData {
-        private LruCache<String, Object> mCacheSPData;
+    /**
+     * 预加载的数据，SAEncryptStorePlugin 中的数据都以字符串保存，首次读取时按类型转换
+     */
+    private static class PreloadedValue {
+        private final String value;
 
-        public LruCacheData(int maxSize) {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
-                mCacheSPData = new LruCache<>(maxSize);
-            }
+        PreloadedValue(String value) {
+            this.value = value;
         }
 
-        Object get(String key) {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
-                return mCacheSPData.get(mMaxPluginType + key);
+        Object parse(String type) {
+            try {
+                switch (type) {
+                    case TYPE_STRING:
+                        return value;
+                    case TYPE_INTEGER:
+                        return Integer.valueOf(value);
+                    case TYPE_FLOAT:
+                        return Float.valueOf(value);
+                    case TYPE_LONG:
+                        return Long.valueOf(value);
+                    case TYPE_BOOL:
+                        return Boolean.valueOf(value);
+                }
+            } catch (NumberFormatException e) {
+                SALog.printStackTrace(e);
             }
             return null;
         }
+    }
 
-        void put(String key, Object value) {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
-                mCacheSPData.put(mMaxPluginType + key, value);
-            }
-        }
-
-        void remove(String key) {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
-                mCacheSPData.remove(mMaxPluginType + key);
-            }
-        }
+    /**
+     * 批量写入期间暂存的数据
+     */
+    private static class PendingWrites {
+        private final Map<String, Object> values = new LinkedHashMap<>();
+        private int depth;
     }
 }
-
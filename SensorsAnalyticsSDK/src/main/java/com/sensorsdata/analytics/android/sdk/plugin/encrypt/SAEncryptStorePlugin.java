@@ -21,11 +21,21 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.text.TextUtils;
 
+import com.sensorsdata.analytics.android.sdk.SALog;
 import com.sensorsdata.analytics.android.sdk.encrypt.AESSecretManager;
 import com.sensorsdata.analytics.android.sdk.util.SASpUtils;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class SAEncryptStorePlugin implements StorePlugin {
 
+    private static final String TAG = "SA.SAEncryptStorePlugin";
+    /* 缓存的 key 名称的最大数量，超出后不再缓存 */
+    private static final int MAX_KEY_CACHE_SIZE = 128;
+    /* 明文 key 与加密后的 key 名称，密钥不变时加密结果固定，所有插件共用 */
+    private static final Map<String, String> sKeyNameCache = new ConcurrentHashMap<>();
     private final SharedPreferences mStoreSp;
     private final String mFileName;
 
@@ -38,34 +48,88 @@ public class SAEncryptStorePlugin implements StorePlugin {
         this.mFileName = fileName;
     }
 
+    /**
+     * 一次性解密文件中所有的 key 名称和数据，并缓存 key 名称，之后读写已有的 key 时不再加密 key 名称。
+     * 返回的数据由 AbstractStoreManager.preload 放入缓存，建议在初始化时于子线程中调用
+     *
+     * @return 明文 key 与解密后的数据，解密失败的 key 不包含在内
+     */
+    public Map<String, String> preload() {
+        Map<String, String> result = new HashMap<>();
+        try {
+            Map<String, ?> values = mStoreSp.getAll();
+            if (values == null) {
+                return result;
+            }
+            for (Map.Entry<String, ?> entry : values.entrySet()) {
+                String keyName = entry.getKey();
+                if (keyName == null) {
+                    continue;
+                }
+                String key = decryptValue(keyName);
+                // 解密失败的 key 跳过，不影响其他 key
+                if (TextUtils.isEmpty(key) || TextUtils.equals(key, keyName)) {
+                    continue;
+                }
+                cacheKeyName(key, keyName);
+                Object value = entry.getValue();
+                if (value instanceof String && !TextUtils.isEmpty((String) value)) {
+                    result.put(key, decryptValue((String) value));
+                }
+            }
+        } catch (Exception e) {
+            SALog.printStackTrace(e);
+        }
+        return result;
+    }
+
+    /**
+     * 批量写入数据，只提交一次
+     *
+     * @param values key 与数据，数据为 null 时移除该 key
+     */
+    public void setValues(Map<String, ?> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        SharedPreferences.Editor editor = mStoreSp.edit();
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            Object value = entry.getValue();
+            putValue(editor, entry.getKey(), value == null ? null : String.valueOf(value));
+        }
+        editor.apply();
+    }
+
     @Override
     public void setString(String key, String value) {
-        mStoreSp.edit().putString(encryptValue(key), encryptValue(value)).apply();
+        SharedPreferences.Editor editor = mStoreSp.edit();
+        putValue(editor, key, value);
+        editor.apply();
     }
 
     @Override
     public void setBool(String key, boolean value) {
-        mStoreSp.edit().putString(encryptValue(key), encryptValue(String.valueOf(value))).apply();
+        setString(key, String.valueOf(value));
     }
 
     @Override
     public void setInteger(String key, int value) {
-        mStoreSp.edit().putString(encryptValue(key), encryptValue(String.valueOf(value))).apply();
+        setString(key, String.valueOf(value));
     }
 
     @Override
     public void setFloat(String key, float value) {
-        mStoreSp.edit().putString(encryptValue(key), encryptValue(String.valueOf(value))).apply();
+        setString(key, String.valueOf(value));
     }
 
     @Override
     public void setLong(String key, long value) {
-        mStoreSp.edit().putString(encryptValue(key), encryptValue(String.valueOf(value))).apply();
+        setString(key, String.valueOf(value));
     }
 
     @Override
     public String getString(String key) {
-        String value = mStoreSp.getString(encryptValue(key), null);
+        String value = mStoreSp.getString(getKeyName(key), null);
         if (!TextUtils.isEmpty(value)) {
             return decryptValue(value);
         }
@@ -110,12 +174,14 @@ public class SAEncryptStorePlugin implements StorePlugin {
 
     @Override
     public void remove(String key) {
-        mStoreSp.edit().remove(encryptValue(key)).apply();
+        SharedPreferences.Editor editor = mStoreSp.edit();
+        putValue(editor, key, null);
+        editor.apply();
     }
 
     @Override
     public boolean isExists(String key) {
-        return mStoreSp.contains(encryptValue(key));
+        return mStoreSp.contains(getKeyName(key));
     }
 
     @Override
@@ -128,6 +194,38 @@ public class SAEncryptStorePlugin implements StorePlugin {
 
     }
 
+    private void putValue(SharedPreferences.Editor editor, String key, String value) {
+        if (value == null) {
+            editor.remove(getKeyName(key));
+        } else {
+            editor.putString(getKeyName(key), encryptValue(value));
+        }
+    }
+
+    /**
+     * 获取加密后的 key 名称，每个 key 在进程内只加密一次
+     *
+     * @param key 明文 key
+     * @return 加密后的 key 名称
+     */
+    private String getKeyName(String key) {
+        String keyName = sKeyNameCache.get(key);
+        if (keyName == null) {
+            keyName = encryptValue(key);
+            // 密钥未初始化时返回明文，加密失败时返回空字符串，都不缓存
+            if (!TextUtils.isEmpty(keyName) && !TextUtils.equals(keyName, key)) {
+                cacheKeyName(key, keyName);
+            }
+        }
+        return keyName;
+    }
+
+    private void cacheKeyName(String key, String keyName) {
+        if (sKeyNameCache.size() < MAX_KEY_CACHE_SIZE) {
+            sKeyNameCache.put(key, keyName);
+        }
+    }
+
     private String decryptValue(final String value) {
         return AESSecretManager.getInstance().decryptAES(value);
     }
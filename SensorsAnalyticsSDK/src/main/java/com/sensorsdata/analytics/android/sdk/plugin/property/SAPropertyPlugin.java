@@ -17,7 +17,12 @@
 
 package com.sensorsdata.analytics.android.sdk.plugin.property;
 
+import com.sensorsdata.analytics.android.sdk.SALog;
+import com.sensorsdata.analytics.android.sdk.exceptions.InvalidDataException;
 import com.sensorsdata.analytics.android.sdk.internal.beans.EventType;
+import com.sensorsdata.analytics.android.sdk.util.SADataHelper;
+
+import org.json.JSONObject;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -39,6 +44,11 @@ public abstract class SAPropertyPlugin implements ISAPropertyPlugin {
 
     private final Set<EventType> mEventTypeFilter = new HashSet<>();
 
+    /**
+     * 校验过的静态属性，静态属性只在注册时（或者首次读取到时）校验一次
+     */
+    private volatile JSONObject mValidProperties;
+
     final Set<String> getEventNameFilter() {
         mEventNameFilter.clear();
         eventNameFilter(mEventNameFilter);
@@ -79,6 +89,48 @@ public abstract class SAPropertyPlugin implements ISAPropertyPlugin {
 
     final void start() {
         appendProperties(mProperties);
+        mValidProperties = validate(mProperties);
+    }
+
+    /**
+     * 获取校验过的静态属性
+     *
+     * @return 静态属性
+     */
+    final JSONObject getValidProperties() {
+        // 合规未通过前首次无法读取属性，静态属性为空时再次尝试获取
+        if (mProperties.isEmpty()) {
+            appendProperties(mProperties);
+            if (!mProperties.isEmpty()) {
+                mValidProperties = validate(mProperties);
+            }
+        }
+        return mValidProperties;
+    }
+
+    /**
+     * 获取校验过的动态属性，每次调用重新获取
+     *
+     * @return 动态属性，没有动态属性时返回 null
+     */
+    final JSONObject getValidDynamicProperties() {
+        mDynamicProperties.clear();
+        appendDynamicProperties(mDynamicProperties);
+        if (mDynamicProperties.isEmpty()) {
+            return null;
+        }
+        return validate(mDynamicProperties);
+    }
+
+    private JSONObject validate(Map<String, Object> properties) {
+        JSONObject jsonObject = new JSONObject(properties);
+        try {
+            SADataHelper.assertPropertyTypes(jsonObject);
+            return jsonObject;
+        } catch (InvalidDataException e) {
+            SALog.printStackTrace(e);
+        }
+        return new JSONObject();
     }
 
     @Override
@@ -18,28 +18,32 @@
 package com.sensorsdata.analytics.android.sdk.plugin.property;
 
 import com.sensorsdata.analytics.android.sdk.SALog;
-import com.sensorsdata.analytics.android.sdk.exceptions.InvalidDataException;
 import com.sensorsdata.analytics.android.sdk.internal.beans.EventType;
-import com.sensorsdata.analytics.android.sdk.util.SADataHelper;
 import com.sensorsdata.analytics.android.sdk.util.SensorsDataUtils;
 
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * 属性插件的管理类，用于管理插件的添加和移除，以及事件属性的获取
+ * 属性插件的管理类，用于管理插件的添加和移除，以及事件属性的获取。
+ * 插件的事件名、事件类型和属性名匹配规则在注册时读取一次，每个 (事件类型, 事件名) 对应的插件列表只计算一次并缓存，
+ * 注册或移除插件时重新生成
  */
 public final class SensorsDataPropertyPluginManager {
     private static final String TAG = "SA.SAPropertyPluginManager";
     private final Map<String, SAPropertyPlugin> plugins = new LinkedHashMap<>();
+    private volatile DispatchTable mDispatchTable = new DispatchTable(new PluginEntry[0]);
 
     private static class SingleHolder {
         private static final SensorsDataPropertyPluginManager INSTANCE = new SensorsDataPropertyPluginManager();
@@ -57,14 +61,15 @@ public final class SensorsDataPropertyPluginManager {
      *
      * @param plugin 注册属性插件对象
      */
-    public final void registerPropertyPlugin(SAPropertyPlugin plugin) {
+    public final synchronized void registerPropertyPlugin(SAPropertyPlugin plugin) {
         try {
             if (plugin == null) return;
             String propertyType = getPluginType(plugin);
             if (!plugins.containsKey(propertyType)) {
-                plugins.put(propertyType, plugin);
                 //插件注册成功后，立即开启插件的初始化
                 plugin.start();
+                plugins.put(propertyType, plugin);
+                rebuildDispatchTable();
             } else {
                 SALog.i(TAG, String.format("plugin [ %s ] has exist!", propertyType));
             }
@@ -73,6 +78,22 @@ public final class SensorsDataPropertyPluginManager {
         }
     }
 
+    /**
+     * 移除属性插件
+     *
+     * @param plugin 已注册的属性插件对象
+     */
+    public final synchronized void unregisterPropertyPlugin(SAPropertyPlugin plugin) {
+        try {
+            if (plugin == null) return;
+            if (plugins.remove(getPluginType(plugin)) != null) {
+                rebuildDispatchTable();
+            }
+        } catch (Exception e) {
+            SALog.i(TAG, "unregister property plugin exception! " + e.toString());
+        }
+    }
+
     /**
      * 根据事件的 eventName，eventType，properties 来匹配已注册的插件，获取当前事件能匹配上的属性
      *
@@ -82,16 +103,19 @@ public final class SensorsDataPropertyPluginManager {
      * @return 当前事件能匹配的属性
      */
     public final JSONObject properties(String eventName, EventType eventType, JSONObject properties) {
-        // step1.获取当前事件能匹配上的所有插件
+        // step1.从分发表中获取当前事件能匹配上的插件
         // step2.收集匹配上的所有插件的属性
         // step3.返回匹配上的属性
         long startPropertiesTime = System.currentTimeMillis();
-        JSONObject jsonObject;
+        JSONObject jsonObject = new JSONObject();
         try {
-            jsonObject = properties(filter(eventName, eventType, properties));
+            for (PluginEntry entry : mDispatchTable.get(eventName, eventType)) {
+                if (entry.isMatchPropertyKey(properties)) {
+                    appendProperties(entry.plugin, jsonObject);
+                }
+            }
         } catch (Exception e) {
             SALog.i(TAG, String.format("Event [%s] error is happened when matching property-plugins, e=%s", eventName, e.toString()));
-            jsonObject = new JSONObject();
         }
         SALog.i(TAG, String.format("Event [%s] spend [%sms] on matching property-plugins", eventName, (System.currentTimeMillis() - startPropertiesTime)));
         return jsonObject;
@@ -109,76 +133,54 @@ public final class SensorsDataPropertyPluginManager {
     }
 
     /**
-     * 过滤所有插件，筛选出符合当前事件条件的插件
-     *
-     * @param eventName 事件名
-     * @param eventType 事件类型
-     * @param properties 事件已有的属性
-     * @return 符合条件的插件列表
+     * 读取插件的匹配规则，按优先级从低到高排序后生成新的分发表，高优先级插件的属性后合并
      */
-    private List<SAPropertyPlugin> filter(String eventName, EventType eventType, JSONObject properties) {
-        List<SAPropertyPlugin> filterPlugins = new LinkedList<>();
-        // step1.遍历插件
+    private void rebuildDispatchTable() {
+        List<PluginEntry> entries = new ArrayList<>(plugins.size());
         for (SAPropertyPlugin plugin : plugins.values()) {
-            // step2.过滤出匹配当前事件的插件
-            if (isMatchEventType(plugin.getEventTypeFilter(), eventType)
-                    && isMatchEventName(plugin.getEventNameFilter(), eventName)
-                    && isMatchPropertyKey(plugin.getPropertyKeyFilter(), properties)
-            ) {
-                filterPlugins.add(plugin);
-            }
+            entries.add(new PluginEntry(plugin));
         }
-        // step3.将能匹配上当前事件的插件按优先级排序
-        Collections.sort(filterPlugins, new Comparator<SAPropertyPlugin>() {
+        Collections.sort(entries, new Comparator<PluginEntry>() {
             @Override
-            public int compare(SAPropertyPlugin o1, SAPropertyPlugin o2) {
-                if (o1.priority().getPriority() >= o2.priority().getPriority()) {
-                    return 0;
-                } else {
-                    return -1;
-                }
+            public int compare(PluginEntry o1, PluginEntry o2) {
+                long p1 = o1.plugin.priority().getPriority();
+                long p2 = o2.plugin.priority().getPriority();
+                return p1 < p2 ? -1 : (p1 == p2 ? 0 : 1);
             }
         });
-        // step4.返回已匹配上且已按优先级排序的插件
-        return filterPlugins;
+        mDispatchTable = new DispatchTable(entries.toArray(new PluginEntry[0]));
     }
 
     /**
-     * 根据事件名匹配插件
+     * 将插件的静态属性和动态属性合并到 jsonObject 中，动态属性优先
      *
-     * @param eventNameFilter 事件名匹配规则
-     * @param eventName 事件名
-     * @return 是否匹配
+     * @param plugin 属性插件
+     * @param jsonObject 事件属性
      */
-    private boolean isMatchEventName(Set<String> eventNameFilter, String eventName) {
-        if (eventNameFilter == null || eventNameFilter.size() == 0) {
-            return true;
-        } else {
-            return eventNameFilter.contains(eventName);
+    private void appendProperties(SAPropertyPlugin plugin, JSONObject jsonObject) {
+        JSONObject validProperties = plugin.getValidProperties();
+        if (validProperties != null && validProperties.length() > 0) {
+            SensorsDataUtils.mergeJSONObject(validProperties, jsonObject);
+        }
+        JSONObject dynamicProperties = plugin.getValidDynamicProperties();
+        if (dynamicProperties != null) {
+            SensorsDataUtils.mergeJSONObject(dynamicProperties, jsonObject);
         }
     }
 
     /**
-     * 根据事件属性名匹配插件
+     * 根据事件名匹配插件
      *
-     * @param propertyKeyFilter 属性名匹配规则
-     * @param properties 事件已有属性
+     * @param eventNameFilter 事件名匹配规则
+     * @param eventName 事件名
      * @return 是否匹配
      */
-    private boolean isMatchPropertyKey(Set<String> propertyKeyFilter, JSONObject properties) {
-        if (propertyKeyFilter == null || propertyKeyFilter.size() == 0) {
+    private static boolean isMatchEventName(Set<String> eventNameFilter, String eventName) {
+        if (eventNameFilter == null || eventNameFilter.size() == 0) {
             return true;
         } else {
-            if (properties == null) {
-                return false;
-            }
-            for (String propertyKey : propertyKeyFilter) {
-                if (properties.has(propertyKey)) {
-                    return true;
-                }
-            }
+            return eventNameFilter.contains(eventName);
         }
-        return false;
     }
 
     /**
@@ -188,12 +190,10 @@ public final class SensorsDataPropertyPluginManager {
      * @param eventType 当前事件类型
      * @return 是否匹配
      */
-    private boolean isMatchEventType(Set<EventType> eventTypeFilter, EventType eventType) {
+    private static boolean isMatchEventType(Set<EventType> eventTypeFilter, EventType eventType) {
         // 如果用户没有实现 eventTypeFilter 添加支持事件类型，则默认只支持 track 类型事件
         if (eventTypeFilter == null || eventTypeFilter.isEmpty()) {
-            if (eventType == EventType.TRACK) {
-                return true;
-            }
+            return eventType == EventType.TRACK;
         }
         // 如果匹配到 EventType.ALL，则对所有类型事件都成功匹配
         if (eventTypeFilter.contains(EventType.ALL)) {
@@ -202,40 +202,13 @@ public final class SensorsDataPropertyPluginManager {
         return eventTypeFilter.contains(eventType);
     }
 
-    /**
-     * 根据属性插件列表，收集所有属性
-     *
-     * @param plugins 属性插件列表
-     * @return 属性对象
-     */
-    private JSONObject properties(List<SAPropertyPlugin> plugins) {
-        JSONObject jsonObject = new JSONObject();
-        if (plugins == null) {
-            return jsonObject;
-        }
-        for (SAPropertyPlugin plugin : plugins) {
-            Map<String, Object> properties = plugin.properties();
-            if (properties == null || properties.isEmpty()) {
-                continue;
-            }
-            JSONObject pluginProperties = new JSONObject(properties);
-            try {
-                SADataHelper.assertPropertyTypes(pluginProperties);
-                SensorsDataUtils.mergeJSONObject(pluginProperties, jsonObject);
-            } catch (InvalidDataException e) {
-                SALog.printStackTrace(e);
-            }
-        }
-        return jsonObject;
-    }
-
     /**
      * 通过插件类型，获取已经注册过的插件类型的属性
      *
      * @param clazz 指定获取已注册的插件类型
      * @return 已注册类型插件的事件属性 map
      */
-    public final Map<String, Object> getPropertiesByPlugin(Class<?> clazz) {
+    public final synchronized Map<String, Object> getPropertiesByPlugin(Class<?> clazz) {
         Map<String, Object> properties = new HashMap<>();
         if (clazz == null) return properties;
         String pluginType = clazz.getName();
@@ -247,4 +220,90 @@ public final class SensorsDataPropertyPluginManager {
         }
         return properties;
     }
+
+    /**
+     * 插件及注册时读取的匹配规则
+     */
+    private static class PluginEntry {
+        final SAPropertyPlugin plugin;
+        final Set<String> eventNameFilter;
+        final Set<EventType> eventTypeFilter;
+        final String[] propertyKeyFilter;
+
+        PluginEntry(SAPropertyPlugin plugin) {
+            this.plugin = plugin;
+            this.eventNameFilter = new HashSet<>(plugin.getEventNameFilter());
+            this.eventTypeFilter = new HashSet<>(plugin.getEventTypeFilter());
+            Set<String> propertyKeyFilter = plugin.getPropertyKeyFilter();
+            this.propertyKeyFilter = propertyKeyFilter.toArray(new String[0]);
+        }
+
+        boolean isMatch(String eventName, EventType eventType) {
+            return isMatchEventType(eventTypeFilter, eventType) && isMatchEventName(eventNameFilter, eventName);
+        }
+
+        /**
+         * 根据事件属性名匹配插件，属性名依赖事件已有的属性，需要每次判断
+         *
+         * @param properties 事件已有属性
+         * @return 是否匹配
+         */
+        boolean isMatchPropertyKey(JSONObject properties) {
+            if (propertyKeyFilter.length == 0) {
+                return true;
+            }
+            if (properties == null) {
+                return false;
+            }
+            for (String propertyKey : propertyKeyFilter) {
+                if (properties.has(propertyKey)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * (事件类型, 事件名) 到已排序插件列表的缓存，插件变化时整体替换
+     */
+    private static class DispatchTable {
+        /* 每种事件类型最多缓存的事件名数量，超出后直接遍历匹配，避免动态事件名导致缓存无限增长 */
+        private static final int MAX_CACHED_EVENT_NAMES = 512;
+        private final PluginEntry[] mEntries;
+        private final Map<EventType, ConcurrentHashMap<String, PluginEntry[]>> mCache = new EnumMap<>(EventType.class);
+
+        DispatchTable(PluginEntry[] entries) {
+            this.mEntries = entries;
+            // 构造时创建好所有事件类型的缓存，之后只读取，不需要加锁
+            for (EventType eventType : EventType.values()) {
+                mCache.put(eventType, new ConcurrentHashMap<String, PluginEntry[]>());
+            }
+        }
+
+        PluginEntry[] get(String eventName, EventType eventType) {
+            ConcurrentHashMap<String, PluginEntry[]> eventNameCache = eventType == null ? null : mCache.get(eventType);
+            if (eventNameCache == null || eventName == null) {
+                return match(eventName, eventType);
+            }
+            PluginEntry[] matched = eventNameCache.get(eventName);
+            if (matched == null) {
+                matched = match(eventName, eventType);
+                if (eventNameCache.size() < MAX_CACHED_EVENT_NAMES) {
+                    eventNameCache.put(eventName, matched);
+                }
+            }
+            return matched;
+        }
+
+        private PluginEntry[] match(String eventName, EventType eventType) {
+            List<PluginEntry> matchedList = new ArrayList<>();
+            for (PluginEntry entry : mEntries) {
+                if (entry.isMatch(eventName, eventType)) {
+                    matchedList.add(entry);
+                }
+            }
+            return matchedList.toArray(new PluginEntry[0]);
+        }
+    }
 }
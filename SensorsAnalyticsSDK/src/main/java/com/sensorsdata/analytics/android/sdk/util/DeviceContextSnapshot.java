@@ -0,0 +1,179 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.util;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.sensorsdata.analytics.android.sdk.SALog;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 事件采集时使用的设备上下文（运营商、网络类型、屏幕方向）快照，创建后不可修改。
+ * 网络变化、SIM 卡状态变化、屏幕方向变化时更新快照，每个事件只读取一次 volatile 变量，不需要调用系统服务。
+ * 快照超过 {@link #MAX_STALENESS} 未更新时在后台线程刷新
+ */
+public final class DeviceContextSnapshot {
+    private static final String TAG = "SA.DeviceContextSnapshot";
+    /**
+     * 快照的最长有效时间
+     */
+    static final long MAX_STALENESS = 60 * 1000;
+    private static volatile DeviceContextSnapshot sSnapshot;
+    private static final AtomicBoolean sIsRefreshing = new AtomicBoolean(false);
+    private static volatile boolean sIsRefreshPending;
+    private static final Object sLock = new Object();
+    private static volatile Context sContext;
+    private static volatile boolean sIsCarrierAllowed;
+
+    private final String mCarrier;
+    private final boolean mIsCarrierLoaded;
+    private final String mNetworkType;
+    private final String mScreenOrientation;
+    private final long mCreateTime;
+
+    private DeviceContextSnapshot(String carrier, boolean isCarrierLoaded, String networkType, String screenOrientation, long createTime) {
+        this.mCarrier = carrier;
+        this.mIsCarrierLoaded = isCarrierLoaded;
+        this.mNetworkType = networkType;
+        this.mScreenOrientation = screenOrientation;
+        this.mCreateTime = createTime;
+    }
+
+    public String getCarrier() {
+        return mCarrier;
+    }
+
+    public String getNetworkType() {
+        return mNetworkType;
+    }
+
+    public boolean isWifi() {
+        return "WIFI".equals(mNetworkType);
+    }
+
+    public String getScreenOrientation() {
+        return mScreenOrientation;
+    }
+
+    /**
+     * 获取当前快照。还没有快照，或者允许读取运营商后还没有读取过运营商时同步创建快照，快照过期时在后台刷新并返回当前快照
+     *
+     * @param context Context
+     * @param isCarrierAllowed 是否允许读取运营商信息
+     * @return 设备上下文快照
+     */
+    public static DeviceContextSnapshot get(Context context, boolean isCarrierAllowed) {
+        if (sContext == null && context != null) {
+            sContext = context.getApplicationContext() == null ? context : context.getApplicationContext();
+        }
+        sIsCarrierAllowed = isCarrierAllowed;
+        DeviceContextSnapshot snapshot = sSnapshot;
+        // mCreateTime 为 0 表示只记录了屏幕方向，还没有读取过运营商和网络类型
+        if (snapshot == null || snapshot.mCreateTime == 0 || (isCarrierAllowed && !snapshot.mIsCarrierLoaded)) {
+            return refresh(context, isCarrierAllowed);
+        }
+        if (SystemClock.elapsedRealtime() - snapshot.mCreateTime > MAX_STALENESS) {
+            refreshAsync();
+        }
+        return snapshot;
+    }
+
+    /**
+     * 立即重新读取运营商和网络类型
+     *
+     * @param context Context
+     * @param isCarrierAllowed 是否允许读取运营商信息
+     * @return 新的快照
+     */
+    public static DeviceContextSnapshot refresh(Context context, boolean isCarrierAllowed) {
+        String carrier = null;
+        if (isCarrierAllowed) {
+            carrier = SensorsDataUtils.getCarrier(context);
+        }
+        String networkType = NetworkUtils.networkType(context);
+        synchronized (sLock) {
+            DeviceContextSnapshot current = sSnapshot;
+            DeviceContextSnapshot snapshot = new DeviceContextSnapshot(carrier, isCarrierAllowed, networkType,
+                    current == null ? null : current.mScreenOrientation, SystemClock.elapsedRealtime());
+            sSnapshot = snapshot;
+            return snapshot;
+        }
+    }
+
+    /**
+     * 网络或 SIM 卡状态变化后调用，在后台线程刷新快照
+     */
+    public static void refreshAsync() {
+        final Context context = sContext;
+        if (context == null || sSnapshot == null) {
+            return;
+        }
+        // 正在刷新时记录下来，本次刷新结束后再刷新一次，避免刷新过程中发生的变化丢失
+        sIsRefreshPending = true;
+        if (!sIsRefreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            ThreadUtils.getSinglePool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        sIsRefreshPending = false;
+                        refresh(context, sIsCarrierAllowed);
+                    } catch (Exception e) {
+                        SALog.printStackTrace(e);
+                    } finally {
+                        sIsRefreshing.set(false);
+                        if (sIsRefreshPending) {
+                            refreshAsync();
+                        }
+                    }
+                }
+            });
+        } catch (Exception e) {
+            sIsRefreshing.set(false);
+            SALog.i(TAG, "refresh device context failed", e);
+        }
+    }
+
+    /**
+     * 屏幕方向变化后更新快照，不会读取系统服务
+     *
+     * @param screenOrientation 屏幕方向，关闭屏幕方向采集时为 null
+     */
+    public static void updateScreenOrientation(String screenOrientation) {
+        DeviceContextSnapshot snapshot = sSnapshot;
+        if (snapshot != null && (screenOrientation == null ? snapshot.mScreenOrientation == null : screenOrientation.equals(snapshot.mScreenOrientation))) {
+            return;
+        }
+        synchronized (sLock) {
+            DeviceContextSnapshot current = sSnapshot;
+            if (current == null) {
+                sSnapshot = new DeviceContextSnapshot(null, false, null, screenOrientation, 0);
+                return;
+            }
+            if (screenOrientation == null ? current.mScreenOrientation == null : screenOrientation.equals(current.mScreenOrientation)) {
+                return;
+            }
+            sSnapshot = new DeviceContextSnapshot(current.mCarrier, current.mIsCarrierLoaded, current.mNetworkType,
+                    screenOrientation, current.mCreateTime);
+        }
+    }
+}
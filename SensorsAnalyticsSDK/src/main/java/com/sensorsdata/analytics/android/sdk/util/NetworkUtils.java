@@ -35,6 +35,7 @@ import android.text.TextUtils;
 
 import com.sensorsdata.analytics.android.sdk.SALog;
 import com.sensorsdata.analytics.android.sdk.SensorsDataAPI;
+import com.sensorsdata.analytics.android.sdk.network.FlushRetryPolicy;
 
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
@@ -55,6 +56,11 @@ public class NetworkUtils {
     private static final String TAG = "SA.NetworkUtils";
 
     private static SABroadcastReceiver mReceiver;
+    private static SimStateReceiver mSimStateReceiver;
+    /**
+     * SIM 卡状态变化广播，TelephonyIntents.ACTION_SIM_STATE_CHANGED
+     */
+    private static final String ACTION_SIM_STATE_CHANGED = "android.intent.action.SIM_STATE_CHANGED";
     private static SANetworkCallbackImpl networkCallback;
 
     /**
@@ -192,6 +198,10 @@ public class NetworkUtils {
 
     public static void registerNetworkListener(Context context) {
         try {
+            if (mSimStateReceiver == null) {
+                mSimStateReceiver = new SimStateReceiver();
+                context.registerReceiver(mSimStateReceiver, new IntentFilter(ACTION_SIM_STATE_CHANGED));
+            }
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
                 if (mReceiver == null) {
                     mReceiver = new SABroadcastReceiver();
@@ -219,6 +229,10 @@ public class NetworkUtils {
 
     public static void unregisterNetworkListener(Context context) {
         try {
+            if (mSimStateReceiver != null) {
+                context.unregisterReceiver(mSimStateReceiver);
+                mSimStateReceiver = null;
+            }
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
                 if (mReceiver == null) {
                     return;
@@ -243,6 +257,7 @@ public class NetworkUtils {
 
     public static void cleanNetworkTypeCache() {
         networkType = null;
+        DeviceContextSnapshot.refreshAsync();
     }
 
     /**
@@ -363,12 +378,27 @@ public class NetworkUtils {
             String action = intent.getAction();
             if (ConnectivityManager.CONNECTIVITY_ACTION.equals(action)) {
                 NetworkUtils.cleanNetworkTypeCache();
+                // 网络变化后不再等待失败重试，立即上报
+                FlushRetryPolicy.getInstance().reset();
                 SensorsDataAPI.sharedInstance().flush();
                 SALog.i(TAG, "SABroadcastReceiver is receiving ConnectivityManager.CONNECTIVITY_ACTION broadcast");
             }
         }
     }
 
+    /**
+     * SIM 卡状态变化后重新读取运营商信息
+     */
+    private static class SimStateReceiver extends BroadcastReceiver {
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (ACTION_SIM_STATE_CHANGED.equals(intent.getAction())) {
+                DeviceContextSnapshot.refreshAsync();
+            }
+        }
+    }
+
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     private static class SANetworkCallbackImpl extends ConnectivityManager.NetworkCallback {
 
@@ -376,6 +406,7 @@ public class NetworkUtils {
         public void onAvailable(Network network) {
             super.onAvailable(network);
             NetworkUtils.cleanNetworkTypeCache();
+            FlushRetryPolicy.getInstance().reset();
             SensorsDataAPI.sharedInstance().flush();
             SALog.i(TAG, "onAvailable is calling");
         }
@@ -0,0 +1,114 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.util;
+
+import com.sensorsdata.analytics.android.sdk.SALog;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 属性名和事件名的校验，规则与 ^((?!保留字)[a-zA-Z_$][a-zA-Z\d_$]*)$（忽略大小写）一致。
+ * 校验结果按 key 缓存，合法和非法的 key 分开缓存且都有数量上限，非法 key 只在首次校验时打印日志
+ */
+final class PropertyKeyChecker {
+    private static final String TAG = "SA.SADataHelper";
+    static final int RESULT_VALID = 0;
+    static final int RESULT_INVALID = 1;
+    static final int RESULT_TOO_LONG = 2;
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final int MAX_VALID_KEYS = 1024;
+    private static final int MAX_INVALID_KEYS = 128;
+    private static final String[] RESERVED_KEYS = {"distinct_id", "original_id", "time", "properties", "id",
+            "first_id", "second_id", "users", "events", "event", "user_id", "date", "datetime"};
+    private static final String[] RESERVED_PREFIXES = {"user_tag", "user_group"};
+    private static final ConcurrentHashMap<String, Integer> sValidKeys = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Integer> sInvalidKeys = new ConcurrentHashMap<>();
+
+    private PropertyKeyChecker() {
+    }
+
+    /**
+     * 校验 key，调用方需保证 key 不为空
+     *
+     * @param key 属性名或事件名
+     * @return RESULT_VALID，或 RESULT_INVALID、RESULT_TOO_LONG 的组合
+     */
+    static int check(String key) {
+        Integer result = sValidKeys.get(key);
+        if (result == null) {
+            result = sInvalidKeys.get(key);
+        }
+        if (result != null) {
+            return result;
+        }
+        int checkResult = scan(key);
+        if ((checkResult & RESULT_INVALID) != 0) {
+            SALog.i(TAG, key + " is invalid");
+        }
+        if ((checkResult & RESULT_TOO_LONG) != 0) {
+            SALog.i(TAG, key + "'s length is longer than " + MAX_KEY_LENGTH);
+        } else {
+            // 超长的 key 不缓存，避免占用过多内存
+            ConcurrentHashMap<String, Integer> cache = checkResult == RESULT_VALID ? sValidKeys : sInvalidKeys;
+            int limit = checkResult == RESULT_VALID ? MAX_VALID_KEYS : MAX_INVALID_KEYS;
+            if (cache.size() < limit) {
+                cache.put(key, checkResult);
+            }
+        }
+        return checkResult;
+    }
+
+    /**
+     * 逐个字符校验 key，不使用正则表达式
+     *
+     * @param key 属性名或事件名
+     * @return 校验结果
+     */
+    static int scan(String key) {
+        int length = key.length();
+        int result = length > MAX_KEY_LENGTH ? RESULT_TOO_LONG : RESULT_VALID;
+        if (length == 0 || !isIdentifierStart(key.charAt(0))) {
+            return result | RESULT_INVALID;
+        }
+        for (int i = 1; i < length; i++) {
+            char c = key.charAt(i);
+            if (!isIdentifierStart(c) && (c < '0' || c > '9')) {
+                return result | RESULT_INVALID;
+            }
+        }
+        return isReserved(key) ? result | RESULT_INVALID : result;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+    }
+
+    private static boolean isReserved(String key) {
+        for (String reservedKey : RESERVED_KEYS) {
+            if (reservedKey.length() == key.length() && reservedKey.equalsIgnoreCase(key)) {
+                return true;
+            }
+        }
+        for (String prefix : RESERVED_PREFIXES) {
+            if (key.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Created by agent on 2026/10/18.
+ * Copyright 2015－2022 Sensors Data Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sensorsdata.analytics.android.sdk.util;
+
+import android.text.TextUtils;
+
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * 属性名的大小写无关索引，按 JSONObject 的 key 顺序保存原始属性名和折叠大小写后的属性名。
+ * 大小写折叠规则与 {@link String#equalsIgnoreCase(String)} 一致，索引创建后不可修改
+ */
+public final class PropertyKeyIndex {
+    private static final PropertyKeyIndex EMPTY = new PropertyKeyIndex(new String[0], new String[0]);
+    private final String[] mKeys;
+    private final String[] mFoldedKeys;
+    private final Set<String> mFoldedKeySet;
+
+    private PropertyKeyIndex(String[] keys, String[] foldedKeys) {
+        this.mKeys = keys;
+        this.mFoldedKeys = foldedKeys;
+        this.mFoldedKeySet = new HashSet<>(foldedKeys.length * 2);
+        for (String foldedKey : foldedKeys) {
+            if (!TextUtils.isEmpty(foldedKey)) {
+                mFoldedKeySet.add(foldedKey);
+            }
+        }
+    }
+
+    /**
+     * 根据 JSONObject 的属性名创建索引，空属性名保留在索引中，但不参与大小写去重
+     *
+     * @param properties 属性
+     * @return 属性名索引
+     */
+    public static PropertyKeyIndex create(JSONObject properties) {
+        if (properties == null || properties.length() == 0) {
+            return EMPTY;
+        }
+        String[] keys = new String[properties.length()];
+        String[] foldedKeys = new String[keys.length];
+        int count = 0;
+        Iterator<String> iterator = properties.keys();
+        while (iterator.hasNext() && count < keys.length) {
+            String key = iterator.next();
+            keys[count] = key;
+            foldedKeys[count] = foldCase(key);
+            count++;
+        }
+        return new PropertyKeyIndex(keys, foldedKeys);
+    }
+
+    /**
+     * 折叠属性名的大小写，两个属性名 equalsIgnoreCase 时折叠结果相同。不需要转换时直接返回原字符串，不创建新对象
+     *
+     * @param key 属性名
+     * @return 折叠大小写后的属性名
+     */
+    public static String foldCase(String key) {
+        int length = key.length();
+        int index = 0;
+        for (; index < length; index++) {
+            char c = key.charAt(index);
+            if (c < 0x80 ? (c >= 'A' && c <= 'Z') : fold(c) != c) {
+                break;
+            }
+        }
+        if (index == length) {
+            return key;
+        }
+        char[] chars = key.toCharArray();
+        for (; index < length; index++) {
+            chars[index] = fold(chars[index]);
+        }
+        return new String(chars);
+    }
+
+    private static char fold(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * 是否包含大小写无关相同的属性名
+     *
+     * @param foldedKey 已经折叠大小写的属性名
+     * @return true：包含
+     */
+    public boolean containsFolded(String foldedKey) {
+        return mFoldedKeySet.contains(foldedKey);
+    }
+
+    public int size() {
+        return mKeys.length;
+    }
+
+    public String keyAt(int index) {
+        return mKeys[index];
+    }
+
+    public String foldedKeyAt(int index) {
+        return mFoldedKeys[index];
+    }
+}
@@ -29,17 +29,12 @@ import org.json.JSONObject;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Pattern;
 
 public class SADataHelper {
 
     private static final String TAG = "SA.SADataHelper";
 
-    private static final Pattern KEY_PATTERN = Pattern.compile(
-            "^((?!^distinct_id$|^original_id$|^time$|^properties$|^id$|^first_id$|^second_id$|^users$|^events$|^event$|^user_id$|^date$|^datetime$|^user_tag.*|^user_group.*)[a-zA-Z_$][a-zA-Z\\d_$]*)$",
-            Pattern.CASE_INSENSITIVE);
     public static final int MAX_LENGTH_1024 = 1024;
-    private static final int MAX_LENGTH_100 = 100;
 
     public static void assertPropertyTypes(JSONObject properties) throws InvalidDataException {
         if (properties == null) {
@@ -110,14 +105,8 @@ public class SADataHelper {
             SALog.i(TAG,"EventName is empty");
             return;
         }
-        int length = key.length();
-        if (length > MAX_LENGTH_100) {
-            SALog.i(TAG, key + "'s length is longer than " + MAX_LENGTH_100);
-            return;
-        }
-        if (!(KEY_PATTERN.matcher(key).matches())) {
-            SALog.i(TAG, key + " is invalid");
-        }
+        // 与属性名共用校验缓存，校验不通过时只打印日志
+        PropertyKeyChecker.check(key);
     }
 
     /**
@@ -131,15 +120,7 @@ public class SADataHelper {
             return false;
         }
 
-        if (!(KEY_PATTERN.matcher(key).matches())) {
-            SALog.i(TAG, key + " is invalid");
-            return false;
-        }
-        int length = key.length();
-        if (length > MAX_LENGTH_100) {
-            SALog.i(TAG, key + "'s length is longer than " + MAX_LENGTH_100);
-        }
-        return true;
+        return (PropertyKeyChecker.check(key) & PropertyKeyChecker.RESULT_INVALID) == 0;
     }
 
     /**
@@ -381,18 +381,21 @@ public final class SensorsDataUtils {
 
             while (superPropertiesIterator.hasNext()) {
                 String key = superPropertiesIterator.next();
-                Object value = source.get(key);
-                if (value instanceof Date && !"$time".equals(key)) {
-                    dest.put(key, TimeUtils.formatDate((Date) value, Locale.CHINA));
-                } else {
-                    dest.put(key, value);
-                }
+                putProperty(dest, key, source.get(key));
             }
         } catch (Exception ex) {
             SALog.printStackTrace(ex);
         }
     }
 
+    private static void putProperty(JSONObject dest, String key, Object value) throws Exception {
+        if (value instanceof Date && !"$time".equals(key)) {
+            dest.put(key, TimeUtils.formatDate((Date) value, Locale.CHINA));
+        } else {
+            dest.put(key, value);
+        }
+    }
+
     /**
      * 合并、去重公共属性
      *
@@ -409,13 +412,12 @@ public final class SensorsDataUtils {
         }
 
         try {
-            Iterator<String> sourceIterator = source.keys();
-            while (sourceIterator.hasNext()) {
-                String key = sourceIterator.next();
+            // source 的属性名只折叠一次，dest 只遍历一次
+            PropertyKeyIndex sourceIndex = PropertyKeyIndex.create(source);
+            if (sourceIndex.size() > 0) {
                 Iterator<String> destIterator = dest.keys();
                 while (destIterator.hasNext()) {
-                    String destKey = destIterator.next();
-                    if (!TextUtils.isEmpty(key) && key.equalsIgnoreCase(destKey)) {
+                    if (sourceIndex.containsFolded(PropertyKeyIndex.foldCase(destIterator.next()))) {
                         destIterator.remove();
                     }
                 }
@@ -428,6 +430,49 @@ public final class SensorsDataUtils {
         return dest;
     }
 
+    /**
+     * 合并、去重静态公共属性与动态公共属性，结果写入 dest，与 mergeSuperJSONObject(dynamicProperties, superProperties) 的结果一致，
+     * 但不会修改 superProperties，也不会逐个折叠公共属性的属性名
+     *
+     * @param superProperties 静态公共属性
+     * @param superIndex superProperties 的属性名索引
+     * @param dynamicProperties 动态公共属性，与静态公共属性大小写无关重复时优先
+     * @param dest 保存合并后属性的 JSON
+     */
+    public static void mergeSuperProperties(JSONObject superProperties, PropertyKeyIndex superIndex,
+                                            JSONObject dynamicProperties, JSONObject dest) {
+        try {
+            Set<String> dynamicKeys = null;
+            if (dynamicProperties != null && dynamicProperties.length() > 0) {
+                dynamicKeys = new HashSet<>(dynamicProperties.length() * 2);
+                Iterator<String> iterator = dynamicProperties.keys();
+                while (iterator.hasNext()) {
+                    String key = iterator.next();
+                    if (!TextUtils.isEmpty(key)) {
+                        dynamicKeys.add(PropertyKeyIndex.foldCase(key));
+                    }
+                }
+            }
+            if (superProperties != null && superIndex != null) {
+                for (int i = 0; i < superIndex.size(); i++) {
+                    if (dynamicKeys != null && dynamicKeys.contains(superIndex.foldedKeyAt(i))) {
+                        continue;
+                    }
+                    String key = superIndex.keyAt(i);
+                    Object value = superProperties.opt(key);
+                    if (value != null) {
+                        putProperty(dest, key, value);
+                    }
+                }
+            }
+            if (dynamicProperties != null) {
+                mergeJSONObject(dynamicProperties, dest);
+            }
+        } catch (Exception ex) {
+            SALog.printStackTrace(ex);
+        }
+    }
+
     /**
      * 检测权限
      *